@@ -0,0 +1,78 @@
+package fr.example.spring.sse;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.model.Product;
+
+/**
+ * Données partagées par les benchmarks : configuration par défaut de l'application et produits générés.
+ * Les valeurs sont fixes afin que les résultats restent comparables d'un commit à l'autre.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @return la configuration de l'application avec ses valeurs par défaut
+     */
+    public static ApplicationProperties applicationProperties() {
+        return applicationProperties(new ApplicationProperties.Sse(256, ApplicationProperties.OverflowPolicy.DROP_OLDEST, 1024, Duration.ZERO, 64, 0));
+    }
+
+    /**
+     * @param sse la configuration de la diffusion SSE à utiliser
+     * @return la configuration de l'application avec ses valeurs par défaut, hormis la diffusion SSE
+     */
+    public static ApplicationProperties applicationProperties(ApplicationProperties.Sse sse) {
+        return new ApplicationProperties(
+                "produit_quantite_change",
+                15,
+                ApplicationProperties.ChangeSource.LISTEN,
+                new ApplicationProperties.Listener(Duration.ofSeconds(10), Duration.ofSeconds(5), Duration.ofMillis(500), Duration.ofSeconds(30)),
+                new ApplicationProperties.Replication("spring_sse", "spring_sse_produit", Duration.ofSeconds(10)),
+                sse,
+                new ApplicationProperties.ReactiveSse(false, 8082),
+                new ApplicationProperties.Stock(true, false, Duration.ofMillis(5), 1000, 10_000),
+                new ApplicationProperties.PriceCache(10_000, "produit_prix_change", Duration.ofMillis(5)),
+                new ApplicationProperties.Listing(1000, 10_000, true),
+                new ApplicationProperties.Cluster(false, "", "http://localhost:8080", 256, Duration.ofSeconds(2), Duration.ofSeconds(10)));
+    }
+
+    /**
+     * @param count le nombre de produits
+     * @return des produits aux codes EAN distincts et croissants
+     */
+    public static List<Product> products(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Product.create(ean(i), "Produit " + i, i % 100, BigDecimal.valueOf(1999, 2)))
+                .toList();
+    }
+
+    /**
+     * @param count le nombre de produits
+     * @return la notification envoyée par le trigger de {@code schema.sql} pour ces produits
+     */
+    public static String notificationPayload(int count) {
+        final var payload = new StringBuilder("[");
+        for (var i = 0; i < count; i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append("{\"id\" : ").append(i + 1)
+                    .append(", \"ean\" : \"").append(ean(i))
+                    .append("\", \"nom\" : \"Produit ").append(i)
+                    .append("\", \"quantite\" : ").append(i % 100)
+                    .append(", \"ts\" : 1760000000000}");
+        }
+        return payload.append(']').toString();
+    }
+
+    private static String ean(int i) {
+        return String.format("%013d", 3_000_000_000_000L + i);
+    }
+}
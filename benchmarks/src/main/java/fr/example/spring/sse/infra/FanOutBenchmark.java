@@ -0,0 +1,79 @@
+package fr.example.spring.sse.infra;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.BenchmarkFixtures;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Débit de diffusion d'une trame à toutes les connexions SSE abonnées : recherche des connexions intéressées
+ * dans le {@link SubscriberIndex}, dépôt dans le tampon de chaque connexion puis écriture.
+ * L'écriture est faite sur le thread appelant, dans un {@link InMemorySseEmitter} : le résultat mesure le coût
+ * de la diffusion seule, sans réseau.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    int subscribers;
+
+    /**
+     * {@code all} : toutes les connexions reçoivent la trame ; {@code ean} : une seule connexion la reçoit.
+     */
+    @Param({"all", "ean"})
+    String filter;
+
+    private final SubscriberIndex index = new SubscriberIndex();
+    private final List<InMemorySseEmitter> emitters = new ArrayList<>();
+    private SseFrame frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var properties = BenchmarkFixtures.applicationProperties();
+        final var metrics = new SseMetrics(new SimpleMeterRegistry(), properties.sse().overflowPolicy());
+        final var products = BenchmarkFixtures.products(subscribers);
+
+        for (Product product : products) {
+            final var emitter = new InMemorySseEmitter();
+            final var productFilter = "all".equals(filter)
+                    ? ProductFilter.all()
+                    : new ProductFilter(Set.of(product.ean()), null, null);
+            index.add(new SseSubscriber(emitter, productFilter, properties.sse(), metrics, Schedulers.immediate()));
+            emitters.add(emitter);
+        }
+
+        final var product = products.getFirst();
+        frame = SseFrame.encode(product, 1, 1, 0, "product-quantity-updated", product, new ObjectMapper());
+    }
+
+    @Benchmark
+    public void publish() {
+        index.forEachInterested(frame.product(), subscriber -> subscriber.offer(frame));
+    }
+}
@@ -0,0 +1,28 @@
+package fr.example.spring.sse.infra;
+
+import java.util.Set;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * {@link SseEmitter} écrivant en mémoire, sans connexion HTTP : seuls les octets envoyés sont comptés.
+ */
+final class InMemorySseEmitter extends SseEmitter {
+
+    private long bytesSent;
+
+    InMemorySseEmitter() {
+        super(Long.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void send(Set<DataWithMediaType> items) {
+        for (DataWithMediaType item : items) {
+            bytesSent += ((byte[]) item.getData()).length;
+        }
+    }
+
+    synchronized long bytesSent() {
+        return bytesSent;
+    }
+}
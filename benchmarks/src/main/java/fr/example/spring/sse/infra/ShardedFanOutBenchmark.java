@@ -0,0 +1,119 @@
+package fr.example.spring.sse.infra;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.BenchmarkFixtures;
+import fr.example.spring.sse.product.model.ProductFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Débit de distribution des trames à {@value #SUBSCRIBERS} connexions SSE sans filtre, selon le nombre de workers
+ * du {@link FanOutDispatcher} : 0 distribue depuis le thread appelant, comme avant le partitionnement.
+ * Chaque opération publie {@value #FRAMES} trames puis attend qu'elles aient été déposées dans toutes les connexions,
+ * écrites dans un {@link InMemorySseEmitter} : le résultat est exprimé en dépôts par seconde.
+ * Les résultats ne valent que pour la machine qui les produit : ils sont à mesurer sur la machine cible
+ * avant d'activer les workers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedFanOutBenchmark {
+
+    private static final int SUBSCRIBERS = 10_000;
+    private static final int FRAMES = 16;
+
+    @Param({"0", "1", "2", "4", "8"})
+    int shards;
+
+    private final LongAdder delivered = new LongAdder();
+    private FanOutDispatcher dispatcher;
+    private SseFrame frame;
+    private long expected;
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dispatcher.close();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var properties = BenchmarkFixtures.applicationProperties();
+        final var metrics = new SseMetrics(new SimpleMeterRegistry(), properties.sse().overflowPolicy());
+        dispatcher = new FanOutDispatcher("benchmark", shards, name -> Thread.ofPlatform().daemon(true).name(name));
+
+        for (var i = 0; i < SUBSCRIBERS; i++) {
+            final var subscriber = new SseSubscriber(new InMemorySseEmitter(), ProductFilter.all(), properties.sse(), metrics, Schedulers.immediate());
+            dispatcher.add(new CountingSubscriber(subscriber, delivered), -1);
+        }
+
+        final var product = BenchmarkFixtures.products(1).getFirst();
+        frame = SseFrame.encode(product, 1, 1, 0, "product-quantity-updated", product, new ObjectMapper());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SUBSCRIBERS * FRAMES)
+    public void dispatch() {
+        for (var i = 0; i < FRAMES; i++) {
+            dispatcher.dispatch(frame);
+        }
+        expected += (long) SUBSCRIBERS * FRAMES;
+        while (delivered.sum() < expected) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Connexion comptant les trames qui lui sont déposées.
+     */
+    private record CountingSubscriber(SseSubscriber delegate, LongAdder delivered) implements FrameSubscriber {
+
+        @Override
+        public ProductFilter filter() {
+            return delegate.filter();
+        }
+
+        @Override
+        public void offer(SseFrame frame) {
+            delegate.offer(frame);
+            delivered.increment();
+        }
+
+        @Override
+        public void replay(List<SseFrame> frames) {
+            delegate.replay(frames);
+        }
+
+        @Override
+        public void missed(int frames) {
+            delegate.missed(frames);
+        }
+
+        @Override
+        public void complete() {
+            delegate.complete();
+        }
+    }
+}
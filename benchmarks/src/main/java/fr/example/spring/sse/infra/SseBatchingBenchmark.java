@@ -0,0 +1,150 @@
+package fr.example.spring.sse.infra;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.management.OperatingSystemMXBean;
+
+import fr.example.spring.sse.BenchmarkFixtures;
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Coût de l'écriture de rafales de {@value #FRAMES} trames sur {@value #SUBSCRIBERS} connexions SSE, selon la fenêtre
+ * de regroupement {@code app.sse.batch-window}, en millisecondes.
+ * Chaque opération dépose une rafale dans toutes les connexions puis attend qu'elle ait été écrite sur le scheduler
+ * de livraison. Le résultat principal est exprimé en trames écrites par seconde ; les compteurs secondaires donnent,
+ * par seconde, le nombre d'envois sur les connexions ({@code writes}, un flush de la réponse HTTP et au moins un appel
+ * système chacun) et le temps CPU consommé par le processus ({@code cpuNanos}). Rapportés aux trames écrites,
+ * ils donnent le nombre de flushs et le temps CPU par trame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SseBatchingBenchmark {
+
+    private static final int SUBSCRIBERS = 1_000;
+    private static final int FRAMES = 16;
+
+    @Param({"0", "5"})
+    int batchWindow;
+
+    private final Semaphore written = new Semaphore(0);
+    private final LongAdder writes = new LongAdder();
+    private final List<SseSubscriber> subscribers = new ArrayList<>();
+    private final List<SseFrame> frames = new ArrayList<>();
+    private Scheduler deliveryScheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var defaults = BenchmarkFixtures.applicationProperties().sse();
+        final var sse = new ApplicationProperties.Sse(defaults.bufferSize(), defaults.overflowPolicy(), defaults.replayBufferSize(),
+                Duration.ofMillis(batchWindow), defaults.batchMaxEvents(), defaults.dispatchShards());
+        final var metrics = new SseMetrics(new SimpleMeterRegistry(), sse.overflowPolicy());
+        deliveryScheduler = Schedulers.newBoundedElastic(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "sse-delivery");
+
+        for (var i = 0; i < SUBSCRIBERS; i++) {
+            subscribers.add(new SseSubscriber(new CountingSseEmitter(written, writes), ProductFilter.all(), sse, metrics, deliveryScheduler));
+        }
+
+        // Des trames distinctes : une même trame déposée deux fois dans une connexion ne serait écrite qu'une fois
+        final var mapper = new ObjectMapper();
+        for (Product product : BenchmarkFixtures.products(FRAMES)) {
+            frames.add(SseFrame.encode(product, 1, 1, 0, "product-quantity-updated", product, mapper));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deliveryScheduler.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SUBSCRIBERS * FRAMES)
+    public void burst(WriteCounters counters) throws InterruptedException {
+        final var cpuBefore = processCpuTime();
+        final var writesBefore = writes.sum();
+        for (SseFrame frame : frames) {
+            for (SseSubscriber subscriber : subscribers) {
+                subscriber.offer(frame);
+            }
+        }
+        written.acquire(SUBSCRIBERS * FRAMES);
+        counters.writes += writes.sum() - writesBefore;
+        counters.cpuNanos += processCpuTime() - cpuBefore;
+    }
+
+    private static long processCpuTime() {
+        return ((OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+
+    /**
+     * Compteurs secondaires, exprimés par seconde comme le résultat principal.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class WriteCounters {
+
+        public long writes;
+        public long cpuNanos;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            writes = 0;
+            cpuNanos = 0;
+        }
+    }
+
+    /**
+     * {@link SseEmitter} écrivant en mémoire, comptant ses envois et signalant chaque trame écrite.
+     */
+    private static final class CountingSseEmitter extends SseEmitter {
+
+        private final Semaphore written;
+        private final LongAdder writes;
+
+        CountingSseEmitter(Semaphore written, LongAdder writes) {
+            super(Long.MAX_VALUE);
+            this.written = written;
+            this.writes = writes;
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            writes.increment();
+            written.release(items.size());
+        }
+    }
+}
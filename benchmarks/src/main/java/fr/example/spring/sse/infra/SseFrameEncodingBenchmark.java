@@ -0,0 +1,61 @@
+package fr.example.spring.sse.infra;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.BenchmarkFixtures;
+import fr.example.spring.sse.product.controller.dto.QuantityProductResponse;
+import fr.example.spring.sse.product.model.Product;
+
+/**
+ * Coût de l'encodage d'une trame SSE : sérialisation JSON de la donnée et construction des octets de la trame.
+ * Mesure une mise à jour de produit et un état complet de {@code products} produits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SseFrameEncodingBenchmark {
+
+    @Param({"1000"})
+    int products;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Product product;
+    private List<QuantityProductResponse> snapshot;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        final var all = BenchmarkFixtures.products(products);
+        product = all.getFirst();
+        snapshot = all.stream().map(QuantityProductResponse::createFromProduct).toList();
+    }
+
+    @Benchmark
+    public SseFrame productUpdate() {
+        return SseFrame.encode(product, ++sequence, sequence, 0, "product-quantity-updated",
+                QuantityProductResponse.createFromProduct(product), objectMapper);
+    }
+
+    @Benchmark
+    public SseFrame snapshot() {
+        return SseFrame.encode(null, ++sequence, sequence, 0, "product-snapshot", snapshot, objectMapper);
+    }
+}
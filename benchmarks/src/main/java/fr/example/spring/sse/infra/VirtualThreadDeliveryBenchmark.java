@@ -0,0 +1,116 @@
+package fr.example.spring.sse.infra;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.BenchmarkFixtures;
+import fr.example.spring.sse.product.model.ProductFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Durée de la remise d'une trame à {@value #CONNECTIONS} connexions SSE dont chaque écriture bloque
+ * {@value #WRITE_MILLIS} ms, comme l'écriture sur la socket d'un client lent, selon le modèle d'exécution
+ * des {@link ExecutionThreads} : threads de la plateforme ({@code virtual=false}) ou threads virtuels.
+ * Chaque opération dépose la trame dans toutes les connexions puis attend qu'elle ait été écrite sur la dernière :
+ * la distribution des durées mesurées donne la latence de queue de la diffusion, percentiles compris.
+ * La mémoire du processus se suit en ajoutant {@code -prof gc}, ou avec {@code jcmd <pid> VM.native_memory}
+ * pour la mémoire des piles de threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadDeliveryBenchmark {
+
+    private static final int CONNECTIONS = 10_000;
+    private static final int WRITE_MILLIS = 1;
+
+    @Param({"false", "true"})
+    boolean virtual;
+
+    private final Semaphore written = new Semaphore(0);
+    private final List<SseSubscriber> subscribers = new ArrayList<>();
+    private ExecutionThreads executionThreads;
+    private SseFrame frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("spring.threads.virtual.enabled", String.valueOf(virtual))));
+        executionThreads = new ExecutionThreads(environment);
+
+        final var properties = BenchmarkFixtures.applicationProperties();
+        final var metrics = new SseMetrics(new SimpleMeterRegistry(), properties.sse().overflowPolicy());
+        for (var i = 0; i < CONNECTIONS; i++) {
+            subscribers.add(new SseSubscriber(new BlockingSseEmitter(written), ProductFilter.all(), properties.sse(), metrics,
+                    executionThreads.deliveryScheduler()));
+        }
+
+        final var product = BenchmarkFixtures.products(1).getFirst();
+        frame = SseFrame.encode(product, 1, 1, 0, "product-quantity-updated", product, new ObjectMapper());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executionThreads.shutdown();
+    }
+
+    @Benchmark
+    public void deliver() throws InterruptedException {
+        for (SseSubscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+        written.acquire(CONNECTIONS);
+    }
+
+    /**
+     * {@link SseEmitter} dont chaque envoi bloque le thread qui écrit, puis signale l'écriture.
+     */
+    private static final class BlockingSseEmitter extends SseEmitter {
+
+        private final Semaphore written;
+
+        BlockingSseEmitter(Semaphore written) {
+            super(Long.MAX_VALUE);
+            this.written = written;
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> items) throws IOException {
+            try {
+                Thread.sleep(WRITE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Write interrupted", e);
+            }
+            written.release();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package fr.example.spring.sse.product;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.BenchmarkFixtures;
+import fr.example.spring.sse.infra.SequencedNotification;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+
+/**
+ * Coût de la transformation d'une notification du trigger en {@link ProductEvent}, pour une notification
+ * portant {@code rows} produits.
+ * Le cache des prix est préchargé : aucune requête SQL n'est faite pendant la mesure.
+ * {@code readTree} et {@code streamingParse} mesurent seules les deux manières de lire la notification avec Jackson :
+ * arbre {@link JsonNode} complet ou lecture des jetons au fil de l'eau.
+ * La mémoire allouée par notification est donnée par {@code gc.alloc.rate.norm} avec l'option {@code -prof gc} :
+ * {@code java -jar target/benchmarks.jar NotificationMapperBenchmark -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationMapperBenchmark {
+
+    @Param({"1", "100"})
+    int rows;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ProductNotificationMapper mapper;
+    private SequencedNotification notification;
+
+    @Setup
+    public void setUp() {
+        final var properties = BenchmarkFixtures.applicationProperties();
+        final var repository = new ProduitBatchRepository(null) {
+            @Override
+            public Map<String, BigDecimal> findPrices(Collection<String> eans) {
+                return eans.stream().collect(Collectors.toMap(Function.identity(), ean -> BigDecimal.valueOf(1999, 2)));
+            }
+        };
+        mapper = new ProductNotificationMapper(objectMapper, new ProductPriceCache(repository, properties));
+        notification = new SequencedNotification(1, properties.channelToListen(), 0, BenchmarkFixtures.notificationPayload(rows), false);
+        // Warm the price cache so that the measurement never reaches the repository
+        mapper.decode(notification);
+    }
+
+    @Benchmark
+    public ProductEvent map() {
+        return mapper.decode(notification).event();
+    }
+
+    @Benchmark
+    public JsonNode readTree() throws IOException {
+        return objectMapper.readTree(notification.payload());
+    }
+
+    @Benchmark
+    public void streamingParse(Blackhole blackhole) throws IOException {
+        try (var parser = objectMapper.getFactory().createParser(notification.payload())) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_STRING) {
+                    blackhole.consume(parser.getText());
+                } else if (token == JsonToken.VALUE_NUMBER_INT) {
+                    blackhole.consume(parser.getLongValue());
+                }
+            }
+        }
+    }
+}
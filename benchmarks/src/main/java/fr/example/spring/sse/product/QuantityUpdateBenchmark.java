@@ -0,0 +1,158 @@
+package fr.example.spring.sse.product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import fr.example.spring.sse.BenchmarkFixtures;
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.QuantityUpdate;
+import fr.example.spring.sse.product.repositories.Produit;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+import fr.example.spring.sse.product.repositories.ProduitRepository;
+import io.vavr.control.Try;
+
+/**
+ * Durée de la mise à jour de la quantité de {@code items} produits distincts, sur la base PostgreSQL
+ * de {@code docker-compose.yaml} dont le schéma a été créé par le profil {@code dev} :
+ * <ul>
+ *     <li>{@code bulk} : une demande {@code POST /api/v1/products/quantities}, appliquée par le {@link ProductBulkUpdater}
+ *     en une requête SQL par lot de {@code app.stock.batch-size} produits ;</li>
+ *     <li>{@code perItem} : une demande {@code PUT /api/v1/products/{ean}/quantity} par produit, réduite à la requête
+ *     de {@code ProduitRepository.incrementQuantite} exécutée par JDBC : le résultat est un minorant du coût
+ *     des demandes unitaires ;</li>
+ *     <li>{@code perItemJpa} : les mêmes demandes appliquées par le {@link ProductUpdater}, comme par le contrôleur
+ *     quand le regroupement est désactivé : une transaction, le repository Spring Data et l'entité JPA par produit.</li>
+ * </ul>
+ * Les deux derniers bras séparent le coût des allers-retours de celui de JPA. Seuls les beans nécessaires sont
+ * démarrés : la configuration automatique de la source de données, de JPA et des transactions, le repository
+ * et le {@link ProductUpdater}, sans serveur web ni écoute des changements.
+ * La base utilisée se change par {@code -jvmArgsAppend "-Dbenchmark.jdbc.url=... -Dbenchmark.jdbc.username=...
+ * -Dbenchmark.jdbc.password=..."}. Les produits mesurés sont créés au début de la mesure puis supprimés.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuantityUpdateBenchmark {
+
+    private static final String INCREMENT_QUANTITE = """
+            UPDATE produit
+               SET quantite = quantite + ?
+             WHERE ean = ?
+               AND (? OR quantite + ? >= 0)
+            RETURNING *
+            """;
+
+    @Param({"10", "100", "1000", "10000"})
+    int items;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private ProductBulkUpdater productBulkUpdater;
+    private ProductUpdater productUpdater;
+    private List<String> eans;
+    private List<QuantityUpdate> updates;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(UpdaterConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties(Map.of(
+                        "spring.datasource.url", System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost/docker"),
+                        "spring.datasource.username", System.getProperty("benchmark.jdbc.username", "docker"),
+                        "spring.datasource.password", System.getProperty("benchmark.jdbc.password", "docker"),
+                        "spring.jpa.hibernate.ddl-auto", "none",
+                        "spring.jpa.open-in-view", "false",
+                        "spring.sql.init.mode", "never"))
+                .run();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        productBulkUpdater = new ProductBulkUpdater(new ProduitBatchRepository(jdbcTemplate), BenchmarkFixtures.applicationProperties());
+        productUpdater = context.getBean(ProductUpdater.class);
+
+        final var products = BenchmarkFixtures.products(items);
+        eans = products.stream().map(Product::ean).toList();
+        deleteProducts();
+        jdbcTemplate.batchUpdate("INSERT INTO produit (ean, nom, quantite, prix) VALUES (?, ?, ?, ?)", products, products.size(),
+                (statement, product) -> {
+                    statement.setString(1, product.ean());
+                    statement.setString(2, product.nom());
+                    statement.setInt(3, product.quantite());
+                    statement.setBigDecimal(4, product.prix());
+                });
+        updates = eans.stream().map(ean -> new QuantityUpdate(ean, 1)).toList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        deleteProducts();
+        context.close();
+    }
+
+    @Benchmark
+    public List<Try<Product>> bulk() {
+        return productBulkUpdater.updateQuantities(updates);
+    }
+
+    @Benchmark
+    public void perItem(Blackhole blackhole) {
+        for (QuantityUpdate update : updates) {
+            blackhole.consume(jdbcTemplate.queryForList(INCREMENT_QUANTITE, update.quantity(), update.ean(), true, update.quantity()));
+        }
+    }
+
+    @Benchmark
+    public void perItemJpa(Blackhole blackhole) {
+        for (QuantityUpdate update : updates) {
+            blackhole.consume(productUpdater.updateQuantity(update.ean(), update.quantity()));
+        }
+    }
+
+    private void deleteProducts() {
+        jdbcTemplate.update(connection -> {
+            final var statement = connection.prepareStatement("DELETE FROM produit WHERE ean = ANY(?::bpchar[])");
+            statement.setArray(1, connection.createArrayOf("text", eans.toArray()));
+            return statement;
+        });
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Produit.class)
+    @EnableJpaRepositories(basePackageClasses = ProduitRepository.class)
+    @Import(ProductUpdater.class)
+    static class UpdaterConfiguration {
+
+        @Bean
+        ApplicationProperties applicationProperties() {
+            return BenchmarkFixtures.applicationProperties();
+        }
+    }
+}
@@ -2,22 +2,23 @@ package fr.example.spring.sse;
 
 import java.util.Properties;
 
-import org.postgresql.PGNotification;
+import org.postgresql.PGProperty;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.context.annotation.Primary;
 
+import com.zaxxer.hikari.HikariDataSource;
 import com.zaxxer.hikari.util.DriverDataSource;
 
 import fr.example.spring.sse.config.ApplicationProperties;
 import lombok.Generated;
-import reactor.core.publisher.Sinks;
 
 @SpringBootApplication
 @EntityScan(basePackageClasses = { SpringSSE.class })
@@ -25,6 +26,11 @@ import reactor.core.publisher.Sinks;
 @EnableConfigurationProperties(ApplicationProperties.class)
 public class SpringSSE extends SpringBootServletInitializer {
 
+    /**
+     * Nom d'application de la connexion écoutant les notifications.
+     */
+    public static final String LISTENER_APPLICATION_NAME = "spring-sse-listener";
+
     // la méthode main n'a pas besoin d'être couverte par des tests
     // l'annotation lombok @Generated indique à JaCoCo (Java Code Coverage Library) de l'ignorer
     @Generated
@@ -33,40 +39,40 @@ public class SpringSSE extends SpringBootServletInitializer {
     }
 
     /**
-     * Bean permettant de broadcaster les notifications PostgreSQL
+     * Déclare explicitement le pool de connexions HikariCP utilisé par JPA.</br>
+     * La présence du {@link DriverDataSource} d'écoute désactive l'auto-configuration du DataSource de Spring Boot :
+     * sans ce bean, chaque transaction ouvrirait une nouvelle connexion physique.
      *
-     * @return {@link Sinks.Many} de {@link PGNotification}
+     * @param dataSourceProperties {@link DataSourceProperties}
+     * @return {@link HikariDataSource}
      */
     @Bean
-    Sinks.Many<PGNotification> notificationSink() {
-        return Sinks.many().multicast().directAllOrNothing();
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
     }
 
     /**
      * Configure un driver datasource spécifique pour la connexion écoutant les notifications.</br>
      * Cela évite de garder une connexion ouverte dans le pool de connexion standard HikariCP.
+     * La connexion porte le nom d'application {@value #LISTENER_APPLICATION_NAME}, qui l'identifie dans
+     * {@code pg_stat_activity}.
      *
      * @param dataSourceProperties {@link DataSourceProperties}
      * @return {@link DriverDataSource}
      */
     @Bean("listenerConnectionSource")
     DriverDataSource listenerConnectionSource(DataSourceProperties dataSourceProperties) {
+        final var properties = new Properties();
+        PGProperty.APPLICATION_NAME.set(properties, LISTENER_APPLICATION_NAME);
         return new DriverDataSource(
                 dataSourceProperties.determineUrl(),
                 dataSourceProperties.determineDriverClassName(),
-                new Properties(),
+                properties,
                 dataSourceProperties.determineUsername(),
                 dataSourceProperties.determinePassword());
     }
-
-    /**
-     * Déclare un {@link JdbcTemplate} spécifique pour la requête de LISTEN.
-     *
-     * @param listenerConnectionSource {@link DriverDataSource}
-     * @return {@link JdbcTemplate}
-     */
-    @Bean("listenerConnection")
-    JdbcTemplate listenerConnection(DriverDataSource listenerConnectionSource) {
-        return new JdbcTemplate(listenerConnectionSource);
-    }
 }
@@ -1,11 +1,18 @@
 package fr.example.spring.sse.config;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 import org.springframework.validation.annotation.Validated;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 
 @Validated
 @ConfigurationProperties(prefix = "app")
@@ -18,6 +25,306 @@ public record ApplicationProperties(
         /**
          * Interval d'émission d'un heartbeat permettant de garder la connexion ouverte en seconde.
          */
-        @Min(1) @Max(59) int heartbeatIntervalSeconds
+        @Min(1) @Max(59) int heartbeatIntervalSeconds,
+
+        /**
+         * Source des changements PostgreSQL diffusés aux clients.
+         */
+        @NotNull @DefaultValue("listen") ChangeSource changeSource,
+
+        /**
+         * Configuration de la connexion d'écoute des notifications PostgreSQL.
+         */
+        @Valid @DefaultValue Listener listener,
+
+        /**
+         * Configuration de la réplication logique, utilisée lorsque {@code change-source} vaut {@code logical-replication}.
+         */
+        @Valid @DefaultValue Replication replication,
+
+        /**
+         * Configuration de la diffusion des événements aux connexions SSE.
+         */
+        @Valid @DefaultValue Sse sse,
+
+        /**
+         * Configuration du serveur SSE non bloquant Reactor Netty.
+         */
+        @Valid @DefaultValue ReactiveSse reactiveSse,
+
+        /**
+         * Configuration des mises à jour de stock.
+         */
+        @Valid @DefaultValue Stock stock,
+
+        /**
+         * Configuration du cache des prix utilisé pour compléter les produits notifiés.
+         */
+        @Valid @DefaultValue PriceCache priceCache,
+
+        /**
+         * Configuration de la liste des produits lue en continu depuis la base de données.
+         */
+        @Valid @DefaultValue Listing listing,
+
+        /**
+         * Configuration du partitionnement des connexions SSE entre les nœuds de l'application.
+         */
+        @Valid @DefaultValue Cluster cluster
 ) {
+
+    /**
+     * La file d'une connexion du serveur SSE non bloquant ne permet pas de remplacer une trame en place :
+     * la politique {@link OverflowPolicy#CONFLATE} y est refusée au démarrage plutôt que d'être appliquée à moitié.
+     *
+     * @return {@code true} si la politique de débordement est applicable par chaque serveur SSE activé
+     */
+    @AssertTrue(message = "app.sse.overflow-policy=conflate is not supported when app.reactive-sse.enabled is true")
+    public boolean isOverflowPolicySupported() {
+        return !reactiveSse.enabled() || sse.overflowPolicy() != OverflowPolicy.CONFLATE;
+    }
+
+    /**
+     * Configuration de la connexion d'écoute des notifications PostgreSQL.
+     */
+    public record Listener(
+            /**
+             * Durée maximale d'attente d'une notification avant de vérifier que la connexion est toujours valide.
+             */
+            @NotNull @DefaultValue("10s") Duration pollTimeout,
+
+            /**
+             * Délai maximal de la vérification de validité de la connexion.
+             */
+            @NotNull @DefaultValue("5s") Duration validationTimeout,
+
+            /**
+             * Délai avant la première tentative de reconnexion, doublé à chaque échec.
+             */
+            @NotNull @DefaultValue("500ms") Duration initialBackoff,
+
+            /**
+             * Délai maximal entre deux tentatives de reconnexion.
+             */
+            @NotNull @DefaultValue("30s") Duration maxBackoff
+    ) {
+    }
+
+    /**
+     * Configuration de la réplication logique.
+     */
+    public record Replication(
+            /**
+             * Nom du slot de réplication logique, créé au démarrage s'il n'existe pas.
+             */
+            @Pattern(regexp = "[a-z_][a-z0-9_]*") @DefaultValue("spring_sse") String slotName,
+
+            /**
+             * Nom de la publication de la table produit, créée au démarrage si elle n'existe pas.
+             */
+            @Pattern(regexp = "[a-z_][a-z0-9_]*") @DefaultValue("spring_sse_produit") String publicationName,
+
+            /**
+             * Intervalle d'envoi à PostgreSQL de la position acquittée dans le journal de transactions.
+             */
+            @NotNull @DefaultValue("10s") Duration statusInterval
+    ) {
+    }
+
+    /**
+     * Configuration de la diffusion des événements aux connexions SSE.
+     */
+    public record Sse(
+            /**
+             * Nombre maximal d'événements en attente d'écriture pour une connexion SSE.
+             */
+            @Min(1) @DefaultValue("256") int bufferSize,
+
+            /**
+             * Politique appliquée lorsque le tampon d'une connexion SSE est plein.
+             */
+            @NotNull @DefaultValue("drop-oldest") OverflowPolicy overflowPolicy,
+
+            /**
+             * Nombre d'événements conservés pour être rejoués aux clients qui se reconnectent avec un Last-Event-ID.
+             */
+            @Min(1) @DefaultValue("1024") int replayBufferSize,
+
+            /**
+             * Fenêtre de regroupement des événements écrits sur une connexion SSE, 0 pour écrire chaque événement dès son arrivée.
+             */
+            @NotNull @DefaultValue("0ms") Duration batchWindow,
+
+            /**
+             * Nombre d'événements en attente au-delà duquel ils sont écrits sans attendre la fin de la fenêtre de regroupement.
+             */
+            @Min(1) @DefaultValue("64") int batchMaxEvents,
+
+            /**
+             * Nombre de workers entre lesquels les connexions SSE sont réparties pour la distribution des événements ;
+             * 0 pour distribuer depuis le thread qui publie les événements. Le gain éventuel se mesure sur la machine cible
+             * avec {@code ShardedFanOutBenchmark}.
+             */
+            @Min(0) @DefaultValue("0") int dispatchShards
+    ) {
+    }
+
+    /**
+     * Configuration du serveur SSE non bloquant Reactor Netty.
+     */
+    public record ReactiveSse(
+            /**
+             * Démarre le serveur SSE non bloquant, en plus du serveur servlet.
+             */
+            @DefaultValue("false") boolean enabled,
+
+            /**
+             * Port d'écoute du serveur SSE non bloquant.
+             */
+            @Min(1) @Max(65535) @DefaultValue("8082") int port
+    ) {
+    }
+
+    /**
+     * Configuration des mises à jour de stock.
+     */
+    public record Stock(
+            /**
+             * Autorise une mise à jour de quantité rendant le stock d'un produit négatif.
+             */
+            @DefaultValue("true") boolean allowNegative,
+
+            /**
+             * Regroupe les mises à jour de quantité unitaires reçues pendant une fenêtre et les applique en un seul lot.
+             */
+            @DefaultValue("false") boolean coalesce,
+
+            /**
+             * Durée de la fenêtre de regroupement des mises à jour de quantité.
+             */
+            @NotNull @DefaultValue("5ms") Duration coalesceWindow,
+
+            /**
+             * Nombre maximal de produits mis à jour par une même requête SQL lors d'une mise à jour groupée.
+             */
+            @Min(1) @DefaultValue("1000") int batchSize,
+
+            /**
+             * Nombre maximal de mises à jour de quantité unitaires en attente de regroupement, réparti entre les segments.
+             * Au-delà, une mise à jour est refusée plutôt que d'accumuler les demandes d'une base qui ne suit plus.
+             */
+            @Min(1) @DefaultValue("10000") int maxPending
+    ) {
+    }
+
+    /**
+     * Configuration du cache des prix utilisé pour compléter les produits notifiés.
+     */
+    public record PriceCache(
+            /**
+             * Nombre maximal de prix conservés, les moins récemment utilisés étant évincés au-delà.
+             */
+            @Min(1) @DefaultValue("10000") int maxSize,
+
+            /**
+             * Nom de la notification PostgreSQL signalant un changement de prix, diffusé comme une mise à jour des produits.
+             */
+            @NotBlank @DefaultValue("produit_prix_change") String invalidationChannel,
+
+            /**
+             * Fenêtre pendant laquelle les prix absents du cache sont rassemblés, puis chargés par une seule requête SQL.
+             */
+            @NotNull @DefaultValue("5ms") Duration batchWindow
+    ) {
+    }
+
+    /**
+     * Configuration de la liste des produits lue en continu depuis la base de données.
+     */
+    public record Listing(
+            /**
+             * Nombre de lignes lues par aller-retour avec la base de données lors du parcours du curseur.
+             */
+            @Min(1) @DefaultValue("1000") int fetchSize,
+
+            /**
+             * Nombre maximal de produits renvoyés par page, une taille demandée supérieure étant ramenée à cette valeur.
+             */
+            @Min(1) @DefaultValue("10000") int maxPageSize,
+
+            /**
+             * Conserve aussi une copie compressée en gzip de la liste des produits, servie aux clients qui l'acceptent.
+             */
+            @DefaultValue("true") boolean gzip
+    ) {
+    }
+
+    /**
+     * Configuration du partitionnement des connexions SSE entre les nœuds de l'application.
+     */
+    public record Cluster(
+            /**
+             * Active le partitionnement : chaque nœud ne diffuse que les produits des partitions qui lui sont attribuées.
+             */
+            @DefaultValue("false") boolean enabled,
+
+            /**
+             * Identifiant du nœud dans le cluster, généré au démarrage s'il est vide.
+             */
+            @Pattern(regexp = "[A-Za-z0-9_.-]*") @DefaultValue("") String nodeId,
+
+            /**
+             * URL à laquelle les clients sont redirigés pour joindre ce nœud.
+             */
+            @NotBlank @DefaultValue("http://localhost:8080") String advertisedUrl,
+
+            /**
+             * Nombre de partitions de codes EAN réparties entre les nœuds, identique sur tous les nœuds.
+             */
+            @Min(1) @DefaultValue("256") int shards,
+
+            /**
+             * Intervalle de signalement de la présence du nœud dans la table des membres du cluster.
+             */
+            @NotNull @DefaultValue("2s") Duration heartbeatInterval,
+
+            /**
+             * Délai sans signalement au-delà duquel un nœud est considéré comme absent et ses partitions redistribuées.
+             */
+            @NotNull @DefaultValue("10s") Duration memberTimeout
+    ) {
+    }
+
+    /**
+     * Source des changements PostgreSQL.
+     */
+    public enum ChangeSource {
+        /**
+         * Notifications LISTEN/NOTIFY émises par les triggers de la table produit.
+         */
+        LISTEN,
+        /**
+         * Réplication logique du journal de transactions, avec le plugin pgoutput.
+         */
+        LOGICAL_REPLICATION
+    }
+
+    /**
+     * Politique appliquée lorsqu'une connexion SSE trop lente a rempli son tampon.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Supprime l'événement le plus ancien du tampon pour faire place au nouveau.
+         */
+        DROP_OLDEST,
+        /**
+         * Ferme la connexion, le client se reconnectera.
+         */
+        DISCONNECT,
+        /**
+         * Ne conserve que le dernier événement de chaque produit en attente ; ferme la connexion si plus de produits
+         * que la taille du tampon sont en attente. Non supportée par le serveur SSE non bloquant.
+         */
+        CONFLATE
+    }
 }
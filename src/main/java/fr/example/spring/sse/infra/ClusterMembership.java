@@ -0,0 +1,236 @@
+package fr.example.spring.sse.infra;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.spi.ProductSharding;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Appartenance du nœud au cluster et répartition des partitions de codes EAN, coordonnées par PostgreSQL.
+ * Chaque nœud signale périodiquement sa présence dans la table {@code cluster_member} puis relit les membres présents,
+ * selon l'horloge de la base de données : tous les nœuds voient ainsi les mêmes membres.
+ * Chaque partition est attribuée au membre de plus grand poids pour cette partition (hachage de rendez-vous) :
+ * tous les nœuds calculent la même répartition sans se concerter, et l'arrivée ou le départ d'un nœud
+ * ne déplace que les partitions qu'il gagne ou perd.
+ * Plusieurs instances de l'application, y compris dans une même JVM, peuvent partager une même base de données
+ * pourvu que leurs identifiants de nœud diffèrent.
+ */
+@Component
+public class ClusterMembership implements ProductSharding {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterMembership.class);
+
+    private static final String HEARTBEAT = """
+            INSERT INTO cluster_member (node_id, url, heartbeat_at)
+            VALUES (?, ?, now())
+            ON CONFLICT (node_id) DO UPDATE SET url = excluded.url, heartbeat_at = excluded.heartbeat_at
+            """;
+
+    private static final String LIVE_MEMBERS = """
+            SELECT node_id, url
+              FROM cluster_member
+             WHERE heartbeat_at > now() - make_interval(secs => ?)
+             ORDER BY node_id
+            """;
+
+    private static final String LEAVE = "DELETE FROM cluster_member WHERE node_id = ?";
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(5);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationProperties.Cluster cluster;
+    private final ExecutionThreads executionThreads;
+    private final Member self;
+    private final Sinks.Many<Integer> rebalances = Sinks.many().multicast().directBestEffort();
+    // URL du propriétaire de chaque partition, null pour ce nœud ; remplacé en bloc à chaque redistribution
+    private volatile String[] owners;
+    private Thread heartbeatThread;
+    private volatile boolean stopped;
+
+    public ClusterMembership(JdbcTemplate jdbcTemplate, ApplicationProperties applicationProperties, ExecutionThreads executionThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cluster = applicationProperties.cluster();
+        this.executionThreads = executionThreads;
+        this.self = new Member(
+                cluster.nodeId().isBlank() ? UUID.randomUUID().toString() : cluster.nodeId(),
+                cluster.advertisedUrl());
+        this.owners = new String[cluster.shards()];
+    }
+
+    /**
+     * Rejoint le cluster avant que le nœud ne serve des requêtes, puis démarre le signalement périodique de présence.
+     */
+    @PostConstruct
+    public void start() {
+        if (!cluster.enabled()) {
+            return;
+        }
+
+        heartbeat();
+        log.info("Joined cluster as node {} owning {} of {} shards", self.nodeId(), ownedShards(owners), cluster.shards());
+        this.heartbeatThread = executionThreads.thread("cluster-membership").start(() -> {
+            while (!stopped) {
+                try {
+                    Thread.sleep(cluster.heartbeatInterval());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                heartbeat();
+            }
+        });
+    }
+
+    /**
+     * Quitte le cluster lors de l'arrêt de l'application : les autres nœuds reprennent ses partitions
+     * sans attendre l'expiration de sa présence.
+     * Un signalement en cours, qu'une interruption n'arrête pas, recréerait la ligne supprimée : il est attendu
+     * avant de quitter le cluster, et aucun autre ne commence ensuite.
+     */
+    @PreDestroy
+    public void stop() {
+        if (heartbeatThread == null) {
+            return;
+        }
+
+        stopped = true;
+        heartbeatThread.interrupt();
+        try {
+            if (!heartbeatThread.join(STOP_TIMEOUT)) {
+                log.warn("Cluster membership heartbeat of node {} still running after {}", self.nodeId(), STOP_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            jdbcTemplate.update(LEAVE, self.nodeId());
+        } catch (DataAccessException e) {
+            log.warn("Failed to leave cluster as node {}", self.nodeId(), e);
+        }
+    }
+
+    @Override
+    public boolean owns(String ean) {
+        return owners[shard(ean)] == null;
+    }
+
+    @Override
+    public Optional<String> redirectFor(Collection<String> eans) {
+        final var current = owners;
+        String owner = null;
+        var first = true;
+        for (String ean : eans) {
+            final var candidate = current[shard(ean)];
+            if (first) {
+                owner = candidate;
+                first = false;
+            } else if (!Objects.equals(owner, candidate)) {
+                throw new IllegalArgumentException("EANs " + eans + " belong to several cluster nodes");
+            }
+        }
+        return Optional.ofNullable(owner);
+    }
+
+    @Override
+    public Flux<Integer> rebalances() {
+        return rebalances.asFlux();
+    }
+
+    /**
+     * Signale la présence du nœud puis recalcule la répartition des partitions à partir des membres présents.
+     * En cas d'erreur, la répartition précédente est conservée jusqu'au prochain signalement.
+     */
+    private void heartbeat() {
+        if (stopped) {
+            return;
+        }
+        final List<Member> members;
+        try {
+            jdbcTemplate.update(HEARTBEAT, self.nodeId(), self.url());
+            members = new ArrayList<>(jdbcTemplate.query(LIVE_MEMBERS,
+                    (rs, rowNum) -> new Member(rs.getString("node_id"), rs.getString("url")),
+                    cluster.memberTimeout().toMillis() / 1000.0));
+        } catch (DataAccessException e) {
+            log.warn("Failed to refresh cluster membership of node {}", self.nodeId(), e);
+            return;
+        }
+        if (members.stream().noneMatch(member -> member.nodeId().equals(self.nodeId()))) {
+            members.add(self);
+        }
+
+        final var assigned = assign(members);
+        if (!Arrays.equals(assigned, owners)) {
+            owners = assigned;
+            final var owned = ownedShards(assigned);
+            log.info("Cluster rebalanced over {} nodes, node {} now owns {} of {} shards",
+                    members.size(), self.nodeId(), owned, cluster.shards());
+            rebalances.tryEmitNext(owned);
+        }
+    }
+
+    /**
+     * Attribue chaque partition au membre de plus grand poids pour cette partition.
+     */
+    private String[] assign(List<Member> members) {
+        final var assigned = new String[cluster.shards()];
+        for (var shard = 0; shard < assigned.length; shard++) {
+            Member owner = null;
+            var best = Long.MIN_VALUE;
+            for (Member member : members) {
+                final var weight = mix(((long) member.nodeId().hashCode() << 32) ^ shard);
+                if (owner == null || weight > best) {
+                    owner = member;
+                    best = weight;
+                }
+            }
+            assigned[shard] = owner == null || owner.nodeId().equals(self.nodeId()) ? null : owner.url();
+        }
+        return assigned;
+    }
+
+    private int shard(String ean) {
+        // String.hashCode is specified by the JDK: every node computes the same shard for an EAN
+        return (int) Math.floorMod(mix(ean.hashCode()), (long) cluster.shards());
+    }
+
+    private static int ownedShards(String[] assigned) {
+        return (int) Arrays.stream(assigned).filter(Objects::isNull).count();
+    }
+
+    /**
+     * Mélange des bits d'une valeur 64 bits (finaliseur de MurmurHash3), pour répartir uniformément des hachages proches.
+     */
+    private static long mix(long value) {
+        var h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Membre du cluster.
+     *
+     * @param nodeId l'identifiant du nœud
+     * @param url    l'URL à laquelle les clients joignent le nœud
+     */
+    private record Member(String nodeId, String url) {
+    }
+}
@@ -0,0 +1,72 @@
+package fr.example.spring.sse.infra;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Modèle d'exécution des threads de l'application : threads de la plateforme ou threads virtuels.
+ * Les threads virtuels sont utilisés lorsque {@code spring.threads.virtual.enabled} est activé, comme pour le
+ * traitement des requêtes par Tomcat : une écriture SSE bloquée par un client lent n'immobilise alors plus
+ * un thread de la plateforme.
+ */
+@Component
+public class ExecutionThreads {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionThreads.class);
+
+    // Les threads virtuels étant peu coûteux, le plafond ne sert qu'à borner une fuite éventuelle
+    private static final int VIRTUAL_DELIVERY_THREAD_CAP = 100_000;
+    private static final int DELIVERY_THREAD_TTL_SECONDS = 60;
+
+    private final boolean virtual;
+    private final Scheduler deliveryScheduler;
+
+    public ExecutionThreads(Environment environment) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+        this.deliveryScheduler = virtual
+                ? Schedulers.newBoundedElastic(
+                        VIRTUAL_DELIVERY_THREAD_CAP,
+                        Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                        Thread.ofVirtual().name("sse-delivery-", 0).factory(),
+                        DELIVERY_THREAD_TTL_SECONDS)
+                : Schedulers.boundedElastic();
+        log.info("Using {} threads for SSE delivery and background work", virtual ? "virtual" : "platform");
+    }
+
+    /**
+     * Crée un constructeur de thread nommé, virtuel ou de la plateforme selon le modèle d'exécution.
+     * Un thread de la plateforme est un daemon : il n'empêche pas l'arrêt de la JVM.
+     *
+     * @param name le nom du thread
+     * @return le constructeur de thread
+     */
+    public Thread.Builder thread(String name) {
+        return virtual
+                ? Thread.ofVirtual().name(name)
+                : Thread.ofPlatform().daemon(true).name(name);
+    }
+
+    /**
+     * @return le scheduler exécutant les écritures sur les connexions SSE
+     */
+    public Scheduler deliveryScheduler() {
+        return deliveryScheduler;
+    }
+
+    /**
+     * Libère les threads de livraison créés pour les threads virtuels lors de l'arrêt de l'application.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (virtual) {
+            deliveryScheduler.dispose();
+        }
+    }
+}
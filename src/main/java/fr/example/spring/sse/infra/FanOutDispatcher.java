@@ -0,0 +1,341 @@
+package fr.example.spring.sse.infra;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.example.spring.sse.product.model.ProductFilter;
+
+/**
+ * Distribution des trames d'une {@link SseBroadcast} à ses connexions abonnées.
+ * Les connexions peuvent être réparties entre plusieurs workers : chaque worker possède ses connexions dans son propre {@link SubscriberIndex} et reçoit les trames par une {@link SpscQueue}.
+ * Publier une trame coûte alors un dépôt par worker, et non un dépôt par connexion, et chaque worker ne touche
+ * qu'à ses propres connexions.
+ * Sans worker, les trames sont distribuées directement par le thread qui les publie.
+ * <p>
+ * Les méthodes sont appelées sous le verrou de la diffusion et n'attendent jamais un worker :
+ * <ul>
+ *     <li>une trame qui ne trouve pas de place dans la file d'un worker saturé est perdue pour ses connexions,
+ *     qui sont terminées avant la trame suivante afin que le client se reconnecte et récupère les trames perdues ;</li>
+ *     <li>les commandes d'abonnement passent par une file non bornée et portent la séquence de la dernière trame
+ *     déjà transmise à la connexion : le worker ne lui distribue que les trames suivantes, ce qui préserve la garantie
+ *     de réception exactement une fois lors de l'abonnement.</li>
+ * </ul>
+ * Un worker ne prend jamais ce verrou.
+ */
+final class FanOutDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(FanOutDispatcher.class);
+
+    private static final int QUEUE_CAPACITY = 4096;
+    // Attente active avant de suspendre un worker sans travail : une rafale de trames ne paie pas de réveil
+    private static final int SPIN_LIMIT = 256;
+
+    private final String name;
+    private final SubscriberIndex inline;
+    private final Shard[] shards;
+
+    /**
+     * @param name    le nom de la diffusion, repris dans le nom des workers
+     * @param workers le nombre de workers, 0 pour distribuer les trames depuis le thread qui les publie
+     * @param threads crée le constructeur de thread de chaque worker à partir de son nom
+     */
+    FanOutDispatcher(String name, int workers, Function<String, Thread.Builder> threads) {
+        this.name = name;
+        this.inline = workers == 0 ? new SubscriberIndex() : null;
+        this.shards = new Shard[workers];
+        for (var i = 0; i < workers; i++) {
+            shards[i] = new Shard(i);
+            shards[i].worker = threads.apply("sse-dispatch-" + name + "-" + i).unstarted(shards[i]);
+        }
+        for (Shard shard : shards) {
+            shard.worker.start();
+        }
+    }
+
+    /**
+     * Abonne une connexion : elle recevra les trames distribuées dont la séquence est supérieure à {@code after}.
+     *
+     * @param subscriber la connexion à abonner
+     * @param after      la séquence de la dernière trame déjà transmise à la connexion, par rejeu ou par instantané
+     */
+    void add(FrameSubscriber subscriber, long after) {
+        if (inline != null) {
+            inline.add(subscriber);
+        } else {
+            shardOf(subscriber).command(new Add(subscriber, after));
+        }
+    }
+
+    /**
+     * Désabonne une connexion : elle ne recevra plus les trames distribuées après cet appel.
+     *
+     * @param subscriber la connexion à désabonner
+     */
+    void remove(FrameSubscriber subscriber) {
+        if (inline != null) {
+            inline.remove(subscriber);
+        } else {
+            shardOf(subscriber).command(new Remove(subscriber));
+        }
+    }
+
+    /**
+     * Désabonne une connexion depuis le worker qui lui distribue les trames, par exemple lorsqu'un dépôt
+     * la termine, sans attendre le verrou de la diffusion. Le retrait est différé après la trame en cours de
+     * distribution.
+     *
+     * @param subscriber la connexion à désabonner
+     * @return {@code false} si l'appelant n'est pas le worker de la connexion
+     */
+    boolean removeFromWorker(FrameSubscriber subscriber) {
+        if (inline != null) {
+            return false;
+        }
+        final var shard = shardOf(subscriber);
+        if (Thread.currentThread() != shard.worker) {
+            return false;
+        }
+        shard.removed.add(subscriber);
+        return true;
+    }
+
+    /**
+     * Distribue une trame aux connexions intéressées, sans attendre qu'elle leur soit déposée.
+     *
+     * @param frame la trame à distribuer
+     */
+    void dispatch(SseFrame frame) {
+        if (inline != null) {
+            dispatch(inline, frame);
+        } else {
+            for (Shard shard : shards) {
+                shard.enqueue(frame);
+            }
+        }
+    }
+
+    /**
+     * Désabonne et termine les connexions dont le filtre vérifie le prédicat.
+     *
+     * @param filter le prédicat appliqué au filtre de chaque connexion
+     */
+    void disconnect(Predicate<ProductFilter> filter) {
+        if (inline != null) {
+            disconnect(inline, List.of(), filter);
+        } else {
+            for (Shard shard : shards) {
+                shard.command(new Disconnect(filter));
+            }
+        }
+    }
+
+    /**
+     * Arrête les workers. Les trames et commandes encore en file sont abandonnées.
+     */
+    void close() {
+        for (Shard shard : shards) {
+            shard.worker.interrupt();
+        }
+    }
+
+    private Shard shardOf(FrameSubscriber subscriber) {
+        return shards[Math.floorMod(System.identityHashCode(subscriber), shards.length)];
+    }
+
+    private static void dispatch(SubscriberIndex index, SseFrame frame) {
+        if (frame.product() == null) {
+            index.forEach(subscriber -> subscriber.offer(frame));
+        } else {
+            index.forEachInterested(frame.product(), subscriber -> subscriber.offer(frame));
+        }
+    }
+
+    private void disconnect(SubscriberIndex index, List<Add> deferred, Predicate<ProductFilter> filter) {
+        final var closing = new ArrayList<FrameSubscriber>();
+        index.forEach(subscriber -> {
+            if (filter.test(subscriber.filter())) {
+                closing.add(subscriber);
+            }
+        });
+        closing.forEach(index::remove);
+        deferred.removeIf(add -> filter.test(add.subscriber().filter()) && closing.add(add.subscriber()));
+
+        closing.forEach(FrameSubscriber::complete);
+        if (!closing.isEmpty()) {
+            log.info("Closed {} SSE connections of broadcast {}", closing.size(), name);
+        }
+    }
+
+    /**
+     * Worker de distribution : seul son thread accède à son index, alimenté par ses files.
+     */
+    private final class Shard implements Runnable {
+
+        private final int id;
+        private final SubscriberIndex index = new SubscriberIndex();
+        // Trames et marqueurs de trames perdues, déposés sous le verrou de la diffusion
+        private final SpscQueue<Object> frames = new SpscQueue<>(QUEUE_CAPACITY);
+        private final Queue<Object> commands = new ConcurrentLinkedQueue<>();
+        // Connexions abonnées qui attendent une trame postérieure à celles qui leur ont déjà été transmises
+        private final List<Add> deferred = new ArrayList<>();
+        // Connexions désabonnées pendant la distribution d'une trame, retirées une fois le parcours de l'index terminé
+        private final List<FrameSubscriber> removed = new ArrayList<>();
+        private Thread worker;
+        private volatile boolean parked;
+        // Trames perdues depuis le dernier marqueur déposé, modifiées uniquement sous le verrou de la diffusion
+        private int lostFrames;
+        private long lostUpTo;
+
+        Shard(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Dépose une trame dans la file du worker, précédée d'un marqueur si des trames ont été perdues.
+         * Si la file est pleine, la trame est perdue : la diffusion n'attend jamais un worker saturé.
+         */
+        void enqueue(SseFrame frame) {
+            if (lostFrames > 0) {
+                if (!frames.offer(new Lost(lostFrames, lostUpTo))) {
+                    lose(frame);
+                    return;
+                }
+                lostFrames = 0;
+            }
+            if (!frames.offer(frame)) {
+                lose(frame);
+                return;
+            }
+            wake();
+        }
+
+        private void lose(SseFrame frame) {
+            if (lostFrames++ == 0) {
+                log.warn("SSE dispatch worker {} of broadcast {} is saturated, dropping frames", id, name);
+            }
+            lostUpTo = frame.sequence();
+        }
+
+        void command(Object command) {
+            commands.add(command);
+            wake();
+        }
+
+        private void wake() {
+            if (parked) {
+                LockSupport.unpark(worker);
+            }
+        }
+
+        @Override
+        public void run() {
+            var idle = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                final var item = frames.poll();
+                // Les commandes déposées avant la trame sont appliquées avant sa distribution
+                applyCommands();
+                if (item == null) {
+                    if (++idle < SPIN_LIMIT) {
+                        Thread.onSpinWait();
+                    } else {
+                        // Le drapeau est publié avant de revérifier les files : un dépôt concurrent voit le drapeau
+                        // et réveille le worker, ou le worker voit le dépôt et ne se suspend pas
+                        parked = true;
+                        if (frames.isEmpty() && commands.isEmpty()) {
+                            LockSupport.park(this);
+                        }
+                        parked = false;
+                        idle = 0;
+                    }
+                    continue;
+                }
+
+                idle = 0;
+                try {
+                    switch (item) {
+                        case SseFrame frame -> {
+                            activate(frame.sequence());
+                            dispatch(index, frame);
+                        }
+                        case Lost lost -> {
+                            activate(lost.upTo());
+                            index.forEach(subscriber -> subscriber.missed(lost.frames()));
+                        }
+                        default -> throw new IllegalStateException("Unexpected dispatch item " + item);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("SSE dispatch worker {} of broadcast {} failed to process {}", id, name, item, e);
+                }
+                flushRemoved();
+            }
+        }
+
+        private void applyCommands() {
+            for (var command = commands.poll(); command != null; command = commands.poll()) {
+                try {
+                    switch (command) {
+                        case Add add -> deferred.add(add);
+                        case Remove remove -> {
+                            index.remove(remove.subscriber());
+                            deferred.removeIf(add -> add.subscriber() == remove.subscriber());
+                        }
+                        case Disconnect disconnect -> disconnect(index, deferred, disconnect.filter());
+                        default -> throw new IllegalStateException("Unexpected dispatch command " + command);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("SSE dispatch worker {} of broadcast {} failed to process {}", id, name, command, e);
+                }
+                flushRemoved();
+            }
+        }
+
+        /**
+         * Ajoute à l'index les connexions auxquelles la trame de séquence donnée n'a pas encore été transmise.
+         */
+        private void activate(long sequence) {
+            if (deferred.isEmpty()) {
+                return;
+            }
+            deferred.removeIf(add -> {
+                if (add.after() >= sequence) {
+                    return false;
+                }
+                index.add(add.subscriber());
+                return true;
+            });
+        }
+
+        private void flushRemoved() {
+            if (!removed.isEmpty()) {
+                removed.forEach(index::remove);
+                removed.clear();
+            }
+        }
+    }
+
+    private record Add(FrameSubscriber subscriber, long after) {
+    }
+
+    private record Remove(FrameSubscriber subscriber) {
+    }
+
+    private record Disconnect(Predicate<ProductFilter> filter) {
+    }
+
+    /**
+     * Marqueur de trames perdues, le worker étant saturé.
+     *
+     * @param frames le nombre de trames perdues
+     * @param upTo   la séquence de la dernière trame perdue
+     */
+    private record Lost(int frames, long upTo) {
+    }
+}
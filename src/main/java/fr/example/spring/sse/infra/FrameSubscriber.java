@@ -0,0 +1,47 @@
+package fr.example.spring.sse.infra;
+
+import java.util.List;
+
+import fr.example.spring.sse.product.model.ProductFilter;
+
+/**
+ * Connexion abonnée à une {@link SseBroadcast}, quelle que soit la pile HTTP qui la sert.
+ * Les méthodes sont appelées sous le verrou de la diffusion ou par un worker de distribution, et ne doivent jamais
+ * bloquer.
+ */
+interface FrameSubscriber {
+
+    /**
+     * @return le filtre des produits auxquels la connexion est abonnée
+     */
+    ProductFilter filter();
+
+    /**
+     * Dépose une trame diffusée dans le tampon de la connexion.
+     *
+     * @param frame la trame à envoyer
+     */
+    void offer(SseFrame frame);
+
+    /**
+     * Dépose les trames à rejouer au client lors de sa connexion.
+     *
+     * @param frames les trames à rejouer, dans l'ordre de diffusion
+     */
+    void replay(List<SseFrame> frames);
+
+    /**
+     * Signale que des trames diffusées n'ont pas pu être transmises à la connexion, son worker de distribution
+     * étant saturé. Quelle que soit sa politique de débordement, la connexion est terminée : elle ne peut pas savoir
+     * quels produits les trames perdues concernaient, et le client qui se reconnecte avec son Last-Event-ID reçoit
+     * ces trames par rejeu, ou l'état complet des produits suivis.
+     *
+     * @param frames le nombre de trames perdues
+     */
+    void missed(int frames);
+
+    /**
+     * Termine la connexion à la demande de la diffusion. Le client se reconnectera.
+     */
+    void complete();
+}
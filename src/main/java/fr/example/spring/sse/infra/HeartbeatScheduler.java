@@ -0,0 +1,81 @@
+package fr.example.spring.sse.infra;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import reactor.core.Disposable;
+
+/**
+ * Planificateur de heartbeats partagé par toutes les connexions SSE.
+ * Repose sur une roue temporelle (hashed timing wheel) comportant une case par seconde de l'intervalle de heartbeat :
+ * chaque connexion est rangée dans une case et reçoit un heartbeat à chaque tour de roue, soit toutes les
+ * {@code heartbeatIntervalSeconds} secondes.
+ * Un unique thread fait avancer la roue, quel que soit le nombre de connexions ouvertes.
+ */
+@Component
+public class HeartbeatScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(HeartbeatScheduler.class);
+
+    private final List<Set<Runnable>> wheel;
+    private final ScheduledExecutorService ticker;
+    private volatile int cursor;
+
+    public HeartbeatScheduler(ApplicationProperties applicationProperties, ExecutionThreads executionThreads) {
+        this.wheel = IntStream.range(0, applicationProperties.heartbeatIntervalSeconds())
+                .<Set<Runnable>>mapToObj(slot -> ConcurrentHashMap.newKeySet())
+                .toList();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(executionThreads.thread("sse-heartbeat").factory());
+        this.ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Enregistre un heartbeat à exécuter immédiatement puis à chaque intervalle de heartbeat.
+     *
+     * @param heartbeat l'action envoyant le heartbeat à une connexion
+     * @return un {@link Disposable} permettant de désinscrire le heartbeat à la fermeture de la connexion
+     */
+    public Disposable schedule(Runnable heartbeat) {
+        heartbeat.run();
+
+        // La case venant d'être parcourue est la dernière à être revisitée : le prochain heartbeat
+        // sera donc émis un tour de roue complet plus tard
+        final var slot = wheel.get(Math.floorMod(cursor - 1, wheel.size()));
+        slot.add(heartbeat);
+        return () -> slot.remove(heartbeat);
+    }
+
+    /**
+     * Exécute les heartbeats de la case courante puis avance la roue d'une case.
+     */
+    private void tick() {
+        final var current = cursor;
+        for (Runnable heartbeat : wheel.get(current)) {
+            try {
+                heartbeat.run();
+            } catch (RuntimeException e) {
+                log.warn("Heartbeat failed", e);
+            }
+        }
+        cursor = (current + 1) % wheel.size();
+    }
+
+    /**
+     * Arrête le thread de la roue lors de l'arrêt de l'application.
+     */
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,96 @@
+package fr.example.spring.sse.infra;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Registre des canaux PostgreSQL écoutés, avec un {@link Sinks.Many} par canal.
+ * Un composant déclare un canal en s'abonnant au flux de ce canal : le canal est écouté tant qu'il a au moins un abonné.
+ * La {@link PostgreSQLChangeSource} active multiplexe tous les canaux déclarés sur sa connexion et y route
+ * chaque changement par une simple recherche du canal : un canal supplémentaire ne ralentit pas les autres.
+ * Un abonné sans demande ne bloque pas les autres : l'isolation des connexions SSE lentes
+ * est assurée par leur tampon propre.
+ */
+@Component
+public class NotificationChannels {
+
+    // Le nom est concaténé aux commandes LISTEN et UNLISTEN : seuls les identifiants simples sont acceptés
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    // Incrémentée à chaque ajout ou retrait de canal, pour que la source ne compare les canaux qu'après un changement
+    private final AtomicLong revision = new AtomicLong();
+
+    /**
+     * Retourne le flux des changements publiés sur un canal.
+     * Le canal est déclaré au premier abonnement et retiré lorsque son dernier abonné se désabonne.
+     *
+     * @param name le nom du canal PostgreSQL
+     * @return le flux des changements du canal
+     * @throws IllegalArgumentException si le nom du canal n'est pas un identifiant PostgreSQL simple
+     */
+    public Flux<SequencedNotification> listen(String name) {
+        if (!CHANNEL_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid PostgreSQL channel name " + name);
+        }
+
+        return Flux.defer(() -> {
+            final var channel = channels.compute(name, (key, existing) -> {
+                final var registered = existing == null ? new Channel() : existing;
+                registered.subscribers++;
+                return registered;
+            });
+            revision.incrementAndGet();
+            return channel.sink.asFlux().doFinally(signal -> release(name));
+        });
+    }
+
+    private void release(String name) {
+        channels.computeIfPresent(name, (key, channel) -> --channel.subscribers == 0 ? null : channel);
+        revision.incrementAndGet();
+    }
+
+    /**
+     * Publie un changement sur le sink de son canal.
+     *
+     * @param notification le changement à publier
+     * @return le résultat de l'émission ; {@link Sinks.EmitResult#FAIL_ZERO_SUBSCRIBER} si le canal n'est pas déclaré
+     */
+    Sinks.EmitResult route(SequencedNotification notification) {
+        final var channel = channels.get(notification.channel());
+        if (channel == null) {
+            return Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER;
+        }
+        return channel.sink.tryEmitNext(notification);
+    }
+
+    /**
+     * @return les canaux actuellement déclarés
+     */
+    Set<String> names() {
+        return Set.copyOf(channels.keySet());
+    }
+
+    /**
+     * @return le numéro de révision du registre, modifié à chaque ajout ou retrait de canal
+     */
+    long revision() {
+        return revision.get();
+    }
+
+    /**
+     * Canal déclaré : son sink et son nombre d'abonnés, modifié uniquement sous le verrou de la table.
+     */
+    private static final class Channel {
+        private final Sinks.Many<SequencedNotification> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+    }
+}
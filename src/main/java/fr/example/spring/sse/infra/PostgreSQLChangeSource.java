@@ -0,0 +1,243 @@
+package fr.example.spring.sse.infra;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Source des changements PostgreSQL publiés sur le sink de leur canal, déclaré dans les {@link NotificationChannels}.
+ * Cette classe gère le thread dédié, l'attribution des numéros de séquence et la reconnexion avec un délai
+ * exponentiel entre les tentatives ; chaque implémentation fournit sa connexion et sa manière de lire les changements.
+ * L'implémentation active est choisie par la propriété {@code app.change-source}.
+ */
+public abstract class PostgreSQLChangeSource {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgreSQLChangeSource.class);
+
+    private final NotificationChannels notificationChannels;
+    private final ApplicationProperties applicationProperties;
+    private final String threadName;
+    private final ExecutionThreads executionThreads;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> receivedByChannel = new ConcurrentHashMap<>();
+    // Initialisée à partir de l'horloge au démarrage : les séquences d'une instance précédente sont toujours inférieures
+    private final AtomicLong sequence = new AtomicLong(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+    private Thread sourceThread;
+    private volatile Connection currentConnection;
+
+    protected PostgreSQLChangeSource(
+            NotificationChannels notificationChannels,
+            ApplicationProperties applicationProperties,
+            ExecutionThreads executionThreads,
+            MeterRegistry meterRegistry,
+            String threadName) {
+
+        this.notificationChannels = notificationChannels;
+        this.applicationProperties = applicationProperties;
+        this.executionThreads = executionThreads;
+        this.meterRegistry = meterRegistry;
+        this.threadName = threadName;
+    }
+
+    /**
+     * Démarre le thread de lecture des changements, qui ouvre et maintient sa propre connexion.
+     * La lecture ne démarre qu'une fois l'application prête, lorsque les composants ont déclaré leurs canaux :
+     * un changement lu plus tôt ne serait routé vers aucun abonné.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        this.sourceThread = executionThreads.thread(threadName).start(this::run);
+    }
+
+    /**
+     * Ouvre la connexion utilisée pour lire les changements.
+     *
+     * @return une nouvelle connexion
+     * @throws SQLException si la connexion ne peut pas être ouverte
+     */
+    protected abstract Connection openConnection() throws SQLException;
+
+    /**
+     * Prépare la connexion à la lecture des changements, y compris après une reconnexion.
+     *
+     * @param connection la connexion ouverte par {@link #openConnection()}
+     * @throws SQLException si une erreur SQL se produit lors de la préparation
+     */
+    protected abstract void prepare(Connection connection) throws SQLException;
+
+    /**
+     * Lit les changements disponibles et les publie avec {@link #publish(PGNotification)}.
+     * Cette méthode est appelée en boucle jusqu'à l'interruption du thread ou la perte de la connexion.
+     *
+     * @param connection la connexion préparée par {@link #prepare(Connection)}
+     * @throws SQLException si la connexion est perdue
+     */
+    protected abstract void stream(Connection connection) throws SQLException;
+
+    /**
+     * Indique si des changements ont pu être perdus pendant une coupure de connexion, auquel cas un signal
+     * de resynchronisation est publié après la reconnexion. Il l'est aussi après la première connexion :
+     * un changement validé entre le chargement initial des abonnés et la préparation de la connexion serait sinon perdu.
+     *
+     * @return {@code true} si les changements survenus pendant la coupure sont perdus
+     */
+    protected abstract boolean losesChangesOnReconnect();
+
+    /**
+     * @return le registre des canaux déclarés par les composants abonnés aux changements
+     */
+    protected NotificationChannels notificationChannels() {
+        return notificationChannels;
+    }
+
+    /**
+     * Toute erreur SQL entraîne la fermeture de la connexion puis une nouvelle tentative après un délai
+     * doublant à chaque échec, jusqu'au délai maximal configuré.
+     */
+    private void run() {
+        final var listener = applicationProperties.listener();
+        var backoff = listener.initialBackoff();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Connection connection = openConnection()) {
+                currentConnection = connection;
+                prepare(connection);
+
+                backoff = listener.initialBackoff();
+                if (losesChangesOnReconnect()) {
+                    // Changes sent while the connection was down, or before it was first prepared, are lost:
+                    // ask subscribers to resync
+                    publishResync();
+                }
+
+                while (!Thread.currentThread().isInterrupted()) {
+                    stream(connection);
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                log.warn("Lost PostgreSQL {} connection, reconnecting in {}", threadName, backoff, e);
+                if (!sleep(backoff)) {
+                    return;
+                }
+                backoff = min(backoff.multipliedBy(2), listener.maxBackoff());
+            } finally {
+                currentConnection = null;
+            }
+        }
+    }
+
+    /**
+     * Publie un signal de resynchronisation pour chacun des canaux.
+     */
+    private void publishResync() {
+        log.info("PostgreSQL {} connected, publishing resync signal", threadName);
+        notificationChannels.names().forEach(channel -> emit(SequencedNotification.resync(sequence.incrementAndGet(), channel)));
+    }
+
+    /**
+     * Attribue un numéro de séquence global au changement puis le publie sur le sink de son canal.
+     * Les abonnés du canal étant appelés sur le thread courant, le changement a été traité par ses abonnés au retour
+     * de cette méthode : appliqué au catalogue et déposé dans le tampon des connexions SSE, sans attendre son envoi
+     * aux clients.
+     *
+     * @param notification le changement, sous la forme d'une notification PostgreSQL
+     */
+    protected void publish(PGNotification notification) {
+        emit(SequencedNotification.of(sequence.incrementAndGet(), notification));
+    }
+
+    /**
+     * Attribue un numéro de séquence global au changement puis le publie sur le sink de son canal.
+     *
+     * @param channel le canal du changement
+     * @param pid     l'identifiant du processus serveur, ou de la transaction, à l'origine du changement
+     * @param payload le contenu du changement
+     * @return {@code false} si le changement n'a pu être remis à aucun abonné du canal
+     */
+    protected boolean publish(String channel, int pid, String payload) {
+        return emit(new SequencedNotification(sequence.incrementAndGet(), channel, pid, payload, false));
+    }
+
+    /**
+     * Publie le changement sur le sink de son canal en comptant les changements reçus par canal et les échecs d'émission
+     * par {@link Sinks.EmitResult}.
+     *
+     * @return {@code false} si l'émission a échoué
+     */
+    private boolean emit(SequencedNotification notification) {
+        if (!notification.resync()) {
+            receivedByChannel.computeIfAbsent(notification.channel(), channel -> Counter.builder("pg.notifications.received")
+                            .description("Changements PostgreSQL reçus")
+                            .tag("channel", channel)
+                            .register(meterRegistry))
+                    .increment();
+        }
+
+        final var result = notificationChannels.route(notification);
+        if (result.isFailure()) {
+            Counter.builder("pg.notifications.emit.failures")
+                    .description("Changements PostgreSQL qui n'ont pas pu être publiés dans le sink")
+                    .tag("stage", "change-source")
+                    .tag("result", result.name())
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("Failed to publish PostgreSQL change {}: {}", notification.sequence(), result);
+            return false;
+        }
+        return true;
+    }
+
+    protected ApplicationProperties applicationProperties() {
+        return applicationProperties;
+    }
+
+    private static boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    /**
+     * Nettoie les ressources utilisées par la source lors de l'arrêt de l'application.
+     * Interrompt le thread de lecture et ferme la connexion à la base de données.
+     * Cette méthode est appelée automatiquement lors de la destruction du bean Spring.
+     *
+     * @throws SQLException si une erreur se produit lors de la fermeture de la connexion
+     */
+    @PreDestroy
+    public void cleanup() throws SQLException {
+        if (sourceThread != null) {
+            sourceThread.interrupt();
+        }
+        final var connection = currentConnection;
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
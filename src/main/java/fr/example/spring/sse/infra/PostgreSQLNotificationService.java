@@ -2,137 +2,157 @@ package fr.example.spring.sse.infra;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.postgresql.PGConnection;
 import org.postgresql.PGNotification;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import com.zaxxer.hikari.util.DriverDataSource;
 
 import fr.example.spring.sse.config.ApplicationProperties;
-import jakarta.annotation.PreDestroy;
-import reactor.core.publisher.Sinks;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import static java.util.Objects.isNull;
 
 /**
  * Service responsable de l'écoute des notifications PostgreSQL et de leur livraison aux consommateurs enregistrés.
  * Ce service gère les aspects techniques de la connexion à PostgreSQL et de l'écoute des notifications.
- * Utilise Project Reactor pour publier les notifications sur un sink partagé.
+ * Tous les canaux déclarés dans les {@link NotificationChannels} sont écoutés sur une même connexion :
+ * les commandes LISTEN et UNLISTEN sont envoyées à mesure que des canaux sont déclarés ou retirés.
+ * En cas de perte de la connexion d'écoute, celle-ci est rétablie avec un délai exponentiel entre les tentatives,
+ * puis un signal de resynchronisation est publié pour que les abonnés rattrapent les notifications manquées.
+ * Ce signal est aussi publié après la première connexion, les notifications antérieures au premier LISTEN étant perdues.
+ * C'est la source de changements par défaut ({@code app.change-source: listen}).
  */
 @Component
-public class PostgreSQLNotificationService {
+@ConditionalOnProperty(prefix = "app", name = "change-source", havingValue = "listen", matchIfMissing = true)
+public class PostgreSQLNotificationService extends PostgreSQLChangeSource {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgreSQLNotificationService.class);
+
+    // Délai maximal de prise en compte d'un canal déclaré ou retiré
+    private static final int CHANNEL_REFRESH_MILLIS = 200;
 
-    private final Thread listenerThread;
-    private final Sinks.Many<PGNotification> pgNotificationSink;
-    private final ApplicationProperties applicationProperties;
-    private final JdbcTemplate listenerConnection;
     private final DriverDataSource listenerConnectionSource;
+    // Canaux écoutés sur la connexion courante et révision du registre correspondante, accédés par le seul thread d'écoute
+    private final Set<String> listened = new HashSet<>();
+    private long listenedRevision = -1;
+    private long idleSince;
 
     /**
      * Constructeur du service de notification PostgreSQL.
-     * Initialise les connexions et démarre le thread d'écoute des notifications.
      *
-     * @param pgNotificationSink       le sink pour publier les notifications PostgreSQL
+     * @param notificationChannels     le registre des canaux à écouter, sur lesquels publier les notifications
      * @param applicationProperties    les propriétés de l'application contenant la configuration
-     * @param listenerConnection       la connexion JDBC utilisée pour l'écoute
      * @param listenerConnectionSource la source de données pour la connexion d'écoute
+     * @param executionThreads         le modèle d'exécution du thread d'écoute
+     * @param meterRegistry            le registre des métriques des changements reçus
      */
     public PostgreSQLNotificationService(
-            Sinks.Many<PGNotification> pgNotificationSink,
+            NotificationChannels notificationChannels,
             ApplicationProperties applicationProperties,
-            JdbcTemplate listenerConnection,
-            DriverDataSource listenerConnectionSource) {
+            DriverDataSource listenerConnectionSource,
+            ExecutionThreads executionThreads,
+            MeterRegistry meterRegistry) {
 
-        this.pgNotificationSink = pgNotificationSink;
-        this.applicationProperties = applicationProperties;
-        this.listenerConnection = listenerConnection;
+        super(notificationChannels, applicationProperties, executionThreads, meterRegistry, "listener-postgres");
         this.listenerConnectionSource = listenerConnectionSource;
-        this.listenerThread = Thread.ofPlatform()
-                .daemon(true)
-                .name("listener-postgres")
-                .start(publishNotification());
+    }
+
+    @Override
+    protected Connection openConnection() throws SQLException {
+        return listenerConnectionSource.getConnection();
     }
 
     /**
-     * Crée un Runnable qui écoute les notifications PostgreSQL et les publie dans le sink.
-     * Cette méthode est exécutée dans un thread dédié pour éviter de bloquer le thread principal.
+     * Configure la connexion PostgreSQL pour écouter les notifications sur chacun des canaux déclarés.
+     * Exécute la commande SQL "LISTEN" pour chaque canal, y compris après une reconnexion.
      *
-     * @return un Runnable qui gère l'écoute et la publication des notifications
+     * @param connection la connexion JDBC à utiliser pour l'écoute
+     * @throws SQLException si une erreur SQL se produit lors de la configuration de l'écoute
      */
-    private Runnable publishNotification() {
-        // Route the notification to the appropriate sink based on the channel name
-        // In PostgreSQL, getName() returns the channel name
-        return () -> listenerConnection.execute((Connection connection) -> {
-            try {
-
-                listenProductChange(connection);
-
-                final var pgconn = connection.unwrap(PGConnection.class);
-                while (!Thread.currentThread().isInterrupted()) {
-                    routeNotifications(pgconn);
-                }
-            } catch (SQLException e) {
-                // Only throw runtime exception if thread is not being interrupted
-                if (!Thread.currentThread().isInterrupted()) {
-                    throw new RuntimeException("Error while listening for notifications", e);
-                }
-            }
-            return 0;
-        });
+    @Override
+    protected void prepare(Connection connection) throws SQLException {
+        // Une nouvelle connexion n'écoute encore aucun canal
+        listened.clear();
+        listenedRevision = -1;
+        synchronizeChannels(connection);
+        idleSince = System.nanoTime();
     }
 
     /**
-     * Configure la connexion PostgreSQL pour écouter les notifications sur le canal spécifié.
-     * Exécute la commande SQL "LISTEN" avec le nom du canal défini dans les propriétés de l'application.
+     * Récupère les notifications PostgreSQL, leur attribue un numéro de séquence global et les publie sur le sink
+     * de leur canal.
+     * Cette méthode est appelée en boucle dans le thread d'écoute pour traiter les notifications entrantes.
+     * L'attente d'une notification est découpée en courtes périodes, entre lesquelles les canaux déclarés ou retirés
+     * sont pris en compte. Sans notification pendant le délai configuré, la connexion est vérifiée
+     * afin de détecter une coupure silencieuse.
      *
-     * @param connection la connexion JDBC à utiliser pour l'écoute
-     * @throws RuntimeException si une erreur SQL se produit lors de la configuration de l'écoute
+     * @param connection la connexion JDBC d'écoute
+     * @throws SQLException si la connexion est perdue
      */
-    private void listenProductChange(Connection connection) {
-        try {
-            connection.createStatement().execute("LISTEN " + applicationProperties.channelToListen());
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    @Override
+    protected void stream(Connection connection) throws SQLException {
+        synchronizeChannels(connection);
+
+        final var listener = applicationProperties().listener();
+        final var timeout = (int) Math.min(listener.pollTimeout().toMillis(), CHANNEL_REFRESH_MILLIS);
+        PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(timeout);
+        if (isNull(notifications) || notifications.length == 0) {
+            if (System.nanoTime() - idleSince >= listener.pollTimeout().toNanos()) {
+                if (!connection.isValid((int) listener.validationTimeout().toSeconds())) {
+                    throw new SQLException("PostgreSQL listener connection is no longer valid");
+                }
+                idleSince = System.nanoTime();
+            }
+            return;
+        }
+
+        idleSince = System.nanoTime();
+        for (PGNotification notification : notifications) {
+            publish(notification);
         }
     }
 
     /**
-     * Récupère les notifications PostgreSQL et les publie dans le sink.
-     * Cette méthode est appelée en boucle dans le thread d'écoute pour traiter les notifications entrantes.
-     *
-     * @param pgconn la connexion PostgreSQL à partir de laquelle récupérer les notifications
-     * @throws RuntimeException si une erreur SQL se produit lors de la récupération des notifications
+     * Aligne les canaux écoutés par la connexion sur les canaux déclarés, si le registre a changé.
      */
-    private void routeNotifications(PGConnection pgconn) {
-        try {
-            if (!Thread.currentThread().isInterrupted()) {
+    private void synchronizeChannels(Connection connection) throws SQLException {
+        final var revision = notificationChannels().revision();
+        if (revision == listenedRevision) {
+            return;
+        }
 
-                PGNotification[] notifications = pgconn.getNotifications(0);
-                if (isNull(notifications)) {
-                    return;
+        final var declared = notificationChannels().names();
+        try (var statement = connection.createStatement()) {
+            for (String channel : declared) {
+                if (listened.add(channel)) {
+                    statement.execute("LISTEN " + channel);
+                    log.info("Listening to PostgreSQL notifications on {}", channel);
+                }
+            }
+            for (var iterator = listened.iterator(); iterator.hasNext(); ) {
+                final var channel = iterator.next();
+                if (!declared.contains(channel)) {
+                    statement.execute("UNLISTEN " + channel);
+                    iterator.remove();
+                    log.info("Stopped listening to PostgreSQL notifications on {}", channel);
                 }
-
-                Arrays.stream(notifications)
-                        .forEach(pgNotificationSink::tryEmitNext);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
+        listenedRevision = revision;
     }
 
     /**
-     * Nettoie les ressources utilisées par le service lors de l'arrêt de l'application.
-     * Ferme la connexion à la base de données et interrompt le thread d'écoute.
-     * Cette méthode est appelée automatiquement lors de la destruction du bean Spring.
-     *
-     * @throws SQLException si une erreur se produit lors de la fermeture de la connexion
+     * Les notifications envoyées pendant une coupure de la connexion d'écoute ne sont jamais redélivrées.
      */
-    @PreDestroy
-    public void cleanup() throws SQLException {
-        listenerConnectionSource.getConnection().close();
-        listenerThread.interrupt();
+    @Override
+    protected boolean losesChangesOnReconnect() {
+        return true;
     }
 }
@@ -0,0 +1,304 @@
+package fr.example.spring.sse.infra;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.PGReplicationStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Source de changements lisant le journal de transactions de PostgreSQL par réplication logique ({@code pgoutput}).
+ * Contrairement à LISTEN/NOTIFY, aucun trigger n'est nécessaire et aucun changement n'est perdu pendant une coupure :
+ * le slot de réplication conserve les changements jusqu'à leur acquittement.
+ * Les lignes de la table {@code produit} modifiées par une transaction sont publiées en un seul lot, au format
+ * des notifications du trigger, puis la position (LSN) de la transaction est acquittée une fois le lot traité
+ * par les abonnés du canal, c'est-à-dire appliqué au catalogue et déposé dans le tampon des connexions SSE.
+ * Le lot n'est pas pour autant écrit sur les connexions : un client déconnecté entre-temps le récupère par son
+ * Last-Event-ID, ou par l'état complet des produits si le tampon de rejeu ne le contient plus.
+ * Un lot qui n'a pu être remis à aucun abonné n'est pas acquitté : la connexion est rouverte et le slot le renvoie.
+ * La lecture au moins une fois est ainsi garantie jusqu'au modèle de lecture, y compris après un redémarrage.
+ * Activée par {@code app.change-source: logical-replication}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app", name = "change-source", havingValue = "logical-replication")
+public class PostgreSQLReplicationService extends PostgreSQLChangeSource {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgreSQLReplicationService.class);
+    private static final String PRODUIT_TABLE = "produit";
+    // Les horodatages pgoutput sont exprimés en microsecondes depuis le 2000-01-01 UTC
+    private static final long POSTGRES_EPOCH_MILLIS = 946_684_800_000L;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final ApplicationProperties.Replication replication;
+
+    // État propre au thread de lecture, réinitialisé à chaque connexion
+    private final Map<Integer, Relation> relations = new HashMap<>();
+    private PGReplicationStream replicationStream;
+    private ArrayNode transaction;
+    private int xid;
+    private long committedAt;
+
+    public PostgreSQLReplicationService(
+            NotificationChannels notificationChannels,
+            ApplicationProperties applicationProperties,
+            DataSourceProperties dataSourceProperties,
+            ObjectMapper objectMapper,
+            ExecutionThreads executionThreads,
+            MeterRegistry meterRegistry) {
+
+        super(notificationChannels, applicationProperties, executionThreads, meterRegistry, "replication-postgres");
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.replication = applicationProperties.replication();
+    }
+
+    /**
+     * Ouvre une connexion de réplication, qui ne peut pas provenir du pool de connexions.
+     */
+    @Override
+    protected Connection openConnection() throws SQLException {
+        final var properties = new Properties();
+        PGProperty.USER.set(properties, dataSourceProperties.determineUsername());
+        PGProperty.PASSWORD.set(properties, dataSourceProperties.determinePassword());
+        PGProperty.REPLICATION.set(properties, "database");
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "10");
+        PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+
+    /**
+     * Crée si besoin la publication et le slot de réplication, puis démarre la lecture à partir de la dernière
+     * position acquittée du slot.
+     */
+    @Override
+    protected void prepare(Connection connection) throws SQLException {
+        final var pgConnection = connection.unwrap(PGConnection.class);
+        createPublicationIfAbsent(connection);
+        createSlotIfAbsent(connection, pgConnection);
+
+        relations.clear();
+        transaction = null;
+        replicationStream = pgConnection.getReplicationAPI()
+                .replicationStream()
+                .logical()
+                .withSlotName(replication.slotName())
+                .withSlotOption("proto_version", 1)
+                .withSlotOption("publication_names", replication.publicationName())
+                .withStatusInterval((int) replication.statusInterval().toMillis(), TimeUnit.MILLISECONDS)
+                .start();
+        log.info("Streaming PostgreSQL changes from replication slot {}", replication.slotName());
+    }
+
+    private void createPublicationIfAbsent(Connection connection) throws SQLException {
+        try (var statement = connection.prepareStatement("SELECT 1 FROM pg_publication WHERE pubname = ?")) {
+            statement.setString(1, replication.publicationName());
+            try (var resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return;
+                }
+            }
+        }
+        try (var statement = connection.createStatement()) {
+            // Le nom est validé par la configuration : un identifiant ne peut pas être passé en paramètre
+            statement.execute("CREATE PUBLICATION " + replication.publicationName() + " FOR TABLE " + PRODUIT_TABLE);
+        }
+        log.info("Created PostgreSQL publication {}", replication.publicationName());
+    }
+
+    private void createSlotIfAbsent(Connection connection, PGConnection pgConnection) throws SQLException {
+        try (var statement = connection.prepareStatement("SELECT 1 FROM pg_replication_slots WHERE slot_name = ?")) {
+            statement.setString(1, replication.slotName());
+            try (var resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return;
+                }
+            }
+        }
+        pgConnection.getReplicationAPI()
+                .createReplicationSlot()
+                .logical()
+                .withSlotName(replication.slotName())
+                .withOutputPlugin("pgoutput")
+                .make();
+        log.info("Created PostgreSQL replication slot {}", replication.slotName());
+    }
+
+    /**
+     * Lit le prochain message du flux de réplication et le décode selon le protocole {@code pgoutput}.
+     * Les messages autres que BEGIN, RELATION, INSERT, UPDATE et COMMIT sont ignorés.
+     */
+    @Override
+    protected void stream(Connection connection) throws SQLException {
+        final var buffer = replicationStream.read();
+        if (buffer == null) {
+            return;
+        }
+
+        switch (buffer.get()) {
+            case 'B' -> {
+                // Final LSN et horodatage de validation de la transaction, puis son identifiant
+                buffer.position(buffer.position() + 8);
+                committedAt = POSTGRES_EPOCH_MILLIS + buffer.getLong() / 1000;
+                xid = buffer.getInt();
+                transaction = objectMapper.createArrayNode();
+            }
+            case 'R' -> {
+                final var relationId = buffer.getInt();
+                readString(buffer);
+                final var name = readString(buffer);
+                buffer.get();
+                final var columns = new ArrayList<String>();
+                for (int i = 0, count = buffer.getShort(); i < count; i++) {
+                    buffer.get();
+                    columns.add(readString(buffer));
+                    // Type et modificateur de type de la colonne
+                    buffer.position(buffer.position() + 8);
+                }
+                relations.put(relationId, new Relation(name, columns));
+            }
+            case 'I' -> {
+                final var relation = relations.get(buffer.getInt());
+                buffer.get();
+                addRow(relation, buffer);
+            }
+            case 'U' -> {
+                final var relation = relations.get(buffer.getInt());
+                final var kind = buffer.get();
+                if (kind == 'K' || kind == 'O') {
+                    // Ancienne version de la ligne, présente uniquement si la clé a changé ou en REPLICA IDENTITY FULL
+                    skipTuple(buffer);
+                    buffer.get();
+                }
+                addRow(relation, buffer);
+            }
+            case 'C' -> commit();
+            default -> {
+                // DELETE, TRUNCATE, TYPE, ORIGIN, MESSAGE : sans effet sur les quantités diffusées
+            }
+        }
+    }
+
+    /**
+     * Publie les lignes modifiées par la transaction, puis acquitte sa position : le slot ne la renverra plus.
+     * Les abonnés du canal étant appelés sur ce thread, l'acquittement n'a lieu qu'une fois le lot traité par eux.
+     * Si le lot n'a pu être remis à aucun abonné, la position n'est pas acquittée et la connexion est rouverte
+     * après un délai, à partir de la dernière position acquittée.
+     */
+    private void commit() {
+        final var changes = transaction;
+        transaction = null;
+        if (changes != null && !changes.isEmpty()
+                && !publish(applicationProperties().channelToListen(), xid, changes.toString())) {
+            throw new IllegalStateException("Transaction " + xid + " could not be routed, it will be read again from the replication slot");
+        }
+
+        final var lsn = replicationStream.getLastReceiveLSN();
+        replicationStream.setAppliedLSN(lsn);
+        replicationStream.setFlushedLSN(lsn);
+    }
+
+    /**
+     * Ajoute à la transaction la ligne lue au format texte. Une valeur TOAST inchangée n'est pas transmise par
+     * {@code pgoutput} : le champ est omis plutôt que publié comme nul, et le prix est alors lu dans le cache.
+     */
+    private void addRow(Relation relation, ByteBuffer buffer) {
+        if (relation == null || transaction == null || !PRODUIT_TABLE.equals(relation.name())) {
+            return;
+        }
+
+        final var row = objectMapper.createObjectNode();
+        row.put("ts", committedAt);
+        for (int i = 0, count = buffer.getShort(); i < count; i++) {
+            final var kind = buffer.get();
+            if (kind == 'u' || i >= relation.columns().size()) {
+                skipValue(kind, buffer);
+                continue;
+            }
+            final var value = kind == 't' ? readValue(buffer) : null;
+            switch (relation.columns().get(i)) {
+                case "id" -> row.put("id", value == null ? null : Integer.valueOf(value));
+                case "ean" -> row.put("ean", value);
+                case "nom" -> row.put("nom", value);
+                case "quantite" -> row.put("quantite", value == null ? null : Integer.valueOf(value));
+                // Transmis sous forme de texte pour conserver l'échelle du DECIMAL
+                case "prix" -> row.put("prix", value);
+                default -> {
+                    // Colonne sans effet sur les produits diffusés
+                }
+            }
+        }
+        transaction.add(row);
+    }
+
+    /**
+     * Le slot de réplication conserve les changements survenus pendant une coupure : aucune resynchronisation
+     * n'est nécessaire.
+     */
+    @Override
+    protected boolean losesChangesOnReconnect() {
+        return false;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final var start = buffer.position();
+        while (buffer.get() != 0) {
+            // Chaîne terminée par un octet nul
+        }
+        return new String(buffer.array(), buffer.arrayOffset() + start, buffer.position() - start - 1, StandardCharsets.UTF_8);
+    }
+
+    private static String readValue(ByteBuffer buffer) {
+        final var length = buffer.getInt();
+        final var value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void skipTuple(ByteBuffer buffer) {
+        for (int i = 0, count = buffer.getShort(); i < count; i++) {
+            skipValue(buffer.get(), buffer);
+        }
+    }
+
+    /**
+     * Passe une valeur : seules les valeurs texte ({@code t}) ont un contenu, les valeurs nulles ({@code n})
+     * et TOAST inchangées ({@code u}) se limitent à leur type.
+     */
+    private static void skipValue(byte kind, ByteBuffer buffer) {
+        if (kind == 't') {
+            final var length = buffer.getInt();
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    /**
+     * Description d'une table, envoyée par {@code pgoutput} avant la première ligne la concernant.
+     *
+     * @param name    le nom de la table
+     * @param columns le nom des colonnes, dans l'ordre des valeurs des lignes
+     */
+    private record Relation(String name, List<String> columns) {
+    }
+}
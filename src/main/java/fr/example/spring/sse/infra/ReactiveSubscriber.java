@@ -0,0 +1,130 @@
+package fr.example.spring.sse.infra;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.config.ApplicationProperties.OverflowPolicy;
+import fr.example.spring.sse.product.model.ProductFilter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Connexion SSE servie par la pile non bloquante Reactor Netty.
+ * Les trames diffusées sont publiées dans un {@link Sinks.Many} propre à la connexion, dont la file est bornée
+ * à la taille du tampon configurée : la demande du socket la vide, et la {@link OverflowPolicy} est appliquée
+ * lorsqu'elle est pleine. Cette file ne permettant pas de remplacer une trame en place, la politique
+ * {@link OverflowPolicy#CONFLATE} est refusée par la validation de la configuration.
+ * Une connexion trop lente est fermée immédiatement, sans attendre que les trames en attente soient écrites.
+ * Les trames rejouées à la connexion ne comptent pas dans le tampon : elles sont écrites avant toute autre.
+ */
+final class ReactiveSubscriber implements FrameSubscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveSubscriber.class);
+
+    private final ProductFilter filter;
+    private final OverflowPolicy overflowPolicy;
+    private final SseMetrics sseMetrics;
+    private final ArrayBlockingQueue<SseFrame> queue;
+    private final Sinks.Many<SseFrame> sink;
+    // Fermeture immédiate de la connexion, qui abandonne les trames en attente
+    private final Sinks.Empty<Void> aborted = Sinks.empty();
+    private final List<SseFrame> replayed = new ArrayList<>();
+    // Des données ont été écrites depuis le dernier heartbeat : le suivant est inutile
+    private volatile boolean wroteSinceHeartbeat;
+
+    ReactiveSubscriber(ProductFilter filter, ApplicationProperties.Sse sseProperties, SseMetrics sseMetrics) {
+        this.filter = filter;
+        this.overflowPolicy = sseProperties.overflowPolicy();
+        this.sseMetrics = sseMetrics;
+        this.queue = new ArrayBlockingQueue<>(sseProperties.bufferSize());
+        this.sink = Sinks.many().unicast().onBackpressureBuffer(queue);
+    }
+
+    @Override
+    public ProductFilter filter() {
+        return filter;
+    }
+
+    // Diffusion et heartbeats sont émis depuis des threads différents : les émissions sont sérialisées
+    @Override
+    public synchronized void offer(SseFrame frame) {
+        if (sink.tryEmitNext(frame) != Sinks.EmitResult.FAIL_OVERFLOW) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DISCONNECT -> {
+                sseMetrics.disconnected();
+                log.info("Reactive SSE connection too slow, disconnecting");
+                aborted.tryEmitEmpty();
+            }
+            case DROP_OLDEST -> {
+                queue.poll();
+                sseMetrics.dropped();
+                sink.tryEmitNext(frame);
+            }
+            // Refusée par la validation de la configuration
+            case CONFLATE -> throw new IllegalStateException("Conflation is not supported by the reactive SSE server");
+        }
+    }
+
+    @Override
+    public synchronized void missed(int frames) {
+        sseMetrics.dropped(frames);
+        sseMetrics.disconnected();
+        log.info("Reactive SSE connection missed {} frames, disconnecting", frames);
+        aborted.tryEmitEmpty();
+    }
+
+    /**
+     * Conserve les trames à rejouer, écrites avant les trames diffusées. Appelée avant l'abonnement à
+     * {@link #frames()}.
+     */
+    @Override
+    public synchronized void replay(List<SseFrame> frames) {
+        replayed.addAll(frames);
+    }
+
+    @Override
+    public synchronized void complete() {
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * Dépose un heartbeat, sauf si des données ont été écrites depuis le précédent, ou si la file est pleine :
+     * des trames sont alors déjà en attente d'écriture.
+     */
+    synchronized void heartbeat() {
+        if (wroteSinceHeartbeat) {
+            wroteSinceHeartbeat = false;
+            return;
+        }
+        sink.tryEmitNext(SseFrame.HEARTBEAT);
+    }
+
+    /**
+     * @return les trames destinées à la connexion, pour un unique abonné : les trames rejouées puis les trames diffusées
+     */
+    Flux<SseFrame> frames() {
+        return Flux.defer(() -> {
+                    final List<SseFrame> replay;
+                    synchronized (this) {
+                        replay = List.copyOf(replayed);
+                        replayed.clear();
+                    }
+                    return Flux.fromIterable(replay).concatWith(sink.asFlux());
+                })
+                .doOnNext(frame -> {
+                    // Data keeps the connection alive as well as a heartbeat would
+                    if (frame != SseFrame.HEARTBEAT) {
+                        wroteSinceHeartbeat = true;
+                    }
+                })
+                .takeUntilOther(aborted.asMono());
+    }
+}
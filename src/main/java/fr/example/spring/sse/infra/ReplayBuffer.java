@@ -0,0 +1,140 @@
+package fr.example.spring.sse.infra;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tampon circulaire des dernières trames diffusées, permettant de rejouer les événements manqués
+ * par un client qui se reconnecte avec un en-tête {@code Last-Event-ID}.
+ * Les numéros de séquence des trames et des événements dont elles sont issues sont conservés dans des tableaux
+ * de primitives, triés puisque les séquences sont croissantes.
+ * Cette classe n'est pas thread-safe : les accès sont synchronisés par la {@link SseBroadcast} propriétaire.
+ */
+final class ReplayBuffer {
+
+    private final long[] sequences;
+    private final long[] eventSequences;
+    private final SseFrame[] frames;
+    // Séquence précédant la première trame : tant qu'aucune trame n'a été écrasée, toutes les trames la suivent
+    private final long initialSequence;
+    // Nombre total de trames ajoutées depuis la création du tampon
+    private long count;
+
+    /**
+     * @param capacity        le nombre de trames conservées
+     * @param initialSequence une séquence inférieure à celle de toute trame ajoutée, identifiant l'état initial
+     */
+    ReplayBuffer(int capacity, long initialSequence) {
+        this.initialSequence = initialSequence;
+        this.sequences = new long[capacity];
+        this.eventSequences = new long[capacity];
+        this.frames = new SseFrame[capacity];
+    }
+
+    /**
+     * Ajoute une trame, en écrasant la plus ancienne si le tampon est plein.
+     *
+     * @param frame la trame diffusée
+     */
+    void append(SseFrame frame) {
+        final var index = (int) (count % frames.length);
+        sequences[index] = frame.sequence();
+        eventSequences[index] = frame.eventSequence();
+        frames[index] = frame;
+        count++;
+    }
+
+    /**
+     * @return le numéro de séquence de la dernière trame ajoutée, ou la séquence initiale si le tampon est vide
+     */
+    long newestSequence() {
+        return count == 0 ? initialSequence : sequenceAt(count - 1);
+    }
+
+    /**
+     * @return le numéro de séquence de l'événement de la dernière trame ajoutée, ou -1 si le tampon est vide
+     */
+    long newestEventSequence() {
+        return count == 0 ? -1 : eventSequences[(int) ((count - 1) % eventSequences.length)];
+    }
+
+    /**
+     * Retourne la séquence de la dernière trame issue d'un événement antérieur ou égal à l'événement donné,
+     * c'est-à-dire la trame à partir de laquelle rejouer les trames que l'événement ne reflète pas encore.
+     *
+     * @param eventSequence le numéro de séquence de l'événement
+     * @return le numéro de séquence de la trame, la séquence initiale si toutes les trames, aucune n'ayant été écrasée,
+     * sont postérieures à l'événement, ou -1 si le tampon ne contient plus de trame antérieure à l'événement
+     */
+    long sequenceUpToEvent(long eventSequence) {
+        var low = oldest();
+        var high = count - 1;
+        var found = complete() ? initialSequence : -1L;
+        while (low <= high) {
+            final var middle = (low + high) >>> 1;
+            final var index = (int) (middle % eventSequences.length);
+            if (eventSequences[index] <= eventSequence) {
+                found = sequences[index];
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Indique si le tampon contient encore la trame de séquence donnée, c'est-à-dire si tous les événements
+     * qui la suivent peuvent être rejoués. La séquence initiale est contenue tant qu'aucune trame n'a été écrasée.
+     *
+     * @param sequence le numéro de séquence du dernier événement reçu par le client
+     * @return {@code true} si la trame est toujours présente
+     */
+    boolean contains(long sequence) {
+        if (sequence == initialSequence) {
+            return complete();
+        }
+        var low = oldest();
+        var high = count - 1;
+        while (low <= high) {
+            final var middle = (low + high) >>> 1;
+            final var candidate = sequenceAt(middle);
+            if (candidate < sequence) {
+                low = middle + 1;
+            } else if (candidate > sequence) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retourne les trames postérieures à la séquence donnée, dans l'ordre de diffusion.
+     *
+     * @param sequence le numéro de séquence du dernier événement reçu par le client
+     * @return les trames à rejouer
+     */
+    List<SseFrame> after(long sequence) {
+        final var replay = new ArrayList<SseFrame>();
+        for (var position = oldest(); position < count; position++) {
+            if (sequenceAt(position) > sequence) {
+                replay.add(frames[(int) (position % frames.length)]);
+            }
+        }
+        return replay;
+    }
+
+    private boolean complete() {
+        return count <= frames.length;
+    }
+
+    private long oldest() {
+        return Math.max(0, count - frames.length);
+    }
+
+    private long sequenceAt(long position) {
+        return sequences[(int) (position % sequences.length)];
+    }
+}
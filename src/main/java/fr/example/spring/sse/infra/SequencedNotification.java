@@ -0,0 +1,61 @@
+package fr.example.spring.sse.infra;
+
+import org.postgresql.PGNotification;
+
+/**
+ * Notification PostgreSQL estampillée d'un numéro de séquence global et monotone, attribué à la réception
+ * par la {@link PostgreSQLChangeSource} active.
+ * Ce numéro sert d'identifiant aux événements SSE et permet aux clients de reprendre le flux après une reconnexion.
+ * Une notification de resynchronisation, sans contenu, signale que des notifications du canal ont pu être perdues.
+ *
+ * @param sequence le numéro de séquence global de la notification
+ * @param channel  le nom du canal PostgreSQL
+ * @param pid      l'identifiant du processus serveur ayant émis la notification
+ * @param payload  le contenu de la notification
+ * @param resync   {@code true} s'il s'agit d'un signal de resynchronisation
+ */
+public record SequencedNotification(
+        long sequence,
+        String channel,
+        int pid,
+        String payload,
+        boolean resync
+) implements PGNotification {
+
+    /**
+     * Estampille une notification PostgreSQL.
+     *
+     * @param sequence     le numéro de séquence global à attribuer
+     * @param notification la notification reçue
+     * @return la notification estampillée
+     */
+    public static SequencedNotification of(long sequence, PGNotification notification) {
+        return new SequencedNotification(sequence, notification.getName(), notification.getPID(), notification.getParameter(), false);
+    }
+
+    /**
+     * Crée un signal de resynchronisation, publié après le rétablissement de la connexion d'écoute.
+     *
+     * @param sequence le numéro de séquence global à attribuer
+     * @param channel  le canal dont des notifications ont pu être perdues
+     * @return le signal de resynchronisation
+     */
+    public static SequencedNotification resync(long sequence, String channel) {
+        return new SequencedNotification(sequence, channel, 0, null, true);
+    }
+
+    @Override
+    public String getName() {
+        return channel;
+    }
+
+    @Override
+    public int getPID() {
+        return pid;
+    }
+
+    @Override
+    public String getParameter() {
+        return payload;
+    }
+}
@@ -0,0 +1,86 @@
+package fr.example.spring.sse.infra;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * File bornée à un seul producteur et un seul consommateur, sans verrou.
+ * Les éléments sont rangés dans un tableau circulaire dont la taille est une puissance de deux ; la tête, avancée
+ * par le consommateur, et la queue, avancée par le producteur, sont placées sur des lignes de cache distinctes
+ * afin que chacun n'invalide pas la ligne de l'autre à chaque opération.
+ * Plusieurs threads peuvent produire à condition que leurs dépôts soient sérialisés, par exemple par un verrou.
+ *
+ * @param <E> le type des éléments
+ */
+final class SpscQueue<E> {
+
+    // Index dans le tableau des indices, espacés de 128 octets : deux lignes de cache, prélecture adjacente comprise
+    private static final int HEAD = 16;
+    private static final int TAIL = 32;
+
+    private final Object[] buffer;
+    private final int mask;
+    private final AtomicLongArray indices = new AtomicLongArray(TAIL + 16);
+    // Dernière tête lue par le producteur : la tête n'est relue que lorsque la file semble pleine
+    private long headCache;
+    // Dernière queue lue par le consommateur : la queue n'est relue que lorsque la file semble vide
+    private long tailCache;
+
+    /**
+     * @param capacity la capacité minimale de la file, arrondie à la puissance de deux supérieure
+     */
+    SpscQueue(int capacity) {
+        final var size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Dépose un élément en queue de file. Appelée par le producteur uniquement.
+     *
+     * @param element l'élément à déposer, non {@code null}
+     * @return {@code false} si la file est pleine
+     */
+    boolean offer(E element) {
+        final var tail = indices.getPlain(TAIL);
+        if (tail - headCache >= buffer.length) {
+            headCache = indices.getAcquire(HEAD);
+            if (tail - headCache >= buffer.length) {
+                return false;
+            }
+        }
+
+        buffer[(int) tail & mask] = element;
+        // Volatile write: publishes the element, and orders it before the producer reads the consumer's parked flag
+        indices.set(TAIL, tail + 1);
+        return true;
+    }
+
+    /**
+     * Retire l'élément en tête de file. Appelée par le consommateur uniquement.
+     *
+     * @return l'élément retiré, ou {@code null} si la file est vide
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        final var head = indices.getPlain(HEAD);
+        if (head >= tailCache) {
+            tailCache = indices.get(TAIL);
+            if (head >= tailCache) {
+                return null;
+            }
+        }
+
+        final var index = (int) head & mask;
+        final var element = (E) buffer[index];
+        buffer[index] = null;
+        indices.setRelease(HEAD, head + 1);
+        return element;
+    }
+
+    /**
+     * @return {@code true} si la file ne contient aucun élément, selon la dernière queue publiée par le producteur
+     */
+    boolean isEmpty() {
+        return indices.getPlain(HEAD) >= indices.get(TAIL);
+    }
+}
@@ -0,0 +1,372 @@
+package fr.example.spring.sse.infra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.model.ProductFilter;
+import fr.example.spring.sse.product.model.ProductSnapshot;
+import fr.example.spring.sse.product.spi.ProductBroadcast;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Diffusion SSE partagée : le flux source est transformé et encodé en {@link SseFrame} une seule fois,
+ * puis chaque trame est déposée dans le tampon borné de chaque connexion abonnée.
+ * Le dépôt ne bloque jamais : une connexion lente ne ralentit ni la diffusion ni les autres connexions.
+ * Les dernières trames sont conservées dans un {@link ReplayBuffer} pour les clients qui se reconnectent.
+ * Une mise à jour n'est déposée que dans le tampon des connexions dont le filtre accepte le produit,
+ * trouvées grâce au {@link SubscriberIndex}. Les connexions peuvent être réparties entre plusieurs workers
+ * de distribution par le {@link FanOutDispatcher} : publier une trame ne coûte alors qu'un dépôt par worker.
+ * Une connexion peut aussi commencer par l'état complet des produits suivis, suivi des seules mises à jour
+ * postérieures : la séquence de l'instantané du catalogue sert de frontière entre les deux.
+ *
+ * @param <R> le type de données envoyé aux clients
+ */
+final class SseBroadcast<R> implements ProductBroadcast {
+
+    private static final long DEFAULT_TIMEOUT = Long.MAX_VALUE;
+    private static final Logger log = LoggerFactory.getLogger(SseBroadcast.class);
+    private static final String SNAPSHOT_EVENT_NAME = "product-snapshot";
+
+    private final FanOutDispatcher subscribers;
+    // Connexions ayant reçu un instantané plus récent que les dernières trames diffusées, avec la séquence
+    // de l'événement qu'il reflète : elles ne reçoivent que les trames des événements suivants
+    private final Map<FrameSubscriber, Long> pending = new HashMap<>();
+    private final ReplayBuffer replayBuffer;
+    private final String eventName;
+    private final Function<Product, R> dataMapper;
+    private final Supplier<ProductSnapshot> snapshot;
+    private final ObjectMapper objectMapper;
+    private final HeartbeatScheduler heartbeatScheduler;
+    private final ApplicationProperties.Sse sseProperties;
+    private final SseMetrics sseMetrics;
+    private final Scheduler deliveryScheduler;
+    private final Disposable source;
+    // Identifiant SSE propre à chaque trame, afin qu'un client filtré dispose toujours de l'identifiant
+    // de la dernière trame reçue. Initialisé à partir de l'horloge pour rester croissant après un redémarrage
+    private long frameSequence = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+
+    SseBroadcast(
+            Flux<ProductEvent> eventFlux,
+            String eventName,
+            Function<Product, R> dataMapper,
+            Supplier<ProductSnapshot> snapshot,
+            ObjectMapper objectMapper,
+            HeartbeatScheduler heartbeatScheduler,
+            ApplicationProperties.Sse sseProperties,
+            SseMetrics sseMetrics,
+            Scheduler deliveryScheduler,
+            Function<String, Thread.Builder> dispatchThreads) {
+
+        this.subscribers = new FanOutDispatcher(eventName, sseProperties.dispatchShards(), dispatchThreads);
+        this.replayBuffer = new ReplayBuffer(sseProperties.replayBufferSize(), frameSequence);
+        this.eventName = eventName;
+        this.dataMapper = dataMapper;
+        this.snapshot = snapshot;
+        this.objectMapper = objectMapper;
+        this.heartbeatScheduler = heartbeatScheduler;
+        this.sseProperties = sseProperties;
+        this.sseMetrics = sseMetrics;
+        this.deliveryScheduler = deliveryScheduler;
+
+        // Encode each event once, even without any connection, so it can be replayed later
+        this.source = eventFlux.map(this::encode)
+                .subscribe(
+                        this::publish,
+                        e -> log.error("SSE broadcast {} stopped", eventName, e)
+                );
+    }
+
+    /**
+     * Encode un événement du flux de produits, à raison d'une trame par produit du lot.
+     * Un signal de resynchronisation est encodé comme un état complet des produits, diffusé à toutes les connexions
+     * puisque des mises à jour ont pu être perdues.
+     * Appelée uniquement depuis le flux source : l'attribution des numéros de trame n'a pas besoin d'être synchronisée.
+     *
+     * @param event l'événement à encoder
+     * @return les trames encodées, dans l'ordre de diffusion
+     */
+    private List<SseFrame> encode(ProductEvent event) {
+        return switch (event) {
+            case ProductEvent.Updated updated -> updated.products().stream()
+                    .map(product -> SseFrame.encode(product, ++frameSequence, updated.sequence(), updated.changedAt(),
+                            eventName, dataMapper.apply(product), objectMapper))
+                    .toList();
+            case ProductEvent.Resync resync -> List.of(encodeSnapshot(++frameSequence, resync.sequence(), snapshot.get(), product -> true));
+        };
+    }
+
+    /**
+     * Encode l'état complet des produits acceptés.
+     *
+     * @param sequence      le numéro de séquence de la trame
+     * @param eventSequence le numéro de séquence de l'événement auquel correspond la trame
+     * @param current       l'instantané du catalogue à encoder
+     * @param accepted      les produits à inclure
+     * @return la trame encodée
+     */
+    private SseFrame encodeSnapshot(long sequence, long eventSequence, ProductSnapshot current, Predicate<Product> accepted) {
+        final var products = current.products().stream().filter(accepted).map(dataMapper).toList();
+        return SseFrame.encode(null, sequence, eventSequence, 0, SNAPSHOT_EVENT_NAME, products, objectMapper);
+    }
+
+    /**
+     * Conserve les trames pour rejeu puis les distribue aux connexions intéressées.
+     * Le verrou garantit qu'une connexion en cours d'abonnement reçoit chaque trame exactement une fois,
+     * soit par rejeu, soit par diffusion : les commandes d'abonnement et les trames parviennent aux workers
+     * de distribution dans l'ordre du verrou.
+     *
+     * @param frames les trames à diffuser
+     */
+    private synchronized void publish(List<SseFrame> frames) {
+        for (SseFrame frame : frames) {
+            replayBuffer.append(frame);
+            if (!pending.isEmpty()) {
+                promote(frame);
+            }
+            subscribers.dispatch(frame);
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe(String lastEventId, ProductFilter filter) {
+        return subscribe(lastEventId, filter, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Abonne les connexions en attente dont l'instantané ne reflète pas encore l'événement de la trame.
+     * Les trames des événements antérieurs, déjà reflétés par l'instantané, ne leur ont pas été envoyées.
+     *
+     * @param frame la trame en cours de diffusion
+     */
+    private void promote(SseFrame frame) {
+        pending.entrySet().removeIf(entry -> {
+            if (entry.getValue() >= frame.eventSequence()) {
+                return false;
+            }
+            subscribers.add(entry.getKey(), frame.sequence() - 1);
+            return true;
+        });
+    }
+
+    @Override
+    public SseEmitter subscribe(String lastEventId, ProductFilter filter, long timeout) {
+        return subscribe(lastEventId, filter, timeout, false);
+    }
+
+    @Override
+    public SseEmitter subscribeWithSnapshot(String lastEventId, ProductFilter filter) {
+        return subscribe(lastEventId, filter, DEFAULT_TIMEOUT, true);
+    }
+
+    private SseEmitter subscribe(String lastEventId, ProductFilter filter, long timeout, boolean withSnapshot) {
+
+        final var emitter = new SseEmitter(timeout);
+        log.info("SSE connection opened {} with filter {}", emitter, filter);
+
+        final var subscriber = new SseSubscriber(
+                emitter,
+                filter,
+                sseProperties,
+                sseMetrics,
+                deliveryScheduler);
+
+        register(subscriber, parseSequence(lastEventId), withSnapshot);
+        final var openedAt = sseMetrics.connectionOpened();
+
+        // Schedule heartbeat events every heartbeatIntervalSeconds on the shared heartbeat wheel
+        final var heartbeat = heartbeatScheduler.schedule(subscriber::heartbeat);
+
+        // Set up completion callbacks
+        emitter.onCompletion(() -> {
+            log.info("SSE connection closed {}", emitter);
+            subscriber.close();
+            unregister(subscriber);
+            heartbeat.dispose();
+            sseMetrics.connectionClosed(openedAt);
+        });
+        emitter.onTimeout(() -> log.info("SSE connection timed out"));
+        emitter.onError(ex -> log.debug("SSE connection failed {}", emitter, ex));
+
+        return emitter;
+    }
+
+    @Override
+    public Flux<byte[]> stream(String lastEventId, ProductFilter filter) {
+        return stream(lastEventId, filter, false);
+    }
+
+    @Override
+    public Flux<byte[]> streamWithSnapshot(String lastEventId, ProductFilter filter) {
+        return stream(lastEventId, filter, true);
+    }
+
+    private Flux<byte[]> stream(String lastEventId, ProductFilter filter, boolean withSnapshot) {
+        return Flux.defer(() -> {
+            final var subscriber = new ReactiveSubscriber(filter, sseProperties, sseMetrics);
+            register(subscriber, parseSequence(lastEventId), withSnapshot);
+            final var openedAt = sseMetrics.connectionOpened();
+            final var heartbeat = heartbeatScheduler.schedule(subscriber::heartbeat);
+
+            // La demande du socket vide le tampon borné de la connexion
+            return subscriber.frames()
+                    .map(frame -> {
+                        sseMetrics.written(frame.bytes().length, frame.changedAt());
+                        return frame.bytes();
+                    })
+                    .doFinally(signal -> {
+                        unregister(subscriber);
+                        heartbeat.dispose();
+                        sseMetrics.connectionClosed(openedAt);
+                    });
+        });
+    }
+
+    /**
+     * Abonne la connexion à la diffusion en lui rejouant les événements manqués depuis {@code lastSequence}.
+     * Si ces événements ne sont plus dans le tampon de rejeu, l'état complet des produits suivis est envoyé à la place,
+     * comme pour une première connexion.
+     *
+     * @param subscriber   la connexion à abonner
+     * @param lastSequence la séquence du dernier événement reçu par le client, ou {@code null} pour une première connexion
+     * @param withSnapshot {@code true} pour commencer une première connexion par l'état complet des produits suivis
+     */
+    private void register(FrameSubscriber subscriber, Long lastSequence, boolean withSnapshot) {
+        if (lastSequence == null && withSnapshot) {
+            registerFromSnapshot(subscriber);
+            return;
+        }
+        if (lastSequence == null) {
+            synchronized (this) {
+                subscribers.add(subscriber, replayBuffer.newestSequence());
+            }
+            return;
+        }
+
+        synchronized (this) {
+            if (replayBuffer.contains(lastSequence)) {
+                subscriber.replay(accepted(subscriber, replayBuffer.after(lastSequence)));
+                subscribers.add(subscriber, replayBuffer.newestSequence());
+                return;
+            }
+        }
+
+        // Gap too old or unknown: send the state of the followed products, with the same boundary as a first connection
+        registerFromSnapshot(subscriber);
+        log.info("Last-Event-ID {} no longer replayable, snapshot sent", lastSequence);
+    }
+
+    /**
+     * Abonne une première connexion en lui envoyant d'abord l'état complet des produits qu'elle suit.
+     * L'instantané est lu et encodé hors verrou, puis son identifiant lui est attribué sous verrou selon la séquence
+     * du dernier événement qu'il reflète :
+     * <ul>
+     *     <li>si cet événement n'a pas encore été diffusé, la connexion est mise en attente et ne recevra que les trames
+     *     des événements suivants ;</li>
+     *     <li>sinon, les trames diffusées depuis cet événement sont rejouées à la suite de l'instantané.</li>
+     * </ul>
+     * Chaque mise à jour est ainsi reçue exactement une fois, soit dans l'instantané, soit à sa suite.
+     *
+     * @param subscriber la connexion à abonner
+     */
+    private void registerFromSnapshot(FrameSubscriber subscriber) {
+        final var filter = subscriber.filter();
+        while (true) {
+            final var current = snapshot.get();
+            final var unstamped = encodeSnapshot(-1, current.sequence(), current, filter.isAll() ? product -> true : filter::test);
+            synchronized (this) {
+                if (replayBuffer.newestEventSequence() <= current.sequence()) {
+                    subscriber.replay(List.of(unstamped.withSequence(replayBuffer.newestSequence())));
+                    pending.put(subscriber, current.sequence());
+                    return;
+                }
+
+                final var boundary = replayBuffer.sequenceUpToEvent(current.sequence());
+                if (boundary != -1) {
+                    final var frames = new ArrayList<SseFrame>();
+                    frames.add(unstamped.withSequence(boundary));
+                    frames.addAll(accepted(subscriber, replayBuffer.after(boundary)));
+                    subscriber.replay(frames);
+                    subscribers.add(subscriber, replayBuffer.newestSequence());
+                    return;
+                }
+            }
+            // The replay buffer wrapped while the snapshot was being encoded: read a newer one
+            log.debug("Snapshot sequence {} no longer replayable, reading a newer snapshot", current.sequence());
+        }
+    }
+
+    @Override
+    public void disconnect(Predicate<ProductFilter> filter) {
+        final var closing = new ArrayList<FrameSubscriber>();
+        synchronized (this) {
+            pending.keySet().removeIf(subscriber -> filter.test(subscriber.filter()) && closing.add(subscriber));
+            subscribers.disconnect(filter);
+        }
+
+        closing.forEach(FrameSubscriber::complete);
+        if (!closing.isEmpty()) {
+            log.info("Closed {} pending SSE connections of broadcast {}", closing.size(), eventName);
+        }
+    }
+
+    /**
+     * Arrête la diffusion : le flux source n'est plus lu et les workers de distribution sont arrêtés.
+     */
+    void close() {
+        source.dispose();
+        subscribers.close();
+    }
+
+    private void unregister(FrameSubscriber subscriber) {
+        // A dispatch worker terminating one of its connections must not wait for the lock held while publishing
+        if (subscribers.removeFromWorker(subscriber)) {
+            return;
+        }
+        synchronized (this) {
+            subscribers.remove(subscriber);
+            pending.remove(subscriber);
+        }
+    }
+
+    /**
+     * Ne conserve que les trames à rejouer acceptées par le filtre de la connexion.
+     * Les états complets des produits sont toujours rejoués.
+     */
+    private static List<SseFrame> accepted(FrameSubscriber subscriber, List<SseFrame> frames) {
+        if (subscriber.filter().isAll()) {
+            return frames;
+        }
+        return frames.stream()
+                .filter(frame -> frame.product() == null || subscriber.filter().test(frame.product()))
+                .toList();
+    }
+
+    private static Long parseSequence(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            // Identifiant inconnu, par exemple émis par une version précédente : traité comme trop ancien
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package fr.example.spring.sse.infra;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.product.model.Product;
+import io.vavr.control.Try;
+
+/**
+ * Trame SSE ({@code id:}/{@code event:}/{@code data:}) encodée une seule fois puis partagée par toutes les connexions.
+ * Cette classe est immuable : les octets encodés ne sont jamais modifiés après leur création.
+ */
+final class SseFrame {
+
+    private static final MediaType TEXT_PLAIN = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    /**
+     * Heartbeat partagé par toutes les connexions. Il ne porte pas d'identifiant afin de ne pas modifier
+     * le Last-Event-ID retenu par le navigateur.
+     */
+    static final SseFrame HEARTBEAT = new SseFrame(null, -1, -1, 0, "event:heartbeat\ndata:\n\n".getBytes(StandardCharsets.UTF_8));
+
+    private final Product product;
+    private final long sequence;
+    private final long eventSequence;
+    private final long changedAt;
+    private final byte[] bytes;
+    private final Set<ResponseBodyEmitter.DataWithMediaType> data;
+
+    private SseFrame(Product product, long sequence, long eventSequence, long changedAt, byte[] bytes) {
+        this.product = product;
+        this.sequence = sequence;
+        this.eventSequence = eventSequence;
+        this.changedAt = changedAt;
+        this.bytes = bytes;
+        this.data = Set.of(new ResponseBodyEmitter.DataWithMediaType(bytes, TEXT_PLAIN));
+    }
+
+    /**
+     * Encode un événement SSE.
+     *
+     * @param product       le produit concerné par l'événement, ou {@code null} pour un événement portant sur
+     *                      l'ensemble des produits
+     * @param sequence      le numéro de séquence de la trame, utilisé comme identifiant SSE
+     * @param eventSequence le numéro de séquence global de l'événement dont la trame est issue
+     * @param changedAt     l'instant du changement en base de données, en millisecondes depuis l'epoch,
+     *                      ou 0 s'il est inconnu
+     * @param eventName     le nom de l'événement
+     * @param data          la donnée à sérialiser en JSON
+     * @param objectMapper  le {@link ObjectMapper} utilisé pour la sérialisation
+     * @return la trame encodée
+     */
+    static SseFrame encode(Product product, long sequence, long eventSequence, long changedAt, String eventName, Object data, ObjectMapper objectMapper) {
+        final var json = Try.of(() -> objectMapper.writeValueAsString(data))
+                .getOrElseThrow(e -> new IllegalStateException("Failed to encode SSE event " + eventName, e));
+
+        final var frame = new StringBuilder(json.length() + eventName.length() + 32)
+                .append("id:").append(sequence).append('\n')
+                .append("event:").append(eventName).append('\n');
+        // Chaque ligne de la donnée doit être préfixée par "data:" selon la spécification SSE
+        json.lines().forEach(line -> frame.append("data:").append(line).append('\n'));
+        frame.append('\n');
+
+        return new SseFrame(product, sequence, eventSequence, changedAt, frame.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Crée une copie de la trame portant un autre identifiant SSE.
+     * Permet d'encoder une trame volumineuse avant de connaître son identifiant, qui est ensuite attribué sous verrou.
+     *
+     * @param sequence le numéro de séquence de la trame
+     * @return la trame portant le nouvel identifiant
+     */
+    SseFrame withSequence(long sequence) {
+        var body = 0;
+        while (bytes[body++] != '\n') {
+            // Première ligne : l'identifiant à remplacer
+        }
+        final var id = ("id:" + sequence + "\n").getBytes(StandardCharsets.UTF_8);
+        final var copy = new byte[id.length + bytes.length - body];
+        System.arraycopy(id, 0, copy, 0, id.length);
+        System.arraycopy(bytes, body, copy, id.length, bytes.length - body);
+        return new SseFrame(product, sequence, eventSequence, changedAt, copy);
+    }
+
+    /**
+     * @return le produit concerné par l'événement, ou {@code null} pour un événement portant sur l'ensemble des produits
+     */
+    Product product() {
+        return product;
+    }
+
+    /**
+     * @return la clé de conflation de l'événement : le code EAN du produit concerné
+     */
+    String key() {
+        return product == null ? null : product.ean();
+    }
+
+    /**
+     * @return le numéro de séquence de la trame
+     */
+    long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @return le numéro de séquence global de l'événement dont la trame est issue
+     */
+    long eventSequence() {
+        return eventSequence;
+    }
+
+    /**
+     * @return l'instant du changement en base de données, en millisecondes depuis l'epoch,
+     * ou 0 s'il est inconnu
+     */
+    long changedAt() {
+        return changedAt;
+    }
+
+    /**
+     * @return les octets de la trame, à ne pas modifier
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return la trame prête à être écrite telle quelle par un {@link ResponseBodyEmitter}
+     */
+    Set<ResponseBodyEmitter.DataWithMediaType> data() {
+        return data;
+    }
+}
@@ -0,0 +1,101 @@
+package fr.example.spring.sse.infra;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.example.spring.sse.config.ApplicationProperties.OverflowPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Métriques de la livraison des événements aux connexions SSE.
+ * Les compteurs de débordement sont étiquetés par politique de débordement.
+ * Les mesures sont faites une fois par écriture sur une connexion, et non une fois par événement,
+ * afin de pouvoir rester actives à haut débit.
+ */
+final class SseMetrics {
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final Timer connectionDuration;
+    private final DistributionSummary queueDepth;
+    private final Counter bytesWritten;
+    private final Timer deliveryLatency;
+    private final Counter dropped;
+    private final Counter disconnected;
+
+    SseMetrics(MeterRegistry meterRegistry, OverflowPolicy policy) {
+        Gauge.builder("sse.connections.active", activeConnections, AtomicInteger::get)
+                .description("Connexions SSE ouvertes")
+                .register(meterRegistry);
+        this.connectionDuration = Timer.builder("sse.connections.duration")
+                .description("Durée de vie des connexions SSE")
+                .register(meterRegistry);
+        this.queueDepth = DistributionSummary.builder("sse.subscriber.queue.depth")
+                .description("Événements en attente dans le tampon d'une connexion SSE au moment de leur écriture")
+                .register(meterRegistry);
+        this.bytesWritten = Counter.builder("sse.bytes.written")
+                .description("Octets écrits sur les connexions SSE")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.deliveryLatency = Timer.builder("sse.delivery.latency")
+                .description("Délai entre le changement en base de données et l'écriture sur la connexion SSE, "
+                        + "mesuré pour le plus ancien événement de chaque écriture")
+                .register(meterRegistry);
+
+        final var policyTag = policy.name().toLowerCase().replace('_', '-');
+        this.dropped = Counter.builder("sse.overflow.dropped")
+                .description("Événements SSE supprimés du tampon d'une connexion trop lente")
+                .tag("policy", policyTag)
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("sse.overflow.disconnected")
+                .description("Connexions SSE fermées car trop lentes")
+                .tag("policy", policyTag)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return l'instant d'ouverture de la connexion, à transmettre à {@link #connectionClosed(long)}
+     */
+    long connectionOpened() {
+        activeConnections.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void connectionClosed(long openedAt) {
+        activeConnections.decrementAndGet();
+        connectionDuration.record(System.nanoTime() - openedAt, TimeUnit.NANOSECONDS);
+    }
+
+    void queueDepth(int pending) {
+        queueDepth.record(pending);
+    }
+
+    /**
+     * Enregistre une écriture sur une connexion.
+     *
+     * @param bytes     le nombre d'octets écrits
+     * @param changedAt l'instant du changement en base de données du plus ancien événement écrit,
+     *                  en millisecondes depuis l'epoch, ou 0 s'il est inconnu
+     */
+    void written(long bytes, long changedAt) {
+        bytesWritten.increment(bytes);
+        if (changedAt > 0) {
+            deliveryLatency.record(Math.max(0, System.currentTimeMillis() - changedAt), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    void dropped(int count) {
+        dropped.increment(count);
+    }
+
+    void disconnected() {
+        disconnected.increment();
+    }
+}
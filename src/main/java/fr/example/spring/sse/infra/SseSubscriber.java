@@ -0,0 +1,293 @@
+package fr.example.spring.sse.infra;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.config.ApplicationProperties.OverflowPolicy;
+import fr.example.spring.sse.product.model.ProductFilter;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Connexion SSE abonnée à une {@link SseBroadcast}.
+ * Chaque connexion dispose de son propre tampon borné : la diffusion y dépose les trames sans jamais bloquer,
+ * et un drain exécuté sur le {@link Scheduler} de livraison les écrit sur la connexion.
+ * Une connexion lente n'affecte ainsi que son propre tampon, selon la {@link OverflowPolicy} configurée.
+ * La conflation ne perd jamais le dernier état d'un produit : une connexion dont le tampon ne peut plus contenir
+ * un état par produit en attente est fermée.
+ * Si une fenêtre de regroupement est configurée, le drain est différé jusqu'à la fin de la fenêtre ou jusqu'à ce que
+ * le nombre maximal de trames soit atteint : les trames arrivées entre-temps sont écrites avec un seul flush.
+ */
+final class SseSubscriber implements FrameSubscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(SseSubscriber.class);
+
+    private final SseEmitter emitter;
+    private final ProductFilter filter;
+    private final OverflowPolicy overflowPolicy;
+    private final int bufferSize;
+    private final long batchWindowNanos;
+    private final int batchMaxEvents;
+    private final SseMetrics sseMetrics;
+    private final Scheduler deliveryScheduler;
+
+    // Trames rejouées à la connexion, écrites avant toute autre et jamais supprimées
+    private final ArrayDeque<SseFrame> replay = new ArrayDeque<>();
+    // Tampon FIFO pour DROP_OLDEST et DISCONNECT, tampon indexé par clé pour CONFLATE
+    private final ArrayDeque<SseFrame> queue = new ArrayDeque<>();
+    private final LinkedHashMap<String, SseFrame> conflated = new LinkedHashMap<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private boolean heartbeatPending;
+    private boolean flushScheduled;
+    // Des données ont été écrites depuis le dernier heartbeat : le suivant est inutile
+    private volatile boolean wroteSinceHeartbeat;
+    private volatile boolean closed;
+
+    SseSubscriber(
+            SseEmitter emitter,
+            ProductFilter filter,
+            ApplicationProperties.Sse sseProperties,
+            SseMetrics sseMetrics,
+            Scheduler deliveryScheduler) {
+
+        this.emitter = emitter;
+        this.filter = filter;
+        this.overflowPolicy = sseProperties.overflowPolicy();
+        this.bufferSize = sseProperties.bufferSize();
+        this.batchWindowNanos = sseProperties.batchWindow().toNanos();
+        this.batchMaxEvents = sseProperties.batchMaxEvents();
+        this.sseMetrics = sseMetrics;
+        this.deliveryScheduler = deliveryScheduler;
+    }
+
+    @Override
+    public ProductFilter filter() {
+        return filter;
+    }
+
+    /**
+     * Dépose une trame dans le tampon de la connexion sans bloquer l'appelant.
+     * Si le tampon est plein, la politique de débordement est appliquée.
+     *
+     * @param frame la trame à envoyer
+     */
+    @Override
+    public void offer(SseFrame frame) {
+        if (closed) {
+            return;
+        }
+
+        synchronized (this) {
+            switch (overflowPolicy) {
+                case DROP_OLDEST -> {
+                    if (queue.size() == bufferSize) {
+                        queue.poll();
+                        sseMetrics.dropped();
+                    }
+                    queue.offer(frame);
+                }
+                case DISCONNECT -> {
+                    if (queue.size() == bufferSize) {
+                        disconnect();
+                        return;
+                    }
+                    queue.offer(frame);
+                }
+                case CONFLATE -> {
+                    // Une trame plus récente remplace celle du même produit en attente. Le dernier état d'un produit
+                    // n'est jamais supprimé : si trop de produits sont en attente, le client se reconnecte et reprend
+                    // par rejeu ou par l'état complet des produits suivis
+                    if (conflated.put(frame.key(), frame) != null) {
+                        sseMetrics.dropped();
+                    } else if (conflated.size() > bufferSize) {
+                        conflated.clear();
+                        disconnect();
+                        return;
+                    }
+                }
+            }
+
+            if (batchWindowNanos > 0 && queue.size() + conflated.size() < batchMaxEvents) {
+                // Batch window: the first frame schedules the flush, the following ones just join the batch
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    deliveryScheduler.schedule(this::flushBatch, batchWindowNanos, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+        }
+        drain();
+    }
+
+    private void flushBatch() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+        drain();
+    }
+
+    /**
+     * Dépose les trames à rejouer au client lors de sa connexion. Elles sont écrites avant les trames diffusées
+     * et ne sont pas soumises à la politique de débordement.
+     *
+     * @param frames les trames à rejouer, dans l'ordre de diffusion
+     */
+    @Override
+    public void replay(List<SseFrame> frames) {
+        if (frames.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            replay.addAll(frames);
+        }
+        drain();
+    }
+
+    /**
+     * Demande l'envoi d'un heartbeat sur la connexion sans bloquer l'appelant.
+     * Le heartbeat est omis si des données ont été écrites depuis le précédent : la connexion est déjà maintenue.
+     */
+    void heartbeat() {
+        if (closed) {
+            return;
+        }
+        if (wroteSinceHeartbeat) {
+            wroteSinceHeartbeat = false;
+            return;
+        }
+
+        synchronized (this) {
+            heartbeatPending = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void missed(int frames) {
+        if (closed) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!closed) {
+                sseMetrics.dropped(frames);
+                log.info("SSE connection missed {} frames", frames);
+                disconnect();
+            }
+        }
+    }
+
+    @Override
+    public void complete() {
+        closed = true;
+        // La fermeture attend la fin d'une éventuelle écriture en cours : elle ne doit pas bloquer la diffusion
+        deliveryScheduler.schedule(emitter::complete);
+    }
+
+    /**
+     * Marque la connexion comme fermée : les trames suivantes sont ignorées.
+     */
+    void close() {
+        closed = true;
+    }
+
+    private void disconnect() {
+        closed = true;
+        sseMetrics.disconnected();
+        log.info("SSE connection too slow, disconnecting {}", emitter);
+        queue.clear();
+        // La fermeture attend la fin d'une éventuelle écriture en cours : elle ne doit pas bloquer la diffusion
+        deliveryScheduler.schedule(emitter::complete);
+    }
+
+    /**
+     * Planifie l'écriture des trames en attente sur le scheduler de livraison si aucun drain n'est déjà en cours.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            deliveryScheduler.schedule(this::drainLoop);
+        }
+    }
+
+    /**
+     * Écrit toutes les trames en attente en un seul envoi, donc un seul flush de la réponse HTTP,
+     * jusqu'à ce que le tampon soit vide.
+     */
+    private void drainLoop() {
+        var missed = 1;
+        do {
+            var batch = pollAll();
+            while (!batch.isEmpty() && !closed) {
+                write(batch);
+                batch = pollAll();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private synchronized Batch pollAll() {
+        final var batch = new Batch();
+        replay.forEach(batch::add);
+        replay.clear();
+        queue.forEach(batch::add);
+        queue.clear();
+        conflated.values().forEach(batch::add);
+        conflated.clear();
+
+        if (!batch.isEmpty()) {
+            // Data keeps the connection alive as well as a heartbeat would
+            wroteSinceHeartbeat = true;
+            sseMetrics.queueDepth(batch.frames);
+        } else if (heartbeatPending) {
+            batch.add(SseFrame.HEARTBEAT);
+        }
+        heartbeatPending = false;
+        return batch;
+    }
+
+    private void write(Batch batch) {
+        try {
+            emitter.send(batch.data);
+            sseMetrics.written(batch.bytes, batch.changedAt);
+        } catch (Exception ex) {
+            closed = true;
+            emitter.completeWithError(ex);
+        }
+    }
+
+    /**
+     * Trames écrites en un seul envoi, avec les informations nécessaires aux métriques de l'écriture.
+     */
+    private static final class Batch {
+
+        private final Set<ResponseBodyEmitter.DataWithMediaType> data = new LinkedHashSet<>();
+        private int frames;
+        private long bytes;
+        // Validation en base de données du plus ancien changement du lot
+        private long changedAt;
+
+        void add(SseFrame frame) {
+            data.addAll(frame.data());
+            frames++;
+            bytes += frame.bytes().length;
+            if (frame.changedAt() > 0 && (changedAt == 0 || frame.changedAt() < changedAt)) {
+                changedAt = frame.changedAt();
+            }
+        }
+
+        boolean isEmpty() {
+            return frames == 0;
+        }
+    }
+}
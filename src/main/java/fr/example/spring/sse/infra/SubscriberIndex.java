@@ -0,0 +1,106 @@
+package fr.example.spring.sse.infra;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import fr.example.spring.sse.product.model.Product;
+
+/**
+ * Index des connexions abonnées à une {@link SseBroadcast}, selon le filtre de chacune.
+ * Une connexion est rangée selon son critère le plus sélectif : par code EAN, par préfixe de code EAN,
+ * par seuil de quantité, ou parmi les connexions sans filtre.
+ * La diffusion d'une mise à jour ne parcourt ainsi que les connexions susceptibles d'être intéressées,
+ * et non l'ensemble des connexions ouvertes.
+ * Cette classe n'est pas thread-safe : chaque index n'est accédé que sous le verrou de la {@link SseBroadcast}
+ * propriétaire, ou par le seul worker de distribution qui le possède.
+ */
+final class SubscriberIndex {
+
+    private final Set<FrameSubscriber> unfiltered = new HashSet<>();
+    private final Map<String, Set<FrameSubscriber>> byEan = new HashMap<>();
+    private final Map<String, Set<FrameSubscriber>> byEanPrefix = new HashMap<>();
+    // Connexions filtrées uniquement par un seuil de quantité, rangées par seuil
+    private final TreeMap<Integer, Set<FrameSubscriber>> byQuantityBelow = new TreeMap<>();
+    private int maxPrefixLength;
+
+    void add(FrameSubscriber subscriber) {
+        final var filter = subscriber.filter();
+        if (!filter.eans().isEmpty()) {
+            filter.eans().forEach(ean -> byEan.computeIfAbsent(ean, key -> new HashSet<>()).add(subscriber));
+        } else if (filter.eanPrefix() != null) {
+            byEanPrefix.computeIfAbsent(filter.eanPrefix(), key -> new HashSet<>()).add(subscriber);
+            maxPrefixLength = Math.max(maxPrefixLength, filter.eanPrefix().length());
+        } else if (filter.quantityBelow() != null) {
+            byQuantityBelow.computeIfAbsent(filter.quantityBelow(), key -> new HashSet<>()).add(subscriber);
+        } else {
+            unfiltered.add(subscriber);
+        }
+    }
+
+    void remove(FrameSubscriber subscriber) {
+        final var filter = subscriber.filter();
+        if (!filter.eans().isEmpty()) {
+            filter.eans().forEach(ean -> removeFrom(byEan, ean, subscriber));
+        } else if (filter.eanPrefix() != null) {
+            removeFrom(byEanPrefix, filter.eanPrefix(), subscriber);
+        } else if (filter.quantityBelow() != null) {
+            removeFrom(byQuantityBelow, filter.quantityBelow(), subscriber);
+        } else {
+            unfiltered.remove(subscriber);
+        }
+    }
+
+    /**
+     * Parcourt les connexions dont le filtre accepte le produit.
+     *
+     * @param product le produit mis à jour
+     * @param action  l'action à exécuter pour chaque connexion intéressée
+     */
+    void forEachInterested(Product product, Consumer<FrameSubscriber> action) {
+        unfiltered.forEach(action);
+        byQuantityBelow.tailMap(product.quantite(), false).values().forEach(subscribers -> subscribers.forEach(action));
+        forEachAccepting(byEan.get(product.ean()), product, action);
+
+        final var ean = product.ean();
+        for (var length = 1; length <= Math.min(maxPrefixLength, ean.length()); length++) {
+            forEachAccepting(byEanPrefix.get(ean.substring(0, length)), product, action);
+        }
+    }
+
+    /**
+     * Parcourt toutes les connexions, quel que soit leur filtre.
+     *
+     * @param action l'action à exécuter pour chaque connexion
+     */
+    void forEach(Consumer<FrameSubscriber> action) {
+        unfiltered.forEach(action);
+        byQuantityBelow.values().forEach(subscribers -> subscribers.forEach(action));
+        byEanPrefix.values().forEach(subscribers -> subscribers.forEach(action));
+        // Une connexion suivant plusieurs codes EAN est présente dans plusieurs ensembles
+        final var visited = new HashSet<FrameSubscriber>();
+        byEan.values().forEach(subscribers -> subscribers.stream().filter(visited::add).forEach(action));
+    }
+
+    private static void forEachAccepting(Set<FrameSubscriber> subscribers, Product product, Consumer<FrameSubscriber> action) {
+        if (subscribers == null) {
+            return;
+        }
+        for (FrameSubscriber subscriber : subscribers) {
+            // Le critère indexé est satisfait, les autres critères du filtre restent à vérifier
+            if (subscriber.filter().test(product)) {
+                action.accept(subscriber);
+            }
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<FrameSubscriber>> index, K key, FrameSubscriber subscriber) {
+        final var subscribers = index.get(key);
+        if (subscribers != null && subscribers.remove(subscriber) && subscribers.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package fr.example.spring.sse.product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+
+/**
+ * Événement décodé d'une notification, dont les prix absents du {@link ProductPriceCache} restent à charger.
+ *
+ * @param event   l'événement décodé ; les produits dont le prix manque portent provisoirement un prix nul
+ * @param missing la position, dans l'événement, des produits dont le prix manque
+ */
+record PendingEvent(ProductEvent event, List<Integer> missing) {
+
+    /**
+     * @param event un événement dont aucun prix ne manque
+     * @return l'événement, sans prix à charger
+     */
+    static PendingEvent of(ProductEvent event) {
+        return new PendingEvent(event, List.of());
+    }
+
+    /**
+     * @return {@code true} si aucun prix ne manque
+     */
+    boolean isComplete() {
+        return missing.isEmpty();
+    }
+
+    /**
+     * @return les codes EAN des produits dont le prix manque, aucun pour un événement qui ne porte pas de produits
+     */
+    List<String> missingEans() {
+        if (!(event instanceof ProductEvent.Updated updated)) {
+            return List.of();
+        }
+        final var products = updated.products();
+        return missing.stream().map(index -> products.get(index).ean()).toList();
+    }
+
+    /**
+     * Complète les prix manquants.
+     * Un produit supprimé entre-temps n'a plus de prix en base de données : son prix vaut zéro.
+     *
+     * @param prices les prix connus, indexés par code EAN
+     * @return l'événement complet
+     */
+    ProductEvent complete(Map<String, BigDecimal> prices) {
+        if (isComplete() || !(event instanceof ProductEvent.Updated updated)) {
+            return event;
+        }
+
+        final var products = new ArrayList<>(updated.products());
+        for (int index : missing) {
+            final var product = products.get(index);
+            products.set(index, Product.create(product.ean(), product.nom(), product.quantite(),
+                    prices.getOrDefault(product.ean(), BigDecimal.ZERO)));
+        }
+        return new ProductEvent.Updated(updated.sequence(), products, updated.changedAt());
+    }
+}
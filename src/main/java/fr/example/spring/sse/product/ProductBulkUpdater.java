@@ -0,0 +1,152 @@
+package fr.example.spring.sse.product;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.QuantityUpdate;
+import fr.example.spring.sse.product.repositories.Produit;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+import io.vavr.control.Try;
+
+/**
+ * Service responsable de la mise à jour des quantités de plusieurs produits à la fois.
+ * Les quantités demandées pour un même produit sont cumulées, puis appliquées par une seule requête SQL
+ * par lot de {@code app.stock.batch-size} produits.
+ */
+@Service
+public class ProductBulkUpdater {
+
+    private final ProduitBatchRepository produitBatchRepository;
+    private final ApplicationProperties.Stock stock;
+
+    public ProductBulkUpdater(ProduitBatchRepository produitBatchRepository, ApplicationProperties applicationProperties) {
+        this.produitBatchRepository = produitBatchRepository;
+        this.stock = applicationProperties.stock();
+    }
+
+    /**
+     * Met à jour la quantité de plusieurs produits.
+     * Chaque lot est appliqué par sa propre requête : un échec n'annule pas les lots déjà appliqués.
+     * Toutes les demandes portant sur un même produit reçoivent la quantité obtenue après application du lot.
+     *
+     * @param updates les mises à jour à appliquer
+     * @return le résultat de chaque mise à jour, dans l'ordre des demandes : le produit mis à jour, ou un échec
+     * avec une {@link IllegalArgumentException} si le produit n'est pas trouvé, ou une {@link IllegalStateException}
+     * si le stock deviendrait négatif alors que ce n'est pas autorisé
+     */
+    public List<Try<Product>> updateQuantities(List<QuantityUpdate> updates) {
+        final var results = new ArrayList<Try<Product>>(updates.size());
+        var deltas = new LinkedHashMap<String, Integer>();
+        var batchStart = 0;
+
+        for (var i = 0; i < updates.size(); i++) {
+            final var update = updates.get(i);
+            final var delta = deltas.get(update.ean());
+            // Un nouveau lot commence lorsque le lot courant est plein, ou lorsque la quantité cumulée du produit
+            // dépasserait la capacité d'un entier
+            final var full = delta == null && deltas.size() == stock.batchSize();
+            final var overflow = delta != null && (long) delta + update.quantity() != delta + update.quantity();
+            if (full || overflow) {
+                results.addAll(apply(updates.subList(batchStart, i), deltas));
+                deltas = new LinkedHashMap<>();
+                batchStart = i;
+            }
+            deltas.merge(update.ean(), update.quantity(), Integer::sum);
+        }
+        results.addAll(apply(updates.subList(batchStart, updates.size()), deltas));
+        return results;
+    }
+
+    /**
+     * Met à jour la quantité de plusieurs produits lus au fil de l'eau, sans conserver l'ensemble des demandes en mémoire.
+     * Les demandes sont appliquées par tranches de {@code app.stock.batch-size}, et leur résultat est transmis
+     * dès que leur tranche est appliquée. Une demande que {@code parser} rejette n'est pas appliquée :
+     * son résultat est l'échec du parseur.
+     *
+     * @param requests le flux des demandes à appliquer
+     * @param parser   la fonction convertissant une demande en mise à jour, ou en échec si elle est invalide
+     * @param results  l'action recevant chaque demande et son résultat, dans l'ordre des demandes
+     * @param <T>      le type des demandes
+     */
+    public <T> void updateQuantities(Stream<T> requests, Function<T, Try<QuantityUpdate>> parser, BiConsumer<T, Try<Product>> results) {
+        final var chunk = new ArrayList<T>(stock.batchSize());
+        final var iterator = requests.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == stock.batchSize()) {
+                publish(chunk, parser, results);
+                chunk.clear();
+            }
+        }
+        publish(chunk, parser, results);
+    }
+
+    private <T> void publish(List<T> requests, Function<T, Try<QuantityUpdate>> parser, BiConsumer<T, Try<Product>> results) {
+        final var updates = requests.stream().map(parser).toList();
+        final var outcomes = updateQuantities(updates.stream().filter(Try::isSuccess).map(Try::get).toList()).iterator();
+        for (var i = 0; i < requests.size(); i++) {
+            final var update = updates.get(i);
+            results.accept(requests.get(i), update.isSuccess() ? outcomes.next() : Try.failure(update.getCause()));
+        }
+    }
+
+    /**
+     * Applique un lot, un code EAN n'apparaissant qu'une fois dans la requête SQL.
+     */
+    private List<Try<Product>> apply(List<QuantityUpdate> updates, Map<String, Integer> deltas) {
+        if (updates.isEmpty()) {
+            return List.of();
+        }
+
+        final Map<String, Try<Product>> outcomes = new LinkedHashMap<>();
+        produitBatchRepository.incrementQuantites(deltas, stock.allowNegative())
+                .forEach(produit -> outcomes.put(produit.getEan(), Try.success(mapProduitToProduct(produit))));
+
+        final var rejected = deltas.keySet().stream()
+                .filter(ean -> !outcomes.containsKey(ean))
+                .toList();
+        if (rejected.isEmpty()) {
+            return updates.stream().map(update -> outcomes.get(update.ean())).toList();
+        }
+
+        // Produits inexistants, ou dont le stock cumulé deviendrait négatif : dans ce second cas, les quantités
+        // sont réappliquées une à une afin de ne refuser que celles qui rendent réellement le stock négatif
+        final var existing = new HashSet<>(produitBatchRepository.findExistingEans(rejected));
+        return updates.stream()
+                .map(update -> {
+                    final var outcome = outcomes.get(update.ean());
+                    if (outcome != null) {
+                        return outcome;
+                    }
+                    if (!existing.contains(update.ean())) {
+                        return Try.<Product>failure(new IllegalArgumentException("Product not found"));
+                    }
+                    return produitBatchRepository.incrementQuantites(Map.of(update.ean(), update.quantity()), stock.allowNegative())
+                            .stream()
+                            .findFirst()
+                            .map(this::mapProduitToProduct)
+                            .map(Try::success)
+                            .orElseGet(() -> Try.failure(new IllegalStateException("Insufficient stock")));
+                })
+                .toList();
+    }
+
+    private Product mapProduitToProduct(Produit produit) {
+        return Product.create(
+                produit.getEan(),
+                produit.getNom(),
+                produit.getQuantite(),
+                produit.getPrix()
+        );
+    }
+}
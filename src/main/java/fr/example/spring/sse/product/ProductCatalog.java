@@ -0,0 +1,246 @@
+package fr.example.spring.sse.product;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.model.ProductSnapshot;
+import fr.example.spring.sse.product.repositories.Produit;
+import fr.example.spring.sse.product.repositories.ProduitCursorRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Modèle de lecture des produits, maintenu en mémoire et indexé par code EAN.
+ * Chargé une fois depuis la base de données, il est ensuite tenu à jour par les événements du {@link ProductListener},
+ * ce qui permet de servir la liste des produits sans requête SQL.
+ * Les produits sont tenus dans un index trié par code EAN : appliquer un événement ne coûte que l'insertion
+ * de ses produits, sans copie du catalogue. L'instantané immuable servi aux lectures n'est construit qu'à la demande,
+ * une fois par version, par une simple copie de l'index déjà trié ; les lectures suivantes de la même version sont
+ * sans verrou ni copie. Chaque instantané porte sa version et la séquence du dernier événement appliqué :
+ * les modifications et la construction de l'instantané sont synchronisées entre elles, si bien que l'instantané
+ * reflète exactement les événements jusqu'à cette séquence.
+ * Un rechargement qui échoue, la base de données étant souvent encore indisponible juste après une reconnexion,
+ * est retenté après un délai : le flux des événements n'est jamais interrompu.
+ */
+@Service
+public class ProductCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalog.class);
+
+    // Version courante du catalogue, modifiée uniquement sous son verrou et lue sans verrou par snapshot().
+    // Initialisée à partir de l'horloge : une version ne peut pas être réutilisée après un redémarrage
+    private volatile long version = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    // Produits indexés par code EAN et séquence du dernier événement appliqué, gardés par le verrou du catalogue
+    private TreeMap<String, Product> products = new TreeMap<>();
+    private long sequence = -1;
+    private final Sinks.Many<ProductEvent> appliedUpdates = Sinks.many().multicast().directBestEffort();
+    private final ProduitCursorRepository produitCursorRepository;
+    private final ApplicationProperties.Listener listener;
+    private final Counter reloadFailures;
+    private volatile ProductSnapshot snapshot = new ProductSnapshot(-1, -1, List.of());
+    private volatile boolean loaded;
+
+    public ProductCatalog(
+            ProductListener productListener,
+            ProduitCursorRepository produitCursorRepository,
+            ApplicationProperties applicationProperties,
+            MeterRegistry meterRegistry) {
+
+        this.produitCursorRepository = produitCursorRepository;
+        this.listener = applicationProperties.listener();
+        this.reloadFailures = Counter.builder("catalog.reload.failures")
+                .description("Rechargements du catalogue de produits en échec, retentés après un délai")
+                .register(meterRegistry);
+        productListener.getProductUpdates()
+                .map(this::apply)
+                .subscribe(
+                        event -> {
+                            final var result = appliedUpdates.tryEmitNext(event);
+                            if (result.isFailure()) {
+                                Counter.builder("pg.notifications.emit.failures")
+                                        .description("Changements PostgreSQL qui n'ont pas pu être publiés dans le sink")
+                                        .tag("stage", "catalog")
+                                        .tag("result", result.name())
+                                        .register(meterRegistry)
+                                        .increment();
+                            }
+                        },
+                        e -> log.error("Product catalog stopped receiving updates", e)
+                );
+    }
+
+    /**
+     * Charge le catalogue dès que l'application est prête, pour que la première lecture ne paie pas ce chargement.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        snapshot();
+    }
+
+    /**
+     * Retourne l'instantané courant du catalogue, sans accès à la base de données ni verrou une fois le catalogue chargé
+     * et l'instantané de sa version construit.
+     *
+     * @return l'état complet du catalogue, sa version et la séquence du dernier événement appliqué
+     */
+    public ProductSnapshot snapshot() {
+        if (!loaded) {
+            load();
+        }
+        final var current = snapshot;
+        return current.version() == version ? current : buildSnapshot();
+    }
+
+    /**
+     * Retourne le flux des événements de produits, émis une fois appliqués au catalogue.
+     * Un abonné à ce flux a donc la garantie que le catalogue reflète déjà chaque événement reçu.
+     *
+     * @return un Flux d'événements de mise à jour de produits
+     */
+    public Flux<ProductEvent> getProductUpdates() {
+        return appliedUpdates.asFlux();
+    }
+
+    /**
+     * Applique un événement au catalogue.
+     * Les produits notifiés sont complets, leur prix ayant été complété par le {@link ProductPriceCache}.
+     *
+     * @param event l'événement reçu
+     * @return l'événement appliqué
+     */
+    private ProductEvent apply(ProductEvent event) {
+        return switch (event) {
+            case ProductEvent.Updated updated -> {
+                synchronized (this) {
+                    updated.products().forEach(product -> products.put(product.ean(), product));
+                    changed(updated.sequence());
+                }
+                yield updated;
+            }
+            case ProductEvent.Resync resync -> {
+                reloadWithRetry(resync.sequence());
+                yield resync;
+            }
+        };
+    }
+
+    /**
+     * Charge le catalogue depuis la base de données, lue par curseur sans copie intermédiaire de la table.
+     * Les produits déjà reçus par notification pendant le chargement sont plus récents et sont conservés.
+     */
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+
+        final var loading = readAll();
+        loading.putAll(products);
+        products = loading;
+        changed(sequence);
+        loaded = true;
+        log.info("Product catalog loaded with {} products", products.size());
+    }
+
+    /**
+     * Recharge le catalogue après un signal de resynchronisation, en réessayant après un délai doublant à chaque échec,
+     * jusqu'au délai maximal de reconnexion.
+     * Le thread de la source de changements attend pendant ce temps : les changements suivants restent en attente
+     * sur sa connexion et sont appliqués, dans l'ordre, au catalogue rechargé.
+     *
+     * @param sequence la séquence du signal de resynchronisation
+     */
+    private void reloadWithRetry(long sequence) {
+        var backoff = listener.initialBackoff();
+        while (true) {
+            try {
+                reload(sequence);
+                return;
+            } catch (RuntimeException e) {
+                reloadFailures.increment();
+                log.warn("Failed to reload product catalog for resync {}, retrying in {}", sequence, backoff, e);
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Product catalog reload for resync {} interrupted, catalog may be stale", sequence);
+                return;
+            }
+            final var doubled = backoff.multipliedBy(2);
+            backoff = doubled.compareTo(listener.maxBackoff()) <= 0 ? doubled : listener.maxBackoff();
+        }
+    }
+
+    /**
+     * Recharge entièrement le catalogue depuis la base de données, après une perte possible de notifications.
+     *
+     * @param sequence la séquence du signal de resynchronisation
+     */
+    private synchronized void reload(long sequence) {
+        products = readAll();
+        changed(sequence);
+        loaded = true;
+        log.info("Product catalog reloaded with {} products", products.size());
+    }
+
+    /**
+     * Lit tous les produits depuis la base de données, par curseur sans copie intermédiaire de la table.
+     *
+     * @return les produits, indexés par code EAN
+     */
+    private TreeMap<String, Product> readAll() {
+        final var read = new TreeMap<String, Product>();
+        produitCursorRepository.forEachAfter(0, null, produit -> {
+            final var product = mapToProduct(produit);
+            read.put(product.ean(), product);
+        });
+        return read;
+    }
+
+    /**
+     * Passe le catalogue à une nouvelle version après une modification, sous son verrou.
+     * L'instantané de cette version ne sera construit qu'à la prochaine lecture.
+     *
+     * @param sequence la séquence du dernier événement appliqué
+     */
+    private void changed(long sequence) {
+        this.sequence = sequence;
+        version++;
+    }
+
+    /**
+     * Construit et publie l'instantané de la version courante, s'il ne l'a pas déjà été par une lecture concurrente.
+     * L'index étant trié par code EAN, la construction est une simple copie de ses produits.
+     *
+     * @return l'instantané de la version courante
+     */
+    private synchronized ProductSnapshot buildSnapshot() {
+        if (snapshot.version() != version) {
+            snapshot = new ProductSnapshot(version, sequence, List.copyOf(products.values()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Convertit un objet Produit en objet Product.
+     *
+     * @param produit l'objet Produit à convertir
+     * @return l'objet Product correspondant
+     */
+    private Product mapToProduct(Produit produit) {
+        return Product.create(produit.getEan(), produit.getNom(), produit.getQuantite(), produit.getPrix());
+    }
+}
@@ -1,35 +1,104 @@
 package fr.example.spring.sse.product;
 
-import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.infra.NotificationChannels;
+import fr.example.spring.sse.infra.SequencedNotification;
+import fr.example.spring.sse.product.model.ProductEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
 
 /**
- * Service responsable de l'écoute des notifications de changement de quantité de produits et
+ * Service responsable de l'écoute des notifications de changement de quantité et de prix de produits et
  * de leur conversion en objets Product.
+ * Les notifications de changement de prix, reçues sur leur propre canal, portent le produit complet avec son
+ * nouveau prix : elles sont diffusées comme les changements de quantité et mettent à jour le {@link ProductPriceCache}.
+ * Les prix absents du cache sont chargés par le {@link ProductPriceLoader}, une requête SQL par fenêtre,
+ * hors du thread qui lit les notifications.
+ * Une notification illisible n'interrompt pas le flux partagé : elle est comptée puis remplacée par un signal
+ * de resynchronisation, la mise à jour qu'elle portait étant perdue.
  */
 @Service
 public class ProductListener {
 
-    private final Sinks.Many<PGNotification> pgNotificationSink;
+    private static final Logger log = LoggerFactory.getLogger(ProductListener.class);
+
+    private final Flux<ProductEvent> productUpdates;
     private final ProductNotificationMapper productNotificationMapper;
+    private final ProductPriceCache productPriceCache;
+    private final Counter quantityFailures;
+    private final Counter priceFailures;
+
+    public ProductListener(
+            NotificationChannels notificationChannels,
+            ProductNotificationMapper productNotificationMapper,
+            ProductPriceCache productPriceCache,
+            ProductPriceLoader productPriceLoader,
+            ApplicationProperties applicationProperties,
+            MeterRegistry meterRegistry) {
 
-    public ProductListener(Sinks.Many<PGNotification> pgNotificationSink, ProductNotificationMapper productNotificationMapper) {
-        this.pgNotificationSink = pgNotificationSink;
         this.productNotificationMapper = productNotificationMapper;
+        this.productPriceCache = productPriceCache;
+        this.quantityFailures = mappingFailures(meterRegistry, applicationProperties.channelToListen());
+        this.priceFailures = mappingFailures(meterRegistry, applicationProperties.priceCache().invalidationChannel());
+
+        final var quantityChanges = notificationChannels.listen(applicationProperties.channelToListen())
+                .map(notification -> decode(notification, quantityFailures));
+        // Chaque canal reçoit un signal de resynchronisation après une reconnexion : seul celui des quantités est publié,
+        // celui des prix vide le cache, des changements de prix ayant pu être perdus
+        final var priceChanges = notificationChannels.listen(applicationProperties.priceCache().invalidationChannel())
+                .filter(notification -> {
+                    if (notification.resync()) {
+                        productPriceCache.clear();
+                        return false;
+                    }
+                    return true;
+                })
+                .map(notification -> decode(notification, priceFailures));
+
+        // Les deux canaux sont alimentés par la même connexion, dans l'ordre de leur numéro de séquence.
+        // Chaque notification est désérialisée une seule fois puis partagée entre tous les abonnés
+        this.productUpdates = Flux.merge(quantityChanges, priceChanges)
+                .transform(productPriceLoader::complete)
+                .share();
+    }
+
+    private static Counter mappingFailures(MeterRegistry meterRegistry, String channel) {
+        return Counter.builder("pg.notifications.mapping.failures")
+                .description("Changements PostgreSQL qui n'ont pas pu être convertis")
+                .tag("channel", channel)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Convertit une notification de changement de quantité ou de prix en événement.
+     * En cas d'échec, un signal de resynchronisation est publié à la place : le catalogue et les clients SSE
+     * rechargent alors l'état complet des produits, qui inclut la mise à jour perdue. Le cache des prix est vidé,
+     * le nouveau prix d'un produit ayant pu être perdu.
+     */
+    private PendingEvent decode(SequencedNotification notification, Counter failures) {
+        try {
+            return productNotificationMapper.decode(notification);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Failed to map PostgreSQL change {}, publishing a resync signal instead", notification.sequence(), e);
+            productPriceCache.clear();
+            return PendingEvent.of(new ProductEvent.Resync(notification.sequence()));
+        }
     }
 
     /**
-     * Retourne un Flux de produits mis à jour à partir des notifications PostgreSQL.
-     * Cette méthode démarre l'écouteur de notification s'il n'est pas déjà en cours d'exécution.
+     * Retourne un Flux d'événements de mise à jour de produits à partir des notifications PostgreSQL.
+     * Ce flux est partagé : la conversion d'une notification en Product n'est effectuée qu'une fois,
+     * quel que soit le nombre d'abonnés.
      *
-     * @return un Flux de produits mis à jour
+     * @return un Flux d'événements de mise à jour de produits
      */
-    public Flux<Product> getProductUpdates() {
-        return pgNotificationSink.asFlux()
-                .map(productNotificationMapper::map);
+    public Flux<ProductEvent> getProductUpdates() {
+        return productUpdates;
     }
 }
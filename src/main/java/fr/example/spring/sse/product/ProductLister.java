@@ -1,43 +1,62 @@
 package fr.example.spring.sse.product;
 
-import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 import org.springframework.stereotype.Service;
 
+import fr.example.spring.sse.config.ApplicationProperties;
 import fr.example.spring.sse.product.model.Product;
-import fr.example.spring.sse.product.repositories.Produit;
-import fr.example.spring.sse.product.repositories.ProduitRepository;
+import fr.example.spring.sse.product.model.ProductSnapshot;
+import fr.example.spring.sse.product.repositories.ProduitCursorRepository;
 
 /**
- * Service responsable de la récupération des produits depuis le référentiel.
+ * Service responsable de la récupération des produits depuis le catalogue en mémoire,
+ * ou depuis la base de données au fil de l'eau pour les parcours paginés et les exports.
  */
 @Service
 public class ProductLister {
 
-    private final ProduitRepository produitRepository;
+    private final ProductCatalog productCatalog;
+    private final ProduitCursorRepository produitCursorRepository;
+    private final int maxPageSize;
 
-    public ProductLister(ProduitRepository produitRepository) {
-        this.produitRepository = produitRepository;
+    public ProductLister(ProductCatalog productCatalog, ProduitCursorRepository produitCursorRepository, ApplicationProperties applicationProperties) {
+        this.productCatalog = productCatalog;
+        this.produitCursorRepository = produitCursorRepository;
+        this.maxPageSize = applicationProperties.listing().maxPageSize();
     }
 
     /**
-     * Récupère la liste de tous les produits.
+     * Récupère la liste de tous les produits avec la version du catalogue correspondante.
      *
-     * @return une liste d'objets Product
+     * @return l'état complet du catalogue et sa version
      */
-    public List<Product> list() {
-        return produitRepository.findAll().stream()
-                .map(this::mapToProduct)
-                .toList();
+    public ProductSnapshot snapshot() {
+        return productCatalog.snapshot();
     }
 
     /**
-     * Convertit un objet Produit en objet Product.
+     * Parcourt les produits depuis la base de données par identifiant croissant, sans les charger tous en mémoire.
+     * Chaque produit est transmis à l'action dès sa lecture, avec son identifiant, qui sert de curseur
+     * pour demander la page suivante.
      *
-     * @param produit l'objet Produit à convertir
-     * @return l'objet Product correspondant
+     * @param afterId l'identifiant du dernier produit déjà reçu, 0 pour commencer au premier produit
+     * @param limit   le nombre maximal de produits parcourus, ou {@code null} pour parcourir tous les produits suivants
+     * @param action  l'action appliquée à chaque produit et à son identifiant
      */
-    private Product mapToProduct(Produit produit) {
-        return Product.create(produit.getEan(), produit.getNom(), produit.getQuantite(), produit.getPrix());
+    public void forEach(int afterId, Integer limit, ObjIntConsumer<Product> action) {
+        produitCursorRepository.forEachAfter(afterId, limit, produit -> action.accept(
+                Product.create(produit.getEan(), produit.getNom(), produit.getQuantite(), produit.getPrix()),
+                produit.getId()));
+    }
+
+    /**
+     * Ramène une taille de page demandée à la taille maximale configurée.
+     *
+     * @param requested la taille de page demandée
+     * @return la taille de page effective
+     */
+    public int pageSize(int requested) {
+        return Math.min(requested, maxPageSize);
     }
 }
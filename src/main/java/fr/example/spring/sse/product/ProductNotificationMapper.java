@@ -1,45 +1,136 @@
 package fr.example.spring.sse.product;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.postgresql.PGNotification;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import fr.example.spring.sse.infra.SequencedNotification;
 import fr.example.spring.sse.product.model.Product;
-import io.vavr.control.Try;
+import fr.example.spring.sse.product.model.ProductEvent;
 
 @Service
 public class ProductNotificationMapper {
 
-    private final ObjectMapper objectMapper;
+    private static final int POOL_CAPACITY = 16_384;
 
-    ProductNotificationMapper(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    private final JsonFactory jsonFactory;
+    private final ProductPriceCache productPriceCache;
+    // Les mêmes produits reviennent sans cesse : leurs codes EAN et leurs noms sont réutilisés
+    private final StringPool eans = new StringPool(POOL_CAPACITY);
+    private final StringPool noms = new StringPool(POOL_CAPACITY);
+
+    ProductNotificationMapper(ObjectMapper objectMapper, ProductPriceCache productPriceCache) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.productPriceCache = productPriceCache;
     }
 
     /**
-     * Transforme la notification PostgreSQL en un objet Product.
+     * Transforme la notification PostgreSQL en un événement de mise à jour d'un lot de Product,
+     * ou en signal de resynchronisation si la connexion d'écoute a été rétablie.
+     * Le trigger envoie un tableau JSON des produits modifiés par une même requête SQL ; un objet JSON seul
+     * est accepté comme un lot d'un produit.
+     * Le prix, absent des notifications du trigger des quantités, est lu dans le {@link ProductPriceCache},
+     * sans accès à la base de données : les prix absents du cache sont chargés ensuite par le {@link ProductPriceLoader},
+     * pour toutes les notifications d'une même fenêtre à la fois. Un prix transmis, par le trigger des prix
+     * ou par la réplication logique, met à jour le cache.
+     * La notification est lue au fil de l'eau, sans construire d'arbre JSON intermédiaire.
      *
      * @param notification la notification PostgreSQL
-     * @return l'objet Product
+     * @return l'événement portant les produits et le numéro de séquence de la notification, et les prix à charger
+     * @throws IllegalArgumentException si la notification n'est pas un produit ou un tableau de produits
      */
-    Product map(PGNotification notification) {
+    PendingEvent decode(SequencedNotification notification) {
+
+        if (notification.resync()) {
+            return PendingEvent.of(new ProductEvent.Resync(notification.sequence()));
+        }
+
+        final var products = new ArrayList<Product>();
+        // Position des produits dont le prix n'est pas dans le cache
+        List<Integer> missing = List.of();
+        long changedAt = 0;
 
-        final var payload = notification.getParameter();
-        final var jsonNode = Try.of(() -> objectMapper.readTree(payload))
-                .getOrElseThrow(e -> new RuntimeException("Failed to parse notification payload", e));
+        try (var parser = jsonFactory.createParser(notification.getParameter())) {
+            var token = parser.nextToken();
+            final var array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            } else if (token != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Notification payload is neither a product nor an array of products");
+            }
+            while (token == JsonToken.START_OBJECT) {
+                final var row = readRow(parser);
+                changedAt = row.changedAt;
 
-        final var ean = jsonNode.get("ean").asText();
-        final var nom = jsonNode.get("nom").asText();
-        final var quantite = jsonNode.get("quantite").asInt();
+                var prix = row.prix;
+                if (prix != null) {
+                    // Un prix transmis avec le changement (trigger des prix, réplication logique) est à jour : il alimente le cache
+                    productPriceCache.put(row.ean, prix);
+                } else if ((prix = productPriceCache.cached(row.ean)) == null) {
+                    if (missing.isEmpty()) {
+                        missing = new ArrayList<>();
+                    }
+                    missing.add(products.size());
+                    prix = BigDecimal.ZERO;
+                }
+                products.add(Product.create(row.ean, row.nom, row.quantite, prix));
+                token = array ? parser.nextToken() : null;
+            }
+            // Un élément qui n'est pas un produit, ou un contenu après le lot, ne doit pas tronquer le lot en silence
+            if (array && token != JsonToken.END_ARRAY || parser.nextToken() != null) {
+                throw new IllegalArgumentException("Notification payload has unexpected content after product " + products.size());
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to parse notification payload", e);
+        }
+
+        return new PendingEvent(new ProductEvent.Updated(notification.sequence(), products, changedAt), missing);
+    }
 
-        // Note: prix is not included in the notification payload according to schema.sql
-        // We're setting it to zero here, but in a real application you might want to
-        // fetch the complete product from the database
-        final var prix = BigDecimal.ZERO;
+    /**
+     * Lit un produit de la notification, le parseur étant positionné sur le début de l'objet JSON.
+     * Seuls les champs {@code ean}, {@code nom}, {@code quantite}, {@code prix} et {@code ts} sont lus.
+     */
+    private Row readRow(JsonParser parser) throws IOException {
+        final var row = new Row();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Noms de champs canonisés par Jackson : la comparaison ne crée pas de chaîne
+            final var field = parser.currentName();
+            final var value = parser.nextToken();
+            switch (field) {
+                // Une valeur nulle est lue comme absente, et non comme le texte "null"
+                case "ean" -> row.ean = value == JsonToken.VALUE_STRING
+                        ? eans.get(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()) : null;
+                case "nom" -> row.nom = value == JsonToken.VALUE_STRING
+                        ? noms.get(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()) : null;
+                case "quantite" -> row.quantite = parser.getIntValue();
+                case "ts" -> row.changedAt = parser.getLongValue();
+                case "prix" -> row.prix = value == JsonToken.VALUE_NULL ? null : new BigDecimal(parser.getText());
+                default -> parser.skipChildren();
+            }
+        }
+        if (row.ean == null || row.nom == null) {
+            throw new IllegalArgumentException("Notification payload is missing ean or nom");
+        }
+        return row;
+    }
 
-        return Product.create(ean, nom, quantite, prix);
+    /**
+     * Champs d'un produit lus dans la notification.
+     */
+    private static final class Row {
+        private String ean;
+        private String nom;
+        private int quantite;
+        private BigDecimal prix;
+        private long changedAt;
     }
 }
@@ -0,0 +1,114 @@
+package fr.example.spring.sse.product;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+
+/**
+ * Cache borné des prix des produits, indexé par code EAN.
+ * Les notifications de changement de quantité ne transmettent pas le prix : ce cache permet de compléter
+ * les produits notifiés sans interroger la base de données pour chacun d'eux.
+ * Les prix absents sont chargés par une seule requête SQL pour l'ensemble des notifications d'une fenêtre,
+ * par le {@link ProductPriceLoader}, et le prix le moins récemment utilisé est évincé lorsque la taille maximale
+ * est atteinte.
+ * Les entrées sont mises à jour à la réception d'une notification de changement de prix, qui porte le nouveau prix.
+ */
+@Component
+public class ProductPriceCache {
+
+    private final ProduitBatchRepository produitBatchRepository;
+    private final Map<String, BigDecimal> prices;
+    // Incrémentée à chaque invalidation, sous le verrou des prix
+    private long generation;
+
+    public ProductPriceCache(ProduitBatchRepository produitBatchRepository, ApplicationProperties applicationProperties) {
+        this.produitBatchRepository = produitBatchRepository;
+        final var maxSize = applicationProperties.priceCache().maxSize();
+        // Ordre d'accès : l'entrée la plus ancienne est la moins récemment utilisée
+        this.prices = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BigDecimal> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Retourne le prix de plusieurs produits.
+     * Les prix absents du cache sont chargés par une seule requête SQL puis conservés. Un prix enregistré par
+     * {@link #put} pendant la requête est plus récent que celui lu en base de données : il est conservé et retourné.
+     * Si le cache est invalidé pendant la requête, les prix lus ne sont pas conservés.
+     *
+     * @param eans les codes EAN des produits
+     * @return le prix de chaque produit connu, indexé par code EAN ; un produit inexistant est absent
+     */
+    public Map<String, BigDecimal> prices(Collection<String> eans) {
+        final var found = new HashMap<String, BigDecimal>();
+        final var missing = new HashSet<String>();
+        final long loadGeneration;
+        synchronized (prices) {
+            loadGeneration = generation;
+            for (String ean : eans) {
+                final var prix = prices.get(ean);
+                if (prix != null) {
+                    found.put(ean, prix);
+                } else {
+                    missing.add(ean);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            final var loaded = produitBatchRepository.findPrices(missing);
+            synchronized (prices) {
+                loaded.forEach((ean, prix) -> {
+                    final var current = generation == loadGeneration ? prices.putIfAbsent(ean, prix) : prices.get(ean);
+                    found.put(ean, current != null ? current : prix);
+                });
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Retourne le prix d'un produit s'il est présent dans le cache, sans accès à la base de données.
+     *
+     * @param ean le code EAN du produit
+     * @return le prix du produit, ou {@code null} s'il n'est pas dans le cache
+     */
+    public BigDecimal cached(String ean) {
+        synchronized (prices) {
+            return prices.get(ean);
+        }
+    }
+
+    /**
+     * Enregistre le prix d'un produit transmis avec le changement, sans accès à la base de données.
+     *
+     * @param ean  le code EAN du produit
+     * @param prix le prix du produit
+     */
+    public void put(String ean, BigDecimal prix) {
+        synchronized (prices) {
+            prices.put(ean, prix);
+        }
+    }
+
+    /**
+     * Invalide tous les prix, lorsque des notifications de changement de prix ont pu être perdues.
+     */
+    public void clear() {
+        synchronized (prices) {
+            prices.clear();
+            generation++;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package fr.example.spring.sse.product;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.infra.ExecutionThreads;
+import fr.example.spring.sse.product.model.ProductEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * Chargement groupé des prix absents du {@link ProductPriceCache}.
+ * Un événement dont tous les prix sont dans le cache est publié immédiatement, par le thread qui l'a décodé.
+ * Sinon, il est mis en attente, ainsi que les événements qui le suivent afin que leur ordre soit préservé :
+ * les prix manquants de tous les événements reçus pendant une fenêtre de {@code app.price-cache.batch-window}
+ * sont chargés par une seule requête SQL, exécutée par un thread dédié et non par le thread qui lit les notifications.
+ * Une rafale de notifications portant des produits absents du cache ne coûte donc qu'une requête par fenêtre.
+ */
+@Component
+public class ProductPriceLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductPriceLoader.class);
+
+    private final ProductPriceCache productPriceCache;
+    private final long window;
+    private final ScheduledExecutorService loader;
+    private final Counter failures;
+
+    public ProductPriceLoader(
+            ProductPriceCache productPriceCache,
+            ApplicationProperties applicationProperties,
+            ExecutionThreads executionThreads,
+            MeterRegistry meterRegistry) {
+
+        this.productPriceCache = productPriceCache;
+        this.window = applicationProperties.priceCache().batchWindow().toNanos();
+        this.loader = Executors.newSingleThreadScheduledExecutor(executionThreads.thread("price-loader").factory());
+        this.failures = Counter.builder("price.cache.load.failures")
+                .description("Chargements groupés de prix en échec, remplacés par un signal de resynchronisation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Complète les prix des événements décodés, dans l'ordre des événements.
+     * Si les prix d'une fenêtre ne peuvent pas être chargés, ses événements sont remplacés par un signal
+     * de resynchronisation : le catalogue et les clients SSE rechargent alors l'état complet des produits.
+     *
+     * @param events les événements décodés, émis par un seul thread à la fois
+     * @return les événements complets
+     */
+    Flux<ProductEvent> complete(Flux<PendingEvent> events) {
+        return Flux.create(sink -> {
+            final var batch = new Batch(sink);
+            final var upstream = events.subscribe(batch::submit, sink::error, sink::complete);
+            sink.onDispose(upstream);
+        });
+    }
+
+    /**
+     * Arrête le thread de chargement lors de l'arrêt de l'application.
+     */
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * Événements en attente de leurs prix pour un abonné. Les événements sont publiés sous le verrou du lot,
+     * par le thread qui les décode ou par le thread de chargement, ce qui préserve leur ordre.
+     */
+    private final class Batch {
+
+        private final FluxSink<ProductEvent> sink;
+        private final ArrayDeque<PendingEvent> pending = new ArrayDeque<>();
+        private boolean scheduled;
+        private long lastSequence;
+
+        Batch(FluxSink<ProductEvent> sink) {
+            this.sink = sink;
+        }
+
+        synchronized void submit(PendingEvent event) {
+            lastSequence = event.event().sequence();
+            if (pending.isEmpty() && event.isComplete()) {
+                sink.next(event.event());
+                return;
+            }
+
+            pending.add(event);
+            if (!scheduled) {
+                scheduled = true;
+                loader.schedule(this::load, window, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Charge par une seule requête SQL les prix manquants des événements en attente, hors du verrou du lot :
+         * les événements reçus pendant la requête sont mis en attente et attendent la fenêtre suivante.
+         * Une erreur inattendue remplace tous les événements en attente par un signal de resynchronisation ;
+         * le lot est toujours replanifié ou libéré, afin que les événements suivants ne restent pas bloqués.
+         */
+        private void load() {
+            try {
+                loadPending();
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("Failed to complete the pending events, publishing a resync signal instead", e);
+                resync();
+            } finally {
+                synchronized (this) {
+                    scheduled = !pending.isEmpty();
+                    if (scheduled) {
+                        loader.schedule(this::load, window, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+        }
+
+        private void loadPending() {
+            final List<PendingEvent> loading;
+            synchronized (this) {
+                loading = List.copyOf(pending);
+            }
+
+            final var eans = new LinkedHashSet<String>();
+            loading.forEach(event -> eans.addAll(event.missingEans()));
+            final Map<String, BigDecimal> prices = loadPrices(eans);
+
+            synchronized (this) {
+                loading.forEach(event -> pending.poll());
+                if (prices != null) {
+                    loading.forEach(event -> sink.next(event.complete(prices)));
+                } else {
+                    productPriceCache.clear();
+                    sink.next(new ProductEvent.Resync(loading.getLast().event().sequence()));
+                }
+
+                // Les événements reçus pendant la requête sont publiés sans attendre si leurs prix sont désormais connus
+                for (var event = pending.peek(); event != null; event = pending.peek()) {
+                    final var cached = cached(event);
+                    if (cached == null) {
+                        break;
+                    }
+                    pending.poll();
+                    sink.next(event.complete(cached));
+                }
+            }
+        }
+
+        /**
+         * Abandonne les événements en attente et publie à leur place un signal de resynchronisation,
+         * portant la séquence du dernier événement reçu.
+         */
+        private synchronized void resync() {
+            pending.clear();
+            productPriceCache.clear();
+            sink.next(new ProductEvent.Resync(lastSequence));
+        }
+
+        /**
+         * @return les prix des produits, ou {@code null} s'ils n'ont pas pu être chargés
+         */
+        private Map<String, BigDecimal> loadPrices(Collection<String> eans) {
+            try {
+                return productPriceCache.prices(eans);
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.warn("Failed to load the prices of {} products, publishing a resync signal instead", eans.size(), e);
+                return null;
+            }
+        }
+
+        /**
+         * @return les prix manquants de l'événement lus dans le cache, ou {@code null} si l'un d'eux en est absent
+         */
+        private Map<String, BigDecimal> cached(PendingEvent event) {
+            final var prices = new HashMap<String, BigDecimal>();
+            for (String ean : event.missingEans()) {
+                final var prix = productPriceCache.cached(ean);
+                if (prix == null) {
+                    return null;
+                }
+                prices.put(ean, prix);
+            }
+            return prices;
+        }
+    }
+}
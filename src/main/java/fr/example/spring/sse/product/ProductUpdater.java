@@ -3,6 +3,7 @@ package fr.example.spring.sse.product;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import fr.example.spring.sse.config.ApplicationProperties;
 import fr.example.spring.sse.product.model.Product;
 import fr.example.spring.sse.product.repositories.Produit;
 import fr.example.spring.sse.product.repositories.ProduitRepository;
@@ -14,26 +15,39 @@ import fr.example.spring.sse.product.repositories.ProduitRepository;
 public class ProductUpdater {
 
     private final ProduitRepository produitRepository;
+    private final ApplicationProperties.Stock stock;
 
-    public ProductUpdater(ProduitRepository produitRepository) {
+    public ProductUpdater(ProduitRepository produitRepository, ApplicationProperties applicationProperties) {
         this.produitRepository = produitRepository;
+        this.stock = applicationProperties.stock();
     }
 
     /**
      * Met à jour la quantité d'un produit identifié par son code EAN.
+     * L'incrément est appliqué par la base de données en un seul aller-retour, sans lecture préalable du produit.
      *
      * @param ean      le code EAN du produit à mettre à jour
      * @param quantity la quantité à ajouter (peut être négative pour diminuer la quantité)
      * @return le produit mis à jour
      * @throws IllegalArgumentException si le produit n'est pas trouvé
+     * @throws IllegalStateException    si le stock deviendrait négatif alors que ce n'est pas autorisé
      */
     @Transactional
     public Product updateQuantity(String ean, Integer quantity) {
 
-        return produitRepository.findByEan(ean)
-                .map(produit -> produit.updateQuantite(quantity))
+        return produitRepository.incrementQuantite(ean, quantity, stock.allowNegative())
                 .map(this::mapProduitToProduct)
-                .orElseThrow(() -> new IllegalArgumentException("Product not found"));
+                .orElseThrow(() -> rejection(ean));
+    }
+
+    /**
+     * Détermine la cause d'une mise à jour refusée. Cette requête supplémentaire n'est exécutée qu'en cas d'échec.
+     */
+    private RuntimeException rejection(String ean) {
+        if (produitRepository.existsByEan(ean)) {
+            return new IllegalStateException("Insufficient stock");
+        }
+        return new IllegalArgumentException("Product not found");
     }
 
     private Product mapProduitToProduct(Produit produit) {
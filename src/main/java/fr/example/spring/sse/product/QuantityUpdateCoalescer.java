@@ -0,0 +1,158 @@
+package fr.example.spring.sse.product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.infra.ExecutionThreads;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.QuantityUpdate;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Point d'entrée des mises à jour de quantité unitaires.
+ * Lorsque le regroupement est activé ({@code app.stock.coalesce}), les quantités demandées pour un même produit
+ * pendant une fenêtre de quelques millisecondes sont déposées dans des segments indépendants, puis cumulées par produit
+ * et appliquées en un seul lot par le {@link ProductBulkUpdater}.
+ * Chaque appelant reçoit la quantité résultant de l'application du lot. Le nombre de mises à jour en attente est
+ * borné par {@code app.stock.max-pending} : une mise à jour reçue alors que son segment est plein est refusée.
+ * Sinon, chaque mise à jour est déléguée immédiatement au {@link ProductUpdater}.
+ */
+@Service
+public class QuantityUpdateCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantityUpdateCoalescer.class);
+
+    private final ProductUpdater productUpdater;
+    private final ProductBulkUpdater productBulkUpdater;
+    private final ApplicationProperties.Stock stock;
+    // Un segment par cœur : les appelants mettant à jour des produits différents se disputent rarement le même verrou
+    private final Stripe[] stripes;
+    private final ScheduledExecutorService flusher;
+
+    public QuantityUpdateCoalescer(
+            ProductUpdater productUpdater,
+            ProductBulkUpdater productBulkUpdater,
+            ApplicationProperties applicationProperties,
+            ExecutionThreads executionThreads) {
+
+        this.productUpdater = productUpdater;
+        this.productBulkUpdater = productBulkUpdater;
+        this.stock = applicationProperties.stock();
+        this.stripes = new Stripe[Runtime.getRuntime().availableProcessors()];
+        final var capacity = Math.max(1, stock.maxPending() / stripes.length);
+        for (var i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+
+        if (stock.coalesce()) {
+            final var window = stock.coalesceWindow().toNanos();
+            this.flusher = Executors.newSingleThreadScheduledExecutor(executionThreads.thread("stock-coalescer").factory());
+            this.flusher.scheduleWithFixedDelay(this::flush, window, window, TimeUnit.NANOSECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Met à jour la quantité d'un produit identifié par son code EAN.
+     *
+     * @param ean      le code EAN du produit à mettre à jour
+     * @param quantity la quantité à ajouter (peut être négative pour diminuer la quantité)
+     * @return le produit mis à jour, une fois la mise à jour appliquée en base de données ; en échec avec une
+     * {@link IllegalArgumentException} si le produit n'est pas trouvé, une {@link IllegalStateException}
+     * si le stock deviendrait négatif alors que ce n'est pas autorisé, ou une {@link RejectedExecutionException}
+     * si trop de mises à jour sont déjà en attente
+     */
+    public CompletableFuture<Product> updateQuantity(String ean, Integer quantity) {
+        if (!stock.coalesce()) {
+            try {
+                return CompletableFuture.completedFuture(productUpdater.updateQuantity(ean, quantity));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        final var result = new CompletableFuture<Product>();
+        if (!stripes[Math.floorMod(ean.hashCode(), stripes.length)].add(new Request(new QuantityUpdate(ean, quantity), result))) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending quantity updates"));
+        }
+        return result;
+    }
+
+    /**
+     * Applique en un seul lot les mises à jour en attente dans tous les segments.
+     */
+    private void flush() {
+        final var requests = new ArrayList<Request>();
+        for (Stripe stripe : stripes) {
+            stripe.drainTo(requests);
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        try {
+            final var results = productBulkUpdater.updateQuantities(requests.stream().map(Request::update).toList());
+            for (var i = 0; i < requests.size(); i++) {
+                final var result = requests.get(i).result();
+                results.get(i).fold(result::completeExceptionally, result::complete);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to apply {} coalesced quantity updates", requests.size(), e);
+            requests.forEach(request -> request.result().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Applique les mises à jour en attente puis arrête le thread de regroupement lors de l'arrêt de l'application.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            flush();
+        }
+    }
+
+    /**
+     * Segment de mises à jour en attente, protégé par son propre verrou et borné à sa capacité.
+     */
+    private static final class Stripe {
+
+        private final int capacity;
+        private List<Request> pending = new ArrayList<>();
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return {@code false} si le segment est plein : la demande n'est pas ajoutée
+         */
+        synchronized boolean add(Request request) {
+            if (pending.size() >= capacity) {
+                return false;
+            }
+            return pending.add(request);
+        }
+
+        synchronized void drainTo(List<Request> requests) {
+            requests.addAll(pending);
+            pending = new ArrayList<>();
+        }
+    }
+
+    private record Request(QuantityUpdate update, CompletableFuture<Product> result) {
+    }
+}
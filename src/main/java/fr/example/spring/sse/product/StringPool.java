@@ -0,0 +1,59 @@
+package fr.example.spring.sse.product;
+
+/**
+ * Table de chaînes réutilisées lors du décodage des notifications : un code EAN ou un nom déjà rencontré
+ * est retrouvé à partir des caractères lus, sans allouer de nouvelle chaîne.
+ * La table est à adressage direct et de taille fixe : une collision remplace simplement la chaîne précédente.
+ * Cette classe est thread-safe sans verrou : une case est lue et écrite de manière atomique,
+ * et une chaîne n'est réutilisée que si ses caractères sont identiques.
+ */
+final class StringPool {
+
+    private final String[] table;
+    private final int mask;
+
+    /**
+     * @param capacity le nombre de cases de la table, arrondi à la puissance de deux supérieure
+     */
+    StringPool(int capacity) {
+        final var size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.table = new String[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Retourne la chaîne correspondant aux caractères donnés, en réutilisant celle de la table si elle est identique.
+     *
+     * @param chars  le tampon de caractères
+     * @param offset la position du premier caractère
+     * @param length le nombre de caractères
+     * @return la chaîne correspondante
+     */
+    String get(char[] chars, int offset, int length) {
+        var hash = 0;
+        for (var i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        final var index = (hash ^ (hash >>> 16)) & mask;
+
+        final var pooled = table[index];
+        if (pooled != null && matches(pooled, chars, offset, length)) {
+            return pooled;
+        }
+        final var created = new String(chars, offset, length);
+        table[index] = created;
+        return created;
+    }
+
+    private static boolean matches(String pooled, char[] chars, int offset, int length) {
+        if (pooled.length() != length) {
+            return false;
+        }
+        for (var i = 0; i < length; i++) {
+            if (pooled.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
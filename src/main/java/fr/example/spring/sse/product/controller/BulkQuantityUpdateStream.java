@@ -0,0 +1,73 @@
+package fr.example.spring.sse.product.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.StreamSupport;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.product.ProductBulkUpdater;
+import fr.example.spring.sse.product.controller.dto.BulkQuantityProductResponse;
+import fr.example.spring.sse.product.controller.dto.BulkUpdateQuantityProduct;
+import fr.example.spring.sse.product.model.QuantityUpdate;
+import io.vavr.control.Try;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+
+/**
+ * Mise à jour groupée des quantités à partir d'un corps NDJSON (une demande JSON par ligne).
+ * Le corps est lu au fil de l'eau et le résultat de chaque demande est écrit en NDJSON dès que son lot est appliqué.
+ * La réponse étant déjà engagée, une demande invalide n'est pas appliquée et reçoit le statut {@code INVALID}.
+ */
+@Component
+class BulkQuantityUpdateStream {
+
+    private final ProductBulkUpdater productBulkUpdater;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    BulkQuantityUpdateStream(ProductBulkUpdater productBulkUpdater, ObjectMapper objectMapper, Validator validator) {
+        this.productBulkUpdater = productBulkUpdater;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    /**
+     * @param body le corps NDJSON de la requête
+     * @return le corps de la réponse, contenant le résultat de chaque demande dans l'ordre des demandes
+     */
+    StreamingResponseBody updateQuantities(InputStream body) {
+        return output -> {
+            try (var updates = objectMapper.readerFor(BulkUpdateQuantityProduct.class).<BulkUpdateQuantityProduct>readValues(body)) {
+                productBulkUpdater.updateQuantities(
+                        StreamSupport.stream(Spliterators.spliteratorUnknownSize(updates, Spliterator.ORDERED), false),
+                        this::validate,
+                        (update, result) -> {
+                            try {
+                                output.write(objectMapper.writeValueAsBytes(BulkQuantityProductResponse.createFromResult(update == null ? null : update.ean(), result)));
+                                output.write('\n');
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+            }
+        };
+    }
+
+    private Try<QuantityUpdate> validate(BulkUpdateQuantityProduct update) {
+        if (update == null) {
+            return Try.failure(new ConstraintViolationException("Missing update", Set.of()));
+        }
+        final var violations = validator.validate(update);
+        return violations.isEmpty()
+                ? Try.success(update.toQuantityUpdate())
+                : Try.failure(new ConstraintViolationException(violations));
+    }
+}
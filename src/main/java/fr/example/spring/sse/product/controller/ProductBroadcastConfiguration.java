@@ -0,0 +1,112 @@
+package fr.example.spring.sse.product.controller;
+
+import java.util.function.Supplier;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.ProductCatalog;
+import fr.example.spring.sse.product.ProductLister;
+import fr.example.spring.sse.product.controller.dto.QuantityProductResponse;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.model.ProductSnapshot;
+import fr.example.spring.sse.product.spi.EmitProduct;
+import fr.example.spring.sse.product.spi.ProductBroadcast;
+import fr.example.spring.sse.product.spi.ProductSharding;
+
+/**
+ * Déclare la diffusion des changements de quantité, partagée par le serveur servlet et le serveur SSE non bloquant.
+ * En mode partitionné, les clients suivant des codes EAN sont servis par une diffusion des seuls produits possédés
+ * par ce nœud, restreints avant d'être encodés ; les autres clients sont servis localement par une diffusion
+ * de tous les produits, créée à la première connexion qui en a besoin.
+ */
+@Configuration(proxyBeanMethods = false)
+class ProductBroadcastConfiguration {
+
+    private static final String EVENT_NAME = "product-quantity-updated";
+
+    /**
+     * Crée la diffusion des changements de quantité de produits.
+     *
+     * @param emitProduct           le service de création des diffusions SSE
+     * @param productCatalog        le catalogue de produits, source des mises à jour
+     * @param productLister         le service fournissant l'état complet des produits
+     * @param productSharding       la répartition des produits entre les nœuds
+     * @param applicationProperties la configuration de l'application, qui indique si les produits sont répartis
+     * @return la diffusion à laquelle chaque connexion SSE s'abonne
+     */
+    @Bean
+    ProductBroadcast productQuantityBroadcast(
+            EmitProduct emitProduct,
+            ProductCatalog productCatalog,
+            ProductLister productLister,
+            ProductSharding productSharding,
+            ApplicationProperties applicationProperties) {
+
+        // Diffusion de tous les produits : ce nœud les possède tous, ou le client ne suit pas de code EAN
+        final Supplier<ProductBroadcast> all = () -> emitProduct.broadcast(
+                // Flux de données : s'abonner aux mises à jour de produits une fois appliquées au catalogue
+                productCatalog.getProductUpdates(),
+                // Nom de l'événement
+                EVENT_NAME,
+                // Transformateur de données : convertir Product en QuantityProductResponse
+                QuantityProductResponse::createFromProduct,
+                // État complet envoyé aux clients dont les événements manqués ne peuvent plus être rejoués,
+                // ou qui demandent à commencer par cet état
+                productLister::snapshot
+        );
+        if (!applicationProperties.cluster().enabled()) {
+            return all.get();
+        }
+
+        final var owned = emitProduct.broadcast(
+                // Restreintes aux produits possédés par ce nœud avant d'être encodées
+                productCatalog.getProductUpdates().mapNotNull(event -> owned(event, productSharding)),
+                EVENT_NAME,
+                QuantityProductResponse::createFromProduct,
+                () -> owned(productLister.snapshot(), productSharding)
+        );
+        final var broadcast = new ShardedProductBroadcast(owned, all);
+
+        // Les connexions suivant des produits passés à un autre nœud sont fermées : elles y seront redirigées
+        productSharding.rebalances().subscribe(shards -> broadcast.disconnect(
+                filter -> filter.eans().stream().anyMatch(ean -> !productSharding.owns(ean))));
+        return broadcast;
+    }
+
+    /**
+     * Restreint un événement aux produits possédés par ce nœud.
+     *
+     * @return l'événement restreint, ou {@code null} si aucun de ses produits n'est possédé par ce nœud
+     */
+    private static ProductEvent owned(ProductEvent event, ProductSharding productSharding) {
+        return switch (event) {
+            case ProductEvent.Updated updated -> {
+                final var owned = updated.products().stream()
+                        .filter(product -> productSharding.owns(product.ean()))
+                        .toList();
+                if (owned.isEmpty()) {
+                    yield null;
+                }
+                yield owned.size() == updated.products().size()
+                        ? updated
+                        : new ProductEvent.Updated(updated.sequence(), owned, updated.changedAt());
+            }
+            case ProductEvent.Resync resync -> resync;
+        };
+    }
+
+    /**
+     * Restreint un état complet aux produits possédés par ce nœud, pour qu'il soit cohérent avec les mises à jour
+     * diffusées.
+     */
+    private static ProductSnapshot owned(ProductSnapshot snapshot, ProductSharding productSharding) {
+        if (snapshot.products().stream().allMatch(product -> productSharding.owns(product.ean()))) {
+            return snapshot;
+        }
+        return new ProductSnapshot(snapshot.version(), snapshot.sequence(), snapshot.products().stream()
+                .filter(product -> productSharding.owns(product.ean()))
+                .toList());
+    }
+}
@@ -1,25 +1,46 @@
 package fr.example.spring.sse.product.controller;
 
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import fr.example.spring.sse.product.ProductListener;
-import fr.example.spring.sse.product.ProductLister;
-import fr.example.spring.sse.product.ProductUpdater;
-import fr.example.spring.sse.product.controller.dto.ListProductResponse;
+import fr.example.spring.sse.product.ProductBulkUpdater;
+import fr.example.spring.sse.product.QuantityUpdateCoalescer;
+import fr.example.spring.sse.product.controller.dto.BulkQuantityProductResponse;
+import fr.example.spring.sse.product.controller.dto.BulkUpdateQuantityProduct;
 import fr.example.spring.sse.product.controller.dto.QuantityProductResponse;
 import fr.example.spring.sse.product.controller.dto.UpdateQuantityProduct;
-import fr.example.spring.sse.product.spi.EmitProduct;
-import io.vavr.Function0;
+import fr.example.spring.sse.product.model.ProductFilter;
+import fr.example.spring.sse.product.spi.ProductBroadcast;
+import fr.example.spring.sse.product.spi.ProductSharding;
+import io.vavr.Function1;
 import io.vavr.Function2;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
 
 /**
  * Contrôleur REST pour la gestion des produits.
@@ -30,64 +51,212 @@ import io.vavr.Function2;
 @RequestMapping("/api/v1/products")
 class ProductController {
 
-    private final ProductUpdater productUpdater;
-    private final ProductLister productLister;
-    private final ProductListener productListener;
-    private final EmitProduct emitProduct;
+    private final QuantityUpdateCoalescer quantityUpdateCoalescer;
+    private final ProductBulkUpdater productBulkUpdater;
+    private final BulkQuantityUpdateStream bulkQuantityUpdateStream;
+    private final ProductListCache productListCache;
+    private final ProductListWriter productListWriter;
+    private final ProductBroadcast productQuantityBroadcast;
+    private final ProductSharding productSharding;
+
+    ProductController(
+            QuantityUpdateCoalescer quantityUpdateCoalescer,
+            ProductBulkUpdater productBulkUpdater,
+            BulkQuantityUpdateStream bulkQuantityUpdateStream,
+            ProductListCache productListCache,
+            ProductListWriter productListWriter,
+            ProductBroadcast productQuantityBroadcast,
+            ProductSharding productSharding) {
 
-    ProductController(ProductUpdater productUpdater, ProductLister productLister, ProductListener productListener, EmitProduct emitProduct) {
-        this.productUpdater = productUpdater;
-        this.productLister = productLister;
-        this.productListener = productListener;
-        this.emitProduct = emitProduct;
+        this.quantityUpdateCoalescer = quantityUpdateCoalescer;
+        this.productBulkUpdater = productBulkUpdater;
+        this.bulkQuantityUpdateStream = bulkQuantityUpdateStream;
+        this.productListCache = productListCache;
+        this.productListWriter = productListWriter;
+        this.productQuantityBroadcast = productQuantityBroadcast;
+        this.productSharding = productSharding;
     }
 
     /**
-     * Liste tous les produits disponibles.
+     * Liste tous les produits disponibles depuis le catalogue en mémoire.
+     * Le corps est servi depuis le {@link ProductListCache}, déjà encodé en JSON pour la version courante
+     * du catalogue, et compressé en gzip si le client l'accepte.
+     * La réponse porte la version du catalogue dans l'en-tête {@code ETag} : un client renvoyant cette version
+     * dans l'en-tête {@code If-None-Match} reçoit une réponse 304 tant que le catalogue n'a pas changé.
      *
-     * @return une réponse HTTP contenant la liste des produits
+     * @param request la requête courante, utilisée pour évaluer les en-têtes {@code If-None-Match}
+     *                et {@code Accept-Encoding}
+     * @return une réponse HTTP contenant la liste des produits, ou une réponse 304 sans corps
      */
     @GetMapping
-    ResponseEntity<ListProductResponse> listProducts() {
+    ResponseEntity<byte[]> listProducts(WebRequest request) {
+
+        return Function1.of(productListCache::variant)
+                .andThen(variant -> request.checkNotModified(variant.etag()) ? null : variant.toResponse())
+                .apply(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    /**
+     * Exporte les produits en NDJSON (un produit JSON par ligne), lus au fil de l'eau depuis la base de données.
+     * Chaque produit est écrit dès sa lecture : la mémoire utilisée ne dépend pas du nombre de produits exportés.
+     * Un export interrompu peut être repris après l'identifiant de la dernière ligne reçue.
+     *
+     * @param afterId l'identifiant du dernier produit déjà reçu, 0 pour commencer au premier produit
+     * @param limit   le nombre maximal de produits exportés, borné par la taille de page maximale ; tous par défaut
+     * @return une réponse HTTP NDJSON contenant les produits par identifiant croissant
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(value = "afterId", defaultValue = "0") int afterId,
+            @RequestParam(value = "limit", required = false) Integer limit) {
 
-        return Function0.of(productLister::list)
-                .andThen(ListProductResponse::mapProductsToListResponse)
+        return Function2.of(productListWriter::export)
                 .andThen(ResponseEntity::ok)
-                .apply();
+                .apply(afterId, limit);
+    }
+
+    /**
+     * Liste une page de produits, lue au fil de l'eau depuis la base de données et écrite en JSON à mesure.
+     * La pagination se fait par identifiant : la page suivante est demandée avec {@code afterId} égal
+     * à {@code nextAfterId}, nul sur la dernière page. Son coût ne dépend pas de sa position dans le catalogue.
+     *
+     * @param afterId l'identifiant du dernier produit de la page précédente, 0 pour la première page
+     * @param limit   le nombre de produits par page, borné par la taille de page maximale
+     * @return une réponse HTTP contenant les produits de la page et le curseur de la page suivante
+     */
+    @GetMapping(value = "/pages", produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<StreamingResponseBody> pageProducts(
+            @RequestParam(value = "afterId", defaultValue = "0") int afterId,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+
+        return Function2.of(productListWriter::page)
+                .andThen(ResponseEntity::ok)
+                .apply(afterId, limit);
     }
 
     /**
      * Met à jour la quantité d'un produit identifié par son code EAN.
+     * La réponse est envoyée de manière asynchrone, une fois la mise à jour appliquée en base de données :
+     * en mode regroupé, à la fin de la fenêtre de regroupement.
      *
      * @param updateQuantityProduct l'objet contenant la quantité à ajouter
      * @param ean                   le code EAN du produit à mettre à jour
-     * @return une réponse HTTP contenant les informations du produit mis à jour
+     * @return une réponse HTTP contenant les informations du produit mis à jour, une réponse 400
+     * si la quantité est absente ou hors bornes, 404 si le produit n'existe pas, 409 si le stock deviendrait
+     * négatif alors que ce n'est pas autorisé, ou 503 si trop de mises à jour regroupées sont déjà en attente
      */
     @PutMapping("/{ean}")
-    ResponseEntity<QuantityProductResponse> updateProduct(@RequestBody UpdateQuantityProduct updateQuantityProduct, @PathVariable String ean) {
+    CompletableFuture<ResponseEntity<QuantityProductResponse>> updateProduct(@Valid @RequestBody UpdateQuantityProduct updateQuantityProduct, @PathVariable String ean) {
 
-        return Function2.of(productUpdater::updateQuantity)
-                .andThen(QuantityProductResponse::createFromProduct)
-                .andThen(ResponseEntity::ok)
+        return Function2.of(quantityUpdateCoalescer::updateQuantity)
+                .andThen(product -> product
+                        .thenApply(QuantityProductResponse::createFromProduct)
+                        .thenApply(ResponseEntity::ok)
+                        .exceptionally(ProductController::rejection))
                 .apply(ean, updateQuantityProduct.quantity());
     }
 
+    /**
+     * Convertit le refus d'une mise à jour de quantité en réponse HTTP : 404 si le produit n'est pas trouvé,
+     * 409 si le stock deviendrait négatif, 503 si la mise à jour n'a pas pu être mise en attente.
+     * Toute autre erreur est propagée.
+     *
+     * @param failure l'échec de la mise à jour
+     * @return la réponse HTTP correspondant au refus
+     */
+    private static ResponseEntity<QuantityProductResponse> rejection(Throwable failure) {
+        final var cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        return switch (cause) {
+            case IllegalArgumentException e -> ResponseEntity.notFound().build();
+            case IllegalStateException e -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+            case RejectedExecutionException e -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            default -> throw failure instanceof CompletionException completion ? completion : new CompletionException(failure);
+        };
+    }
+
+    /**
+     * Met à jour la quantité de plusieurs produits en une seule requête HTTP.
+     * Les mises à jour sont appliquées par lots, chaque lot étant une seule requête SQL.
+     * Si une demande est invalide (code EAN ou quantité absents, quantité hors bornes), aucune n'est appliquée
+     * et la réponse est une erreur 400.
+     *
+     * @param updates les mises à jour à appliquer
+     * @return une réponse HTTP contenant le résultat de chaque mise à jour, dans l'ordre des demandes
+     */
+    @PostMapping(value = "/quantities", consumes = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<List<BulkQuantityProductResponse>> updateProducts(@RequestBody List<@Valid @NotNull BulkUpdateQuantityProduct> updates) {
+
+        return Function1.of(BulkUpdateQuantityProduct::toQuantityUpdates)
+                .andThen(productBulkUpdater::updateQuantities)
+                .andThen(results -> BulkQuantityProductResponse.createFromResults(updates, results))
+                .andThen(ResponseEntity::ok)
+                .apply(updates);
+    }
+
+    /**
+     * Met à jour la quantité de plusieurs produits à partir d'un corps NDJSON (une demande JSON par ligne).
+     * Le corps est lu au fil de l'eau et le résultat de chaque mise à jour est renvoyé en NDJSON dès que son lot
+     * est appliqué : le volume de la requête n'est pas limité par la mémoire du serveur.
+     * La réponse étant déjà engagée, une demande invalide n'est pas appliquée et reçoit le statut {@code INVALID}.
+     *
+     * @param body le corps NDJSON de la requête
+     * @return une réponse HTTP NDJSON contenant le résultat de chaque mise à jour, dans l'ordre des demandes
+     */
+    @PostMapping(value = "/quantities", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> streamUpdateProducts(InputStream body) {
+
+        return Function1.of(bulkQuantityUpdateStream::updateQuantities)
+                .andThen(ResponseEntity::ok)
+                .apply(body);
+    }
+
     /**
      * Crée un émetteur SSE pour écouter les changements de quantité de produits.
      * Cette méthode permet aux clients de s'abonner aux notifications en temps réel
      * lorsque la quantité d'un produit est modifiée.
+     * Les événements sont encodés une seule fois par la diffusion partagée puis écrits sur chaque connexion.
+     * Un client qui se reconnecte avec l'en-tête {@code Last-Event-ID} reçoit les événements manqués.
+     * Le client peut restreindre les produits suivis : seules les mises à jour acceptées par tous les critères
+     * fournis lui sont envoyées.
+     * Avec {@code snapshot=true}, le premier événement est l'état complet des produits suivis, suivi des seules
+     * mises à jour postérieures : le client n'a plus besoin d'appeler la liste des produits au préalable.
+     * En mode partitionné, un client suivant des codes EAN possédés par un autre nœud y est redirigé ;
+     * des codes EAN répartis sur plusieurs nœuds sont refusés. Un client sans code EAN est servi par ce nœud.
      *
-     * @return un émetteur SSE configuré pour envoyer des notifications de changement de quantité
+     * @param request       la requête courante, dont l'URL est reprise lors d'une redirection
+     * @param lastEventId   l'identifiant du dernier événement reçu par le client, envoyé automatiquement par le navigateur
+     * @param eans          les codes EAN suivis (paramètre {@code ean}, répétable)
+     * @param eanPrefix     le préfixe des codes EAN suivis
+     * @param quantityBelow la quantité en dessous de laquelle un produit est suivi
+     * @param snapshot      {@code true} pour recevoir d'abord l'état complet des produits suivis
+     * @return un émetteur SSE configuré pour envoyer des notifications de changement de quantité,
+     * ou une redirection vers le nœud propriétaire des produits suivis
      */
     @GetMapping(value = "/listen-product-quantity-updated", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter listenForProductQuantityChanges() {
-        return emitProduct.createEmitterFromFlux(
-                // Flux de données : s'abonner au flux de mises à jour de produits du ProductListener
-                productListener.getProductUpdates(),
-                // Nom de l'événement
-                "product-quantity-updated",
-                // Transformateur de données : convertir Product en QuantityProductResponse
-                product -> new QuantityProductResponse(product.ean(), product.quantite())
-        );
+    public ResponseEntity<SseEmitter> listenForProductQuantityChanges(
+            HttpServletRequest request,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(value = "ean", required = false) Set<String> eans,
+            @RequestParam(value = "eanPrefix", required = false) String eanPrefix,
+            @RequestParam(value = "quantityBelow", required = false) Integer quantityBelow,
+            @RequestParam(value = "snapshot", defaultValue = "false") boolean snapshot) {
+
+        final var filter = new ProductFilter(eans, eanPrefix, quantityBelow);
+        final Optional<String> owner;
+        try {
+            owner = productSharding.redirectFor(filter.eans());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (owner.isPresent()) {
+            final var query = request.getQueryString();
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                    .location(URI.create(owner.get() + request.getRequestURI() + (query == null ? "" : "?" + query)))
+                    .build();
+        }
+
+        return ResponseEntity.ok(snapshot
+                ? productQuantityBroadcast.subscribeWithSnapshot(lastEventId, filter)
+                : productQuantityBroadcast.subscribe(lastEventId, filter));
     }
 }
@@ -0,0 +1,192 @@
+package fr.example.spring.sse.product.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.ProductLister;
+import fr.example.spring.sse.product.controller.dto.ListProductResponse;
+import fr.example.spring.sse.product.model.ProductSnapshot;
+import io.vavr.control.Try;
+
+/**
+ * Cache de la réponse de la liste des produits, conservée déjà encodée en JSON et, si activé, compressée en gzip.
+ * Le corps est associé à la version du catalogue : il n'est encodé qu'une fois par version, à la première requête
+ * qui suit une modification, puis les mêmes octets sont servis à toutes les requêtes.
+ * La version est relue à chaque requête : un corps plus ancien que le dernier événement appliqué au catalogue
+ * n'est jamais servi.
+ */
+@Component
+class ProductListCache {
+
+    private final ProductLister productLister;
+    private final ObjectMapper objectMapper;
+    private final boolean gzip;
+    private volatile Body body = new Body(-1, new byte[0]);
+
+    ProductListCache(ProductLister productLister, ObjectMapper objectMapper, ApplicationProperties applicationProperties) {
+        this.productLister = productLister;
+        this.objectMapper = objectMapper;
+        this.gzip = applicationProperties.listing().gzip();
+    }
+
+    /**
+     * Retourne le corps de la réponse correspondant à la version courante du catalogue, encodé si nécessaire.
+     *
+     * @return le corps encodé de la liste des produits
+     */
+    Body current() {
+        final var snapshot = productLister.snapshot();
+        final var cached = body;
+        // Les versions sont croissantes : un corps plus récent que l'instantané lu reste à jour
+        if (cached.version() >= snapshot.version()) {
+            return cached;
+        }
+        return encode(snapshot);
+    }
+
+    /**
+     * Retourne la variante du corps à servir pour la version courante du catalogue : compressée en gzip si c'est
+     * activé et si le client l'accepte, c'est-à-dire si l'en-tête {@code Accept-Encoding} mentionne gzip
+     * sans qualité nulle.
+     *
+     * @param acceptEncoding l'en-tête {@code Accept-Encoding} de la requête, ou {@code null}
+     * @return la variante du corps à servir
+     */
+    Variant variant(String acceptEncoding) {
+        final var current = current();
+        return gzip && acceptsGzip(acceptEncoding)
+                ? new Variant(current.etag(true), "gzip", current.gzipped())
+                : new Variant(current.etag(false), null, current.json());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            final var parameters = coding.split(";");
+            if (parameters[0].trim().equalsIgnoreCase("gzip")) {
+                return parameters.length == 1 || !parameters[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encode l'instantané, une seule fois même si plusieurs requêtes constatent la modification en même temps.
+     */
+    private synchronized Body encode(ProductSnapshot snapshot) {
+        final var cached = body;
+        if (cached.version() >= snapshot.version()) {
+            return cached;
+        }
+
+        final var json = Try.of(() -> objectMapper.writeValueAsBytes(ListProductResponse.mapProductsToListResponse(snapshot.products())))
+                .getOrElseThrow(e -> new IllegalStateException("Failed to encode product list version " + snapshot.version(), e));
+        final var encoded = new Body(snapshot.version(), json);
+        body = encoded;
+        return encoded;
+    }
+
+    /**
+     * Variante du corps servie à une requête.
+     *
+     * @param etag            l'ETag fort de la variante
+     * @param contentEncoding le codage du corps, {@code null} s'il n'est pas compressé
+     * @param bytes           le corps, à ne pas modifier
+     */
+    record Variant(String etag, String contentEncoding, byte[] bytes) {
+
+        /**
+         * @return une réponse 200 portant la variante, son ETag et son codage
+         */
+        ResponseEntity<byte[]> toResponse() {
+            final var response = ResponseEntity.ok()
+                    .eTag(etag)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (contentEncoding != null) {
+                response.header(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+            }
+            return response.body(bytes);
+        }
+    }
+
+    /**
+     * Corps encodé de la liste des produits pour une version du catalogue.
+     * La copie compressée n'est produite qu'à la première requête qui l'accepte.
+     */
+    static final class Body {
+
+        private final long version;
+        private final byte[] json;
+        private volatile byte[] gzipped;
+
+        private Body(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        /**
+         * @return la version du catalogue encodée
+         */
+        long version() {
+            return version;
+        }
+
+        /**
+         * @return le corps JSON, à ne pas modifier
+         */
+        byte[] json() {
+            return json;
+        }
+
+        /**
+         * @return le corps JSON compressé en gzip, à ne pas modifier
+         */
+        byte[] gzipped() {
+            var compressed = gzipped;
+            if (compressed == null) {
+                synchronized (this) {
+                    compressed = gzipped;
+                    if (compressed == null) {
+                        compressed = compress(json);
+                        gzipped = compressed;
+                    }
+                }
+            }
+            return compressed;
+        }
+
+        /**
+         * Retourne l'ETag fort du corps : les variantes compressée et non compressée ont des octets différents,
+         * elles ont donc des ETags différents.
+         *
+         * @param gzipped {@code true} pour la variante compressée
+         * @return l'ETag de la variante
+         */
+        String etag(boolean gzipped) {
+            return gzipped ? "\"" + version + "-gzip\"" : "\"" + version + "\"";
+        }
+
+        private static byte[] compress(byte[] bytes) {
+            final var output = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            try (var gzip = new GZIPOutputStream(output)) {
+                gzip.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return output.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package fr.example.spring.sse.product.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import fr.example.spring.sse.product.ProductLister;
+import fr.example.spring.sse.product.controller.dto.ProductRowResponse;
+import fr.example.spring.sse.product.model.Product;
+
+/**
+ * Écriture des listes de produits lues au fil de l'eau depuis la base de données.
+ * Chaque produit est écrit en JSON dès sa lecture : la mémoire utilisée ne dépend pas du nombre de produits écrits.
+ */
+@Component
+class ProductListWriter {
+
+    private final ProductLister productLister;
+    private final ObjectMapper objectMapper;
+    // Écrit chaque produit sans vider la réponse : le flush est laissé au tampon de sortie
+    private final ObjectWriter productRowWriter;
+
+    ProductListWriter(ProductLister productLister, ObjectMapper objectMapper) {
+        this.productLister = productLister;
+        this.objectMapper = objectMapper;
+        this.productRowWriter = objectMapper.writerFor(ProductRowResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Écrit les produits en NDJSON (un produit JSON par ligne), par identifiant croissant.
+     *
+     * @param afterId l'identifiant du dernier produit déjà reçu, 0 pour commencer au premier produit
+     * @param limit   le nombre maximal de produits écrits, borné par la taille de page maximale ; tous si {@code null}
+     * @return le corps de la réponse
+     */
+    StreamingResponseBody export(int afterId, Integer limit) {
+        return output -> {
+            try (var generator = createGenerator(output)) {
+                // Les lignes sont séparées par un retour à la ligne, écrit après chaque produit
+                generator.setRootValueSeparator(null);
+                productLister.forEach(afterId, limit == null ? null : productLister.pageSize(limit), (product, id) -> {
+                    writeRow(generator, id, product);
+                    try {
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Écrit une page de produits, suivie du curseur de la page suivante {@code nextAfterId}, nul sur la dernière page.
+     *
+     * @param afterId l'identifiant du dernier produit de la page précédente, 0 pour la première page
+     * @param limit   le nombre de produits par page, borné par la taille de page maximale
+     * @return le corps de la réponse
+     */
+    StreamingResponseBody page(int afterId, int limit) {
+        final var pageSize = productLister.pageSize(Math.max(1, limit));
+        return output -> {
+            try (var generator = createGenerator(output)) {
+                final var page = new int[2]; // Number of products written, identifier of the last one
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("produits");
+                productLister.forEach(afterId, pageSize, (product, id) -> {
+                    writeRow(generator, id, product);
+                    page[0]++;
+                    page[1] = id;
+                });
+                generator.writeEndArray();
+                // Une page incomplète est la dernière
+                if (page[0] == pageSize) {
+                    generator.writeNumberField("nextAfterId", page[1]);
+                } else {
+                    generator.writeNullField("nextAfterId");
+                }
+                generator.writeEndObject();
+            }
+        };
+    }
+
+    private JsonGenerator createGenerator(OutputStream output) throws IOException {
+        return objectMapper.getFactory().createGenerator(output).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private void writeRow(JsonGenerator generator, int id, Product product) {
+        try {
+            productRowWriter.writeValue(generator, ProductRowResponse.createFromProduct(id, product));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
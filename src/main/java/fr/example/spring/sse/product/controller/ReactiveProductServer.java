@@ -0,0 +1,129 @@
+package fr.example.spring.sse.product.controller;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.model.ProductFilter;
+import fr.example.spring.sse.product.spi.ProductBroadcast;
+import fr.example.spring.sse.product.spi.ProductSharding;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * Serveur SSE non bloquant Reactor Netty, exposant l'écoute des changements de quantité sur un port dédié,
+ * en plus du serveur servlet.
+ * Les connexions n'occupent aucun thread lorsqu'elles sont inactives, et la demande du socket remonte jusqu'au
+ * tampon de chaque connexion : un grand nombre de connexions inactives peut être maintenu avec peu de mémoire.
+ * Les paramètres de filtre et l'en-tête {@code Last-Event-ID} sont ceux de l'endpoint servlet.
+ * Activé par {@code app.reactive-sse.enabled}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.reactive-sse", name = "enabled", havingValue = "true")
+class ReactiveProductServer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveProductServer.class);
+    private static final String LISTEN_PATH = "/api/v1/products/listen-product-quantity-updated";
+
+    private final ProductBroadcast productQuantityBroadcast;
+    private final ProductSharding productSharding;
+    private final ApplicationProperties.ReactiveSse reactiveSse;
+    private DisposableServer server;
+
+    ReactiveProductServer(ProductBroadcast productQuantityBroadcast, ProductSharding productSharding, ApplicationProperties applicationProperties) {
+        this.productQuantityBroadcast = productQuantityBroadcast;
+        this.productSharding = productSharding;
+        this.reactiveSse = applicationProperties.reactiveSse();
+    }
+
+    /**
+     * Démarre le serveur Reactor Netty sur le port configuré.
+     */
+    @PostConstruct
+    public void start() {
+        server = HttpServer.create()
+                .port(reactiveSse.port())
+                .route(routes -> routes.get(LISTEN_PATH, this::listenForProductQuantityChanges))
+                .bindNow();
+        log.info("Reactive SSE server listening on port {}", server.port());
+    }
+
+    /**
+     * Écoute les changements de quantité de produits. Les trames, déjà encodées, sont écrites telles quelles.
+     * Avec {@code snapshot=true}, la première trame est l'état complet des produits suivis.
+     * En mode partitionné, un client suivant des codes EAN possédés par un autre nœud est redirigé vers l'URL annoncée
+     * par ce nœud ; des codes EAN répartis sur plusieurs nœuds sont refusés. Un client sans code EAN est servi par ce nœud.
+     *
+     * @param request  la requête HTTP
+     * @param response la réponse HTTP
+     * @return la fin de l'écriture de la réponse
+     */
+    private Mono<Void> listenForProductQuantityChanges(HttpServerRequest request, HttpServerResponse response) {
+        final var parameters = new QueryStringDecoder(request.uri()).parameters();
+        final ProductFilter filter;
+        final Optional<String> owner;
+        try {
+            filter = parseFilter(parameters);
+            owner = productSharding.redirectFor(filter.eans());
+        } catch (IllegalArgumentException e) {
+            // Invalid quantity, or EANs owned by several cluster nodes
+            return response.status(HttpResponseStatus.BAD_REQUEST).send();
+        }
+        if (owner.isPresent()) {
+            return response.status(HttpResponseStatus.TEMPORARY_REDIRECT)
+                    .header(HttpHeaders.LOCATION, owner.get() + request.uri())
+                    .send();
+        }
+
+        final var lastEventId = request.requestHeaders().get("Last-Event-ID");
+        final var frames = Boolean.parseBoolean(first(parameters, "snapshot"))
+                ? productQuantityBroadcast.streamWithSnapshot(lastEventId, filter)
+                : productQuantityBroadcast.stream(lastEventId, filter);
+
+        return response
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "http://localhost:8081")
+                .sendByteArray(frames)
+                .then();
+    }
+
+    private static ProductFilter parseFilter(Map<String, List<String>> parameters) {
+        final var quantityBelow = first(parameters, "quantityBelow");
+        return new ProductFilter(
+                Set.copyOf(parameters.getOrDefault("ean", List.of())),
+                first(parameters, "eanPrefix"),
+                quantityBelow == null ? null : Integer.valueOf(quantityBelow));
+    }
+
+    private static String first(Map<String, List<String>> parameters, String name) {
+        final var values = parameters.get(name);
+        return values == null || values.isEmpty() ? null : values.getFirst();
+    }
+
+    /**
+     * Arrête le serveur Reactor Netty lors de l'arrêt de l'application.
+     */
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package fr.example.spring.sse.product.controller;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import fr.example.spring.sse.product.model.ProductFilter;
+import fr.example.spring.sse.product.spi.ProductBroadcast;
+import reactor.core.publisher.Flux;
+
+/**
+ * Diffusion des changements de quantité en mode partitionné.
+ * Un client suivant des codes EAN a été redirigé vers le nœud qui les possède : il est servi par la diffusion
+ * des seuls produits de ce nœud. Un client sans code EAN, filtré ou non par préfixe ou par quantité, suit des produits
+ * de toutes les partitions : il est servi localement par une diffusion de tous les produits.
+ * Cette seconde diffusion n'est créée qu'à la première connexion sans code EAN : un nœud qui n'en sert aucune
+ * n'encode que les produits de ses partitions.
+ */
+final class ShardedProductBroadcast implements ProductBroadcast {
+
+    private final ProductBroadcast owned;
+    private final Supplier<ProductBroadcast> allFactory;
+    private volatile ProductBroadcast all;
+
+    /**
+     * @param owned      la diffusion des produits possédés par ce nœud
+     * @param allFactory crée la diffusion de tous les produits
+     */
+    ShardedProductBroadcast(ProductBroadcast owned, Supplier<ProductBroadcast> allFactory) {
+        this.owned = owned;
+        this.allFactory = allFactory;
+    }
+
+    @Override
+    public SseEmitter subscribe(String lastEventId, ProductFilter filter) {
+        return broadcastFor(filter).subscribe(lastEventId, filter);
+    }
+
+    @Override
+    public SseEmitter subscribe(String lastEventId, ProductFilter filter, long timeout) {
+        return broadcastFor(filter).subscribe(lastEventId, filter, timeout);
+    }
+
+    @Override
+    public SseEmitter subscribeWithSnapshot(String lastEventId, ProductFilter filter) {
+        return broadcastFor(filter).subscribeWithSnapshot(lastEventId, filter);
+    }
+
+    @Override
+    public Flux<byte[]> stream(String lastEventId, ProductFilter filter) {
+        return broadcastFor(filter).stream(lastEventId, filter);
+    }
+
+    @Override
+    public Flux<byte[]> streamWithSnapshot(String lastEventId, ProductFilter filter) {
+        return broadcastFor(filter).streamWithSnapshot(lastEventId, filter);
+    }
+
+    @Override
+    public void disconnect(Predicate<ProductFilter> filter) {
+        owned.disconnect(filter);
+        final var current = all;
+        if (current != null) {
+            current.disconnect(filter);
+        }
+    }
+
+    private ProductBroadcast broadcastFor(ProductFilter filter) {
+        return filter.eans().isEmpty() ? all() : owned;
+    }
+
+    private ProductBroadcast all() {
+        var current = all;
+        if (current == null) {
+            synchronized (this) {
+                current = all;
+                if (current == null) {
+                    current = allFactory.get();
+                    all = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,46 @@
+package fr.example.spring.sse.product.controller.dto;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import fr.example.spring.sse.product.model.Product;
+import io.vavr.control.Try;
+import jakarta.validation.ConstraintViolationException;
+
+/**
+ * Représentation du résultat d'une mise à jour de quantité au sein d'une mise à jour groupée.
+ * Cette classe est utilisée pour transformer les données du domaine en format de réponse API.
+ */
+public record BulkQuantityProductResponse(String ean, Status status, Integer totalQuantity) {
+
+    /**
+     * Résultat de la mise à jour d'un produit.
+     */
+    public enum Status {
+        UPDATED,
+        NOT_FOUND,
+        INSUFFICIENT_STOCK,
+        INVALID
+    }
+
+    public static BulkQuantityProductResponse createFromResult(String ean, Try<Product> result) {
+        return result.fold(
+                error -> new BulkQuantityProductResponse(ean, status(error), null),
+                product -> new BulkQuantityProductResponse(ean, Status.UPDATED, product.quantite())
+        );
+    }
+
+    public static List<BulkQuantityProductResponse> createFromResults(List<BulkUpdateQuantityProduct> updates, List<Try<Product>> results) {
+        return IntStream.range(0, updates.size())
+                .mapToObj(i -> createFromResult(updates.get(i).ean(), results.get(i)))
+                .toList();
+    }
+
+    private static Status status(Throwable error) {
+        return switch (error) {
+            case ConstraintViolationException e -> Status.INVALID;
+            case IllegalStateException e -> Status.INSUFFICIENT_STOCK;
+            default -> Status.NOT_FOUND;
+        };
+    }
+}
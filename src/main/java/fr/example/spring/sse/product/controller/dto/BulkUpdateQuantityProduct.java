@@ -0,0 +1,30 @@
+package fr.example.spring.sse.product.controller.dto;
+
+import java.util.List;
+
+import fr.example.spring.sse.product.model.QuantityUpdate;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Représentation d'une demande de mise à jour de quantité de produit au sein d'une mise à jour groupée.
+ * Cette classe est utilisée pour recevoir les données de l'API de mise à jour groupée des quantités.
+ */
+public record BulkUpdateQuantityProduct(
+        @NotBlank @Size(max = 13) String ean,
+        @NotNull @Min(-QuantityUpdate.MAX_QUANTITY) @Max(QuantityUpdate.MAX_QUANTITY) Integer quantity
+) {
+
+    public QuantityUpdate toQuantityUpdate() {
+        return new QuantityUpdate(ean, quantity);
+    }
+
+    public static List<QuantityUpdate> toQuantityUpdates(List<BulkUpdateQuantityProduct> updates) {
+        return updates.stream()
+                .map(BulkUpdateQuantityProduct::toQuantityUpdate)
+                .toList();
+    }
+}
@@ -0,0 +1,21 @@
+package fr.example.spring.sse.product.controller.dto;
+
+import java.math.BigDecimal;
+
+import fr.example.spring.sse.product.model.Product;
+
+/**
+ * Représentation d'un produit lu au fil de l'eau depuis la base de données, pour l'export et la pagination.
+ * L'identifiant du produit sert de curseur : la page suivante commence après le dernier identifiant reçu.
+ */
+public record ProductRowResponse(
+        int id,
+        String ean,
+        String nom,
+        int quantite,
+        BigDecimal prix
+) {
+    public static ProductRowResponse createFromProduct(int id, Product product) {
+        return new ProductRowResponse(id, product.ean(), product.nom(), product.quantite(), product.prix());
+    }
+}
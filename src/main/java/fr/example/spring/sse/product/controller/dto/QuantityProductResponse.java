@@ -1,14 +1,17 @@
 package fr.example.spring.sse.product.controller.dto;
 
+import java.math.BigDecimal;
+
 import fr.example.spring.sse.product.model.Product;
 
 /**
  * Représentation de la quantité d'un produit pour la réponse de l'API de mise à jour de quantité.
  * Cette classe est utilisée pour transformer les données du domaine en format de réponse API.
+ * Le nom et le prix du produit sont transmis afin que le client n'ait pas à les redemander.
  */
-public record QuantityProductResponse(String ean, int totalQuantity) {
+public record QuantityProductResponse(String ean, int totalQuantity, String nom, BigDecimal prix) {
 
     public static QuantityProductResponse createFromProduct(Product product) {
-        return new QuantityProductResponse(product.ean(), product.quantite());
+        return new QuantityProductResponse(product.ean(), product.quantite(), product.nom(), product.prix());
     }
 }
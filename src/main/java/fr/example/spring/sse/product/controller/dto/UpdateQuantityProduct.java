@@ -1,8 +1,15 @@
 package fr.example.spring.sse.product.controller.dto;
 
+import fr.example.spring.sse.product.model.QuantityUpdate;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
 /**
  * Représentation d'une demande de mise à jour de quantité de produit.
  * Cette classe est utilisée pour recevoir les données de l'API pour la mise à jour de la quantité d'un produit.
  */
-public record UpdateQuantityProduct(int quantity) {
+public record UpdateQuantityProduct(
+        @NotNull @Min(-QuantityUpdate.MAX_QUANTITY) @Max(QuantityUpdate.MAX_QUANTITY) Integer quantity
+) {
 }
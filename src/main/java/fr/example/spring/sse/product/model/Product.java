@@ -11,7 +11,7 @@ import jakarta.annotation.Nonnull;
 public record Product(
         @Nonnull String ean,
         @Nonnull String nom,
-        @Nonnull Integer quantite,
+        int quantite,
         @Nonnull BigDecimal prix
 ) {
     /**
@@ -23,7 +23,7 @@ public record Product(
      * @param prix     le prix du produit
      * @return une nouvelle instance de Product
      */
-    public static Product create(String ean, String nom, Integer quantite, BigDecimal prix) {
+    public static Product create(String ean, String nom, int quantite, BigDecimal prix) {
         return new Product(ean, nom, quantite, prix);
     }
 }
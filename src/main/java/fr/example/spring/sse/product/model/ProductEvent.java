@@ -0,0 +1,43 @@
+package fr.example.spring.sse.product.model;
+
+import java.util.List;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Événement du flux de produits, porteur du numéro de séquence global de la notification d'origine.
+ */
+public sealed interface ProductEvent {
+
+    /**
+     * @return le numéro de séquence global de l'événement
+     */
+    long sequence();
+
+    /**
+     * Mise à jour d'un lot de produits, modifiés par une même requête SQL.
+     *
+     * @param sequence  le numéro de séquence global de l'événement
+     * @param products  les produits mis à jour, dans l'ordre de la notification
+     * @param changedAt l'instant de la modification en base de données, en millisecondes depuis l'epoch,
+     *                  ou 0 s'il n'est pas transmis par la notification : l'exécution de la requête en mode LISTEN,
+     *                  la validation de la transaction en mode réplication
+     */
+    record Updated(
+            long sequence,
+            @Nonnull List<Product> products,
+            long changedAt
+    ) implements ProductEvent {
+    }
+
+    /**
+     * Signal indiquant que des mises à jour ont pu être perdues : les abonnés doivent se resynchroniser
+     * avec l'état complet des produits.
+     *
+     * @param sequence le numéro de séquence global de l'événement
+     */
+    record Resync(
+            long sequence
+    ) implements ProductEvent {
+    }
+}
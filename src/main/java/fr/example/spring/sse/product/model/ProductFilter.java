@@ -0,0 +1,54 @@
+package fr.example.spring.sse.product.model;
+
+import java.util.Set;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+/**
+ * Filtre des produits auxquels une connexion SSE est abonnée.
+ * Un critère absent ne filtre pas ; les critères présents doivent tous être satisfaits.
+ *
+ * @param eans          les codes EAN suivis, ou un ensemble vide pour tous les produits
+ * @param eanPrefix     le préfixe des codes EAN suivis, ou {@code null}
+ * @param quantityBelow la quantité en dessous de laquelle un produit est suivi, ou {@code null}
+ */
+public record ProductFilter(
+        @Nonnull Set<String> eans,
+        @Nullable String eanPrefix,
+        @Nullable Integer quantityBelow
+) {
+
+    private static final ProductFilter ALL = new ProductFilter(Set.of(), null, null);
+
+    public ProductFilter {
+        eans = eans == null ? Set.of() : Set.copyOf(eans);
+        eanPrefix = eanPrefix == null || eanPrefix.isBlank() ? null : eanPrefix;
+    }
+
+    /**
+     * @return un filtre acceptant tous les produits
+     */
+    public static ProductFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @return {@code true} si le filtre accepte tous les produits
+     */
+    public boolean isAll() {
+        return eans.isEmpty() && eanPrefix == null && quantityBelow == null;
+    }
+
+    /**
+     * Indique si le produit satisfait tous les critères du filtre.
+     *
+     * @param product le produit mis à jour
+     * @return {@code true} si la connexion doit recevoir la mise à jour du produit
+     */
+    public boolean test(Product product) {
+        return (eans.isEmpty() || eans.contains(product.ean()))
+                && (eanPrefix == null || product.ean().startsWith(eanPrefix))
+                && (quantityBelow == null || product.quantite() < quantityBelow);
+    }
+}
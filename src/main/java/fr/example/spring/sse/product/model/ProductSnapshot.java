@@ -0,0 +1,20 @@
+package fr.example.spring.sse.product.model;
+
+import java.util.List;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * État complet et immuable du catalogue de produits à une version donnée.
+ *
+ * @param version  la version du catalogue, incrémentée à chaque modification
+ * @param sequence le numéro de séquence global du dernier événement appliqué au catalogue, ou -1 si aucun
+ *                 événement n'a encore été appliqué
+ * @param products les produits du catalogue, triés par code EAN
+ */
+public record ProductSnapshot(
+        long version,
+        long sequence,
+        @Nonnull List<Product> products
+) {
+}
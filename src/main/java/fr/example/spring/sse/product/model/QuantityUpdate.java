@@ -0,0 +1,20 @@
+package fr.example.spring.sse.product.model;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Demande de mise à jour de la quantité d'un produit.
+ *
+ * @param ean      le code EAN du produit à mettre à jour
+ * @param quantity la quantité à ajouter (peut être négative pour diminuer la quantité)
+ */
+public record QuantityUpdate(
+        @Nonnull String ean,
+        int quantity
+) {
+
+    /**
+     * Valeur absolue maximale d'une quantité à ajouter par une seule demande.
+     */
+    public static final int MAX_QUANTITY = 1_000_000;
+}
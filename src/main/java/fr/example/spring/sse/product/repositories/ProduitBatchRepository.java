@@ -0,0 +1,114 @@
+package fr.example.spring.sse.product.repositories;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Référentiel JDBC pour les mises à jour de quantité portant sur plusieurs produits.
+ * Chaque lot est appliqué par une seule requête SQL, les codes EAN et les quantités étant transmis sous forme de tableaux.
+ */
+@Repository
+public class ProduitBatchRepository {
+
+    private static final String INCREMENT_QUANTITES = """
+            UPDATE produit p
+               SET quantite = p.quantite + d.delta
+              FROM unnest(?::bpchar[], ?::integer[]) AS d(ean, delta)
+             WHERE p.ean = d.ean
+               AND (? OR p.quantite + d.delta >= 0)
+            RETURNING p.id, p.ean, p.nom, p.quantite, p.prix
+            """;
+
+    private static final String EXISTING_EANS = "SELECT ean FROM produit WHERE ean = ANY(?::bpchar[])";
+
+    private static final String PRICES = "SELECT ean, prix FROM produit WHERE ean = ANY(?::bpchar[])";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProduitBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Ajoute une quantité au stock de plusieurs produits en une seule requête SQL.
+     * Les lignes sont mises à jour dans l'ordre des codes EAN, afin que deux lots concurrents verrouillent
+     * les produits dans le même ordre.
+     *
+     * @param deltas        la quantité à ajouter pour chaque code EAN, un code EAN n'apparaissant qu'une fois
+     * @param allowNegative {@code false} pour refuser les mises à jour qui rendraient le stock négatif
+     * @return les produits mis à jour ; un produit inexistant ou dont la mise à jour est refusée est absent
+     */
+    public List<Produit> incrementQuantites(Map<String, Integer> deltas, boolean allowNegative) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+
+        final var sorted = new TreeMap<>(deltas);
+        return jdbcTemplate.query(connection -> {
+            final var statement = connection.prepareStatement(INCREMENT_QUANTITES);
+            statement.setArray(1, connection.createArrayOf("text", sorted.keySet().toArray()));
+            statement.setArray(2, connection.createArrayOf("integer", sorted.values().toArray()));
+            statement.setBoolean(3, allowNegative);
+            return statement;
+        }, ProduitBatchRepository::mapRow);
+    }
+
+    /**
+     * Retourne, parmi les codes EAN donnés, ceux qui correspondent à un produit.
+     *
+     * @param eans les codes EAN à rechercher
+     * @return les codes EAN existants
+     */
+    public List<String> findExistingEans(List<String> eans) {
+        if (eans.isEmpty()) {
+            return List.of();
+        }
+
+        return jdbcTemplate.query(connection -> {
+            final var statement = connection.prepareStatement(EXISTING_EANS);
+            statement.setArray(1, connection.createArrayOf("text", eans.toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getString("ean"));
+    }
+
+    /**
+     * Retourne le prix de plusieurs produits en une seule requête SQL.
+     *
+     * @param eans les codes EAN des produits
+     * @return le prix de chaque produit trouvé, indexé par code EAN ; un produit inexistant est absent
+     */
+    public Map<String, BigDecimal> findPrices(Collection<String> eans) {
+        if (eans.isEmpty()) {
+            return Map.of();
+        }
+
+        final var prices = new HashMap<String, BigDecimal>();
+        jdbcTemplate.query(connection -> {
+            final var statement = connection.prepareStatement(PRICES);
+            statement.setArray(1, connection.createArrayOf("text", eans.toArray()));
+            return statement;
+        }, rs -> {
+            prices.put(rs.getString("ean"), rs.getBigDecimal("prix"));
+        });
+        return prices;
+    }
+
+    static Produit mapRow(ResultSet rs, int rowNum) throws SQLException {
+        final var produit = new Produit();
+        produit.setId(rs.getInt("id"));
+        produit.setEan(rs.getString("ean"));
+        produit.setNom(rs.getString("nom"));
+        produit.setQuantite(rs.getInt("quantite"));
+        produit.setPrix(rs.getBigDecimal("prix"));
+        return produit;
+    }
+}
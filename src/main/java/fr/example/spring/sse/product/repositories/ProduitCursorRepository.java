@@ -0,0 +1,60 @@
+package fr.example.spring.sse.product.repositories;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+
+/**
+ * Référentiel JDBC parcourant les produits au fil de l'eau, sans les charger tous en mémoire.
+ * Les lignes sont lues par un curseur PostgreSQL en lecture seule et en avant seulement : le pilote n'en conserve
+ * qu'un lot de taille configurée à la fois, quel que soit le nombre de produits parcourus.
+ * La pagination se fait par clé, à partir du dernier identifiant reçu, et non par décalage :
+ * le coût d'une page ne dépend pas de sa position dans la table.
+ */
+@Repository
+public class ProduitCursorRepository {
+
+    private static final String PRODUITS_APRES = """
+            SELECT id, ean, nom, quantite, prix
+              FROM produit
+             WHERE id > ?
+             ORDER BY id
+             LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public ProduitCursorRepository(JdbcTemplate jdbcTemplate, ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = applicationProperties.listing().fetchSize();
+    }
+
+    /**
+     * Parcourt les produits d'identifiant supérieur à celui donné, par identifiant croissant.
+     * Le pilote PostgreSQL n'utilise un curseur qu'au sein d'une transaction : la méthode est donc transactionnelle,
+     * et chaque produit est transmis à l'action dès sa lecture.
+     *
+     * @param afterId l'identifiant du dernier produit déjà reçu, 0 pour commencer au premier produit
+     * @param limit   le nombre maximal de produits parcourus, ou {@code null} pour parcourir tous les produits suivants
+     * @param action  l'action appliquée à chaque produit, dans l'ordre des identifiants
+     */
+    @Transactional(readOnly = true)
+    public void forEachAfter(int afterId, Integer limit, Consumer<Produit> action) {
+        jdbcTemplate.query(connection -> {
+            final var statement = connection.prepareStatement(PRODUITS_APRES, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setInt(1, afterId);
+            // LIMIT NULL : pas de limite
+            statement.setObject(2, limit, Types.INTEGER);
+            return statement;
+        }, (RowCallbackHandler) rs -> action.accept(ProduitBatchRepository.mapRow(rs, 0)));
+    }
+}
@@ -2,7 +2,10 @@ package fr.example.spring.sse.product.repositories;
 
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Référentiel pour l'entité Produit.
@@ -17,4 +20,36 @@ public interface ProduitRepository extends ListCrudRepository<Produit, Integer>
      * @return un Optional contenant le produit s'il existe, ou vide sinon
      */
     Optional<Produit> findByEan(String ean);
+
+    /**
+     * Ajoute une quantité au stock d'un produit en une seule requête SQL.
+     * L'incrément est calculé par PostgreSQL sur la ligne verrouillée par l'UPDATE : des mises à jour concurrentes
+     * d'un même produit sont sérialisées par la base et aucune n'est perdue.
+     * Le produit mis à jour est renvoyé par {@code RETURNING} : la requête est exécutée comme une lecture et non
+     * avec {@code @Modifying}, réservé aux requêtes qui ne renvoient qu'un nombre de lignes. Une méthode de requête
+     * déclarée n'ayant pas de transaction par défaut, elle en demande une en écriture, ou rejoint celle de l'appelant.
+     *
+     * @param ean           le code EAN du produit à mettre à jour
+     * @param delta         la quantité à ajouter (peut être négative pour diminuer la quantité)
+     * @param allowNegative {@code false} pour refuser une mise à jour qui rendrait le stock négatif
+     * @return un Optional contenant le produit mis à jour, ou vide si le produit n'existe pas ou si le stock
+     * deviendrait négatif alors que ce n'est pas autorisé
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            UPDATE produit
+               SET quantite = quantite + :delta
+             WHERE ean = :ean
+               AND (:allowNegative OR quantite + :delta >= 0)
+            RETURNING *
+            """)
+    Optional<Produit> incrementQuantite(@Param("ean") String ean, @Param("delta") int delta, @Param("allowNegative") boolean allowNegative);
+
+    /**
+     * Indique si un produit existe pour le code EAN donné.
+     *
+     * @param ean le code EAN du produit à rechercher
+     * @return {@code true} si le produit existe
+     */
+    boolean existsByEan(String ean);
 }
@@ -1,40 +1,31 @@
 package fr.example.spring.sse.product.spi;
 
 import java.util.function.Function;
+import java.util.function.Supplier;
 
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
-
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.model.ProductSnapshot;
 import reactor.core.publisher.Flux;
 
 public interface EmitProduct {
 
     /**
-     * Crée un émetteur SSE qui recevra des événements du flux fourni.
-     *
-     * @param <T>        le type de données qui sera envoyé comme événements
-     * @param dataFlux   un flux qui émettra les données à envoyer comme événements
-     * @param eventName  le nom des événements SSE
-     * @param dataMapper une fonction qui transforme les données au format attendu par le client
-     * @return un SseEmitter configuré pour envoyer des événements
-     */
-    <T, R> SseEmitter createEmitterFromFlux(
-            Flux<T> dataFlux,
-            String eventName,
-            Function<T, R> dataMapper);
-
-    /**
-     * Crée un émetteur SSE qui recevra des événements du flux fourni.
+     * Crée une diffusion SSE alimentée par le flux d'événements fourni.
+     * Chaque événement du flux est transformé et encodé une seule fois, quel que soit le nombre de connexions abonnées.
      *
-     * @param <T>        le type de données qui sera envoyé comme événements
-     * @param dataFlux   un flux qui émettra les données à envoyer comme événements
+     * @param <R>        le type de données envoyé aux clients
+     * @param eventFlux  un flux qui émettra les événements de mise à jour de produits
      * @param eventName  le nom des événements SSE
-     * @param dataMapper une fonction qui transforme les données au format attendu par le client
-     * @param timeout    le délai d'expiration de la connexion SSE en millisecondes
-     * @return un SseEmitter configuré pour envoyer des événements
+     * @param dataMapper une fonction qui transforme les produits au format attendu par le client
+     * @param snapshot   fournit l'état complet des produits et la séquence du dernier événement qu'il reflète,
+     *                   envoyé à un client dont les événements manqués ne peuvent plus être rejoués
+     *                   ou qui demande à commencer par cet état
+     * @return une diffusion à laquelle chaque connexion SSE peut s'abonner
      */
-    <T, R> SseEmitter createEmitterFromFlux(
-            Flux<T> dataFlux,
+    <R> ProductBroadcast broadcast(
+            Flux<ProductEvent> eventFlux,
             String eventName,
-            Function<T, R> dataMapper,
-            long timeout);
+            Function<Product, R> dataMapper,
+            Supplier<ProductSnapshot> snapshot);
 }
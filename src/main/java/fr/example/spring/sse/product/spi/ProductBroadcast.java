@@ -0,0 +1,83 @@
+package fr.example.spring.sse.product.spi;
+
+import java.util.function.Predicate;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import fr.example.spring.sse.product.model.ProductFilter;
+import reactor.core.publisher.Flux;
+
+/**
+ * Diffusion SSE partagée entre toutes les connexions : chaque événement y est encodé une seule fois,
+ * puis les mêmes octets sont écrits sur chaque connexion abonnée.
+ */
+public interface ProductBroadcast {
+
+    /**
+     * Crée un émetteur SSE abonné à la diffusion.
+     * Si le client fournit l'identifiant du dernier événement reçu, les événements manqués lui sont rejoués,
+     * ou à défaut l'état complet des produits lui est envoyé.
+     * Seules les mises à jour des produits acceptés par le filtre sont envoyées.
+     *
+     * @param lastEventId la valeur de l'en-tête {@code Last-Event-ID} envoyé par le client, ou {@code null}
+     * @param filter      le filtre des produits suivis par le client
+     * @return un SseEmitter configuré pour envoyer les événements de la diffusion
+     */
+    SseEmitter subscribe(String lastEventId, ProductFilter filter);
+
+    /**
+     * Crée un émetteur SSE abonné à la diffusion.
+     * Si le client fournit l'identifiant du dernier événement reçu, les événements manqués lui sont rejoués,
+     * ou à défaut l'état complet des produits lui est envoyé.
+     * Seules les mises à jour des produits acceptés par le filtre sont envoyées.
+     *
+     * @param lastEventId la valeur de l'en-tête {@code Last-Event-ID} envoyé par le client, ou {@code null}
+     * @param filter      le filtre des produits suivis par le client
+     * @param timeout     le délai d'expiration de la connexion SSE en millisecondes
+     * @return un SseEmitter configuré pour envoyer les événements de la diffusion
+     */
+    SseEmitter subscribe(String lastEventId, ProductFilter filter, long timeout);
+
+    /**
+     * Crée un émetteur SSE abonné à la diffusion, dont le premier événement est l'état complet des produits suivis.
+     * L'état complet porte l'identifiant de la dernière mise à jour qu'il reflète : seules les mises à jour
+     * postérieures sont ensuite envoyées, sans perte ni doublon entre les deux.
+     * Si le client fournit l'identifiant du dernier événement reçu, il reprend la diffusion comme avec
+     * {@link #subscribe(String, ProductFilter)}.
+     *
+     * @param lastEventId la valeur de l'en-tête {@code Last-Event-ID} envoyé par le client, ou {@code null}
+     * @param filter      le filtre des produits suivis par le client
+     * @return un SseEmitter configuré pour envoyer l'état complet puis les événements de la diffusion
+     */
+    SseEmitter subscribeWithSnapshot(String lastEventId, ProductFilter filter);
+
+    /**
+     * Crée le flux des trames SSE destinées à une connexion servie par une pile non bloquante.
+     * Les trames sont déjà encodées au format {@code text/event-stream} et partagées entre toutes les connexions ;
+     * la demande de l'abonné est respectée, dans la limite du tampon de la connexion.
+     *
+     * @param lastEventId la valeur de l'en-tête {@code Last-Event-ID} envoyé par le client, ou {@code null}
+     * @param filter      le filtre des produits suivis par le client
+     * @return un Flux des trames à écrire telles quelles sur la connexion
+     */
+    Flux<byte[]> stream(String lastEventId, ProductFilter filter);
+
+    /**
+     * Crée le flux des trames SSE destinées à une connexion servie par une pile non bloquante,
+     * dont la première trame est l'état complet des produits suivis, comme avec
+     * {@link #subscribeWithSnapshot(String, ProductFilter)}.
+     *
+     * @param lastEventId la valeur de l'en-tête {@code Last-Event-ID} envoyé par le client, ou {@code null}
+     * @param filter      le filtre des produits suivis par le client
+     * @return un Flux des trames à écrire telles quelles sur la connexion
+     */
+    Flux<byte[]> streamWithSnapshot(String lastEventId, ProductFilter filter);
+
+    /**
+     * Ferme les connexions dont le filtre vérifie le prédicat, par exemple lorsque les produits qu'elles suivent
+     * sont désormais diffusés par un autre nœud. Les clients se reconnecteront.
+     *
+     * @param filter le prédicat appliqué au filtre de chaque connexion
+     */
+    void disconnect(Predicate<ProductFilter> filter);
+}
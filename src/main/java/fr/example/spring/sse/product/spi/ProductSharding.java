@@ -0,0 +1,38 @@
+package fr.example.spring.sse.product.spi;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Répartition des produits entre les nœuds de l'application : chaque nœud ne diffuse aux clients suivant des codes EAN
+ * que les produits des partitions qui lui sont attribuées, et ces clients sont redirigés vers le nœud propriétaire.
+ * Sans partitionnement, le nœud possède tous les produits.
+ */
+public interface ProductSharding {
+
+    /**
+     * @param ean le code EAN d'un produit
+     * @return {@code true} si ce nœud diffuse les mises à jour du produit
+     */
+    boolean owns(String ean);
+
+    /**
+     * Indique vers quel nœud rediriger un client suivant les codes EAN donnés.
+     *
+     * @param eans les codes EAN suivis par le client
+     * @return l'URL du nœud propriétaire de tous les codes EAN, ou vide si ce nœud les possède tous ou si aucun code EAN
+     * n'est suivi : un tel client est servi par le nœud auquel il s'est connecté
+     * @throws IllegalArgumentException si les codes EAN appartiennent à plusieurs nœuds
+     */
+    Optional<String> redirectFor(Collection<String> eans);
+
+    /**
+     * Retourne le flux des redistributions de partitions, émis lorsque des nœuds rejoignent ou quittent le cluster.
+     * Les connexions suivant des produits dont ce nœud n'est plus propriétaire doivent alors être fermées.
+     *
+     * @return un Flux émettant le nombre de partitions possédées par ce nœud après chaque redistribution
+     */
+    Flux<Integer> rebalances();
+}
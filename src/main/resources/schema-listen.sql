@@ -0,0 +1,129 @@
+-- Notification triggers, used when app.change-source is listen.
+-- Run after schema.sql: see spring.sql.init.schema-locations.
+
+-- Create function for notification
+-- Statement-level: one call per INSERT/UPDATE statement, whatever the number of rows it touches.
+-- Changed rows are read from the transition tables and sent as JSON arrays, split into several
+-- notifications so that each payload stays under the 8000 bytes NOTIFY limit.
+CREATE OR REPLACE FUNCTION notify_quantite_change()
+RETURNS TRIGGER AS '
+DECLARE
+    -- Change time in epoch milliseconds, used to measure the end-to-end delivery latency: the time the statement
+    -- ran, not the commit time, which a trigger cannot know. The notification is only delivered at commit, so the
+    -- measured latency includes the rest of the transaction
+    ts BIGINT := (extract(epoch FROM clock_timestamp()) * 1000)::BIGINT;
+    produits TEXT[];
+    produit TEXT;
+    payload TEXT := '''';
+BEGIN
+    IF TG_OP = ''INSERT'' THEN
+        SELECT array_agg(json_build_object(
+            ''id'',  n.id,
+            ''ean'', n.ean,
+            ''nom'', n.nom,
+            ''quantite'', n.quantite,
+            ''ts'', ts
+        )::text ORDER BY n.id)
+        INTO produits
+        FROM new_rows n;
+    ELSE
+        SELECT array_agg(json_build_object(
+            ''id'',  n.id,
+            ''ean'', n.ean,
+            ''nom'', n.nom,
+            ''quantite'', n.quantite,
+            ''ts'', ts
+        )::text ORDER BY n.id)
+        INTO produits
+        FROM new_rows n
+        JOIN old_rows o ON o.id = n.id
+        WHERE n.quantite <> o.quantite;
+    END IF;
+
+    IF produits IS NULL THEN
+        RETURN NULL;
+    END IF;
+
+    FOREACH produit IN ARRAY produits LOOP
+        -- 7900 bytes leaves room for the brackets and the separator
+        IF payload <> '''' AND octet_length(payload) + octet_length(produit) > 7900 THEN
+            PERFORM pg_notify(''produit_quantite_change'', ''['' || payload || '']'');
+            payload := '''';
+        END IF;
+        payload := CASE WHEN payload = '''' THEN produit ELSE payload || '','' || produit END;
+    END LOOP;
+    PERFORM pg_notify(''produit_quantite_change'', ''['' || payload || '']'');
+
+    RETURN NULL;
+END;
+' LANGUAGE plpgsql;
+
+-- Create triggers to call the function when quantity changes
+-- Trigger for INSERT operations
+DROP TRIGGER IF EXISTS produit_quantite_insert_trigger ON produit;
+CREATE TRIGGER produit_quantite_insert_trigger
+AFTER INSERT ON produit
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION notify_quantite_change();
+
+-- Trigger for UPDATE operations
+-- Transition tables cannot be combined with a column list: unchanged quantities are filtered by the function
+DROP TRIGGER IF EXISTS produit_quantite_update_trigger ON produit;
+CREATE TRIGGER produit_quantite_update_trigger
+AFTER UPDATE ON produit
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION notify_quantite_change();
+
+-- Create function for price change notification
+-- Sends the products whose price changed, with their new price, as JSON arrays: they are broadcast as product
+-- updates and refresh the cached prices
+CREATE OR REPLACE FUNCTION notify_prix_change()
+RETURNS TRIGGER AS '
+DECLARE
+    -- Change time, as in notify_quantite_change
+    ts BIGINT := (extract(epoch FROM clock_timestamp()) * 1000)::BIGINT;
+    produits TEXT[];
+    produit TEXT;
+    payload TEXT := '''';
+BEGIN
+    SELECT array_agg(json_build_object(
+        ''id'',  n.id,
+        ''ean'', n.ean,
+        ''nom'', n.nom,
+        ''quantite'', n.quantite,
+        ''prix'', n.prix::text,
+        ''ts'', ts
+    )::text ORDER BY n.id)
+    INTO produits
+    FROM new_rows n
+    JOIN old_rows o ON o.id = n.id
+    WHERE n.prix <> o.prix;
+
+    IF produits IS NULL THEN
+        RETURN NULL;
+    END IF;
+
+    FOREACH produit IN ARRAY produits LOOP
+        IF payload <> '''' AND octet_length(payload) + octet_length(produit) > 7900 THEN
+            PERFORM pg_notify(''produit_prix_change'', ''['' || payload || '']'');
+            payload := '''';
+        END IF;
+        payload := CASE WHEN payload = '''' THEN produit ELSE payload || '','' || produit END;
+    END LOOP;
+    PERFORM pg_notify(''produit_prix_change'', ''['' || payload || '']'');
+
+    RETURN NULL;
+END;
+' LANGUAGE plpgsql;
+
+-- Trigger for price UPDATE operations
+-- Triggers fire in name order: when a statement changes both price and quantity, the price notification
+-- is sent first, so the quantity notification is completed with the new cached price
+DROP TRIGGER IF EXISTS produit_prix_update_trigger ON produit;
+CREATE TRIGGER produit_prix_update_trigger
+AFTER UPDATE ON produit
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION notify_prix_change();
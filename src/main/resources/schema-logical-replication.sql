@@ -0,0 +1,6 @@
+-- Used when app.change-source is logical-replication: changes are read from the WAL,
+-- the notification triggers would only add a pg_notify call to every write.
+-- Run after schema.sql: see spring.sql.init.schema-locations.
+DROP TRIGGER IF EXISTS produit_quantite_insert_trigger ON produit;
+DROP TRIGGER IF EXISTS produit_quantite_update_trigger ON produit;
+DROP TRIGGER IF EXISTS produit_prix_update_trigger ON produit;
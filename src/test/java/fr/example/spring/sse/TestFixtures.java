@@ -0,0 +1,154 @@
+package fr.example.spring.sse;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import fr.example.spring.sse.config.ApplicationProperties;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.repositories.Produit;
+
+/**
+ * Données partagées par les tests unitaires : configuration de l'application, avec ses valeurs par défaut
+ * hormis celles dont dépend le test, et produits.
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * @return la configuration de l'application avec ses valeurs par défaut
+     */
+    public static ApplicationProperties applicationProperties() {
+        return applicationProperties(sse(256, ApplicationProperties.OverflowPolicy.DROP_OLDEST, 1024, 0));
+    }
+
+    /**
+     * @param sse la configuration de la diffusion SSE à utiliser
+     * @return la configuration de l'application avec ses valeurs par défaut, hormis la diffusion SSE
+     */
+    public static ApplicationProperties applicationProperties(ApplicationProperties.Sse sse) {
+        return applicationProperties(15, listener(Duration.ofMillis(500)), sse, cluster(false, ""));
+    }
+
+    /**
+     * @param heartbeatIntervalSeconds l'intervalle entre deux heartbeats
+     * @param listener                 la configuration de la connexion d'écoute
+     * @param sse                      la configuration de la diffusion SSE
+     * @param cluster                  la configuration du cluster
+     * @return la configuration de l'application avec ses valeurs par défaut pour les autres propriétés
+     */
+    public static ApplicationProperties applicationProperties(
+            int heartbeatIntervalSeconds,
+            ApplicationProperties.Listener listener,
+            ApplicationProperties.Sse sse,
+            ApplicationProperties.Cluster cluster) {
+
+        return applicationProperties(heartbeatIntervalSeconds, listener, sse, stock(false, Duration.ofMillis(5), 10_000),
+                priceCache(Duration.ofMillis(5)), cluster);
+    }
+
+    /**
+     * @param priceCache la configuration du cache des prix
+     * @return la configuration de l'application avec ses valeurs par défaut, hormis le cache des prix
+     */
+    public static ApplicationProperties applicationProperties(ApplicationProperties.PriceCache priceCache) {
+        return applicationProperties(15, listener(Duration.ofMillis(500)), applicationProperties().sse(),
+                stock(false, Duration.ofMillis(5), 10_000), priceCache, cluster(false, ""));
+    }
+
+    /**
+     * @param stock la configuration des mises à jour de quantité
+     * @return la configuration de l'application avec ses valeurs par défaut, hormis les mises à jour de quantité
+     */
+    public static ApplicationProperties applicationProperties(ApplicationProperties.Stock stock) {
+        return applicationProperties(15, listener(Duration.ofMillis(500)), applicationProperties().sse(), stock,
+                priceCache(Duration.ofMillis(5)), cluster(false, ""));
+    }
+
+    private static ApplicationProperties applicationProperties(
+            int heartbeatIntervalSeconds,
+            ApplicationProperties.Listener listener,
+            ApplicationProperties.Sse sse,
+            ApplicationProperties.Stock stock,
+            ApplicationProperties.PriceCache priceCache,
+            ApplicationProperties.Cluster cluster) {
+
+        return new ApplicationProperties(
+                "produit_quantite_change",
+                heartbeatIntervalSeconds,
+                ApplicationProperties.ChangeSource.LISTEN,
+                listener,
+                new ApplicationProperties.Replication("spring_sse", "spring_sse_produit", Duration.ofSeconds(10)),
+                sse,
+                new ApplicationProperties.ReactiveSse(false, 8082),
+                stock,
+                priceCache,
+                new ApplicationProperties.Listing(1000, 10_000, true),
+                cluster);
+    }
+
+    /**
+     * @param initialBackoff le délai avant la première tentative de reconnexion, doublé jusqu'à dix fois sa valeur
+     * @return la configuration de la connexion d'écoute
+     */
+    public static ApplicationProperties.Listener listener(Duration initialBackoff) {
+        return new ApplicationProperties.Listener(Duration.ofSeconds(10), Duration.ofSeconds(5), initialBackoff, initialBackoff.multipliedBy(10));
+    }
+
+    /**
+     * @return la configuration de la diffusion SSE, sans fenêtre de regroupement des écritures
+     */
+    public static ApplicationProperties.Sse sse(
+            int bufferSize,
+            ApplicationProperties.OverflowPolicy overflowPolicy,
+            int replayBufferSize,
+            int dispatchShards) {
+
+        return new ApplicationProperties.Sse(bufferSize, overflowPolicy, replayBufferSize, Duration.ZERO, 64, dispatchShards);
+    }
+
+    /**
+     * @param coalesce       regroupe les mises à jour de quantité unitaires
+     * @param coalesceWindow la fenêtre de regroupement
+     * @param maxPending     le nombre maximal de mises à jour en attente de regroupement
+     * @return la configuration des mises à jour de quantité, stock négatif autorisé
+     */
+    public static ApplicationProperties.Stock stock(boolean coalesce, Duration coalesceWindow, int maxPending) {
+        return new ApplicationProperties.Stock(true, coalesce, coalesceWindow, 1000, maxPending);
+    }
+
+    /**
+     * @param batchWindow la fenêtre de chargement groupé des prix absents du cache
+     * @return la configuration du cache des prix
+     */
+    public static ApplicationProperties.PriceCache priceCache(Duration batchWindow) {
+        return new ApplicationProperties.PriceCache(10_000, "produit_prix_change", batchWindow);
+    }
+
+    /**
+     * @return la configuration du cluster, sur 256 partitions
+     */
+    public static ApplicationProperties.Cluster cluster(boolean enabled, String nodeId) {
+        return new ApplicationProperties.Cluster(enabled, nodeId, "http://" + nodeId + ":8080", 256, Duration.ofSeconds(2), Duration.ofSeconds(10));
+    }
+
+    /**
+     * @return un produit au prix fixe
+     */
+    public static Product product(String ean, int quantite) {
+        return Product.create(ean, "Produit " + ean, quantite, BigDecimal.valueOf(1999, 2));
+    }
+
+    /**
+     * @return une entité produit au prix fixe
+     */
+    public static Produit produit(String ean, int quantite) {
+        final var produit = new Produit();
+        produit.setEan(ean);
+        produit.setNom("Produit");
+        produit.setQuantite(quantite);
+        produit.setPrix(new BigDecimal("19.99"));
+        return produit;
+    }
+}
@@ -0,0 +1,43 @@
+package fr.example.spring.sse.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApplicationPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(Properties.class)
+            .withPropertyValues("app.channel-to-listen=produit_quantite_change", "app.heartbeat-interval-seconds=15");
+
+    @Test
+    void conflateIsAcceptedByTheServletServer() {
+        contextRunner.withPropertyValues("app.sse.overflow-policy=conflate")
+                .run(context -> assertThat(context).hasNotFailed());
+    }
+
+    @Test
+    void conflateIsRejectedAtStartupWithTheReactiveServer() {
+        contextRunner.withPropertyValues("app.sse.overflow-policy=conflate", "app.reactive-sse.enabled=true")
+                .run(context -> assertThat(context).getFailure()
+                        .rootCause()
+                        .hasMessageContaining("app.sse.overflow-policy=conflate is not supported"));
+    }
+
+    @Test
+    void otherPoliciesAreAcceptedWithTheReactiveServer() {
+        contextRunner.withPropertyValues("app.sse.overflow-policy=disconnect", "app.reactive-sse.enabled=true")
+                .run(context -> assertThat(context).hasNotFailed());
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableConfigurationProperties(ApplicationProperties.class)
+    static class Properties {
+    }
+}
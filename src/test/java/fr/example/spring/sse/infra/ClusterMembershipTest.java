@@ -0,0 +1,183 @@
+package fr.example.spring.sse.infra;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mock.env.MockEnvironment;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.config.ApplicationProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClusterMembershipTest {
+
+    private static final List<String> EANS = IntStream.range(0, 2000)
+            .mapToObj(i -> String.format("%013d", 3_000_000_000_000L + i))
+            .toList();
+
+    private final List<ClusterMembership> started = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(ClusterMembership::stop);
+    }
+
+    @Test
+    void disabledClusterOwnsEveryEan() {
+        final var membership = new ClusterMembership(database(), properties(false, "a"), new ExecutionThreads(new MockEnvironment()));
+        membership.start();
+
+        assertThat(EANS).allMatch(membership::owns);
+        assertThat(membership.redirectFor(EANS)).isEmpty();
+        assertThat(membership.redirectFor(List.of())).isEmpty();
+    }
+
+    @Test
+    void everyEanHasExactlyOneOwner() {
+        final var a = join("a", "a", "b");
+        final var b = join("b", "a", "b");
+
+        for (String ean : EANS) {
+            assertThat(a.owns(ean)).isNotEqualTo(b.owns(ean));
+            assertThat(a.redirectFor(List.of(ean))).isEqualTo(a.owns(ean) ? Optional.empty() : Optional.of("http://b:8080"));
+            assertThat(b.redirectFor(List.of(ean))).isEqualTo(b.owns(ean) ? Optional.empty() : Optional.of("http://a:8080"));
+        }
+        assertThat(owned(a)).hasSizeBetween(EANS.size() / 4, EANS.size() * 3 / 4);
+    }
+
+    @Test
+    void joiningNodeOnlyTakesShardsFromTheOthers() {
+        final var a = join("a", "a", "b");
+        final var b = join("b", "a", "b");
+        final var aWithC = join("a", "a", "b", "c");
+        final var bWithC = join("b", "a", "b", "c");
+
+        assertThat(owned(a)).containsAll(owned(aWithC));
+        assertThat(owned(b)).containsAll(owned(bWithC));
+        assertThat(owned(aWithC)).hasSizeLessThan(owned(a).size());
+    }
+
+    @Test
+    void nodeMissingFromTheMembersStillOwnsItsShards() {
+        final var alone = join("a");
+
+        assertThat(EANS).allMatch(alone::owns);
+    }
+
+    @Test
+    void redirectRejectsEansOwnedBySeveralNodes() {
+        final var a = join("a", "a", "b");
+        final var local = EANS.stream().filter(a::owns).findFirst().orElseThrow();
+        final var remote = EANS.stream().filter(ean -> !a.owns(ean)).findFirst().orElseThrow();
+
+        assertThatThrownBy(() -> a.redirectFor(List.of(local, remote))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void clientsFollowingNoEanAreServedLocally() {
+        final var a = join("a", "a", "b");
+
+        assertThat(a.redirectFor(List.of())).isEmpty();
+    }
+
+    @Test
+    void leavesTheClusterOnlyOnceTheHeartbeatInProgressIsDone() throws Exception {
+        final var statements = new CopyOnWriteArrayList<String>();
+        final var heartbeating = new CountDownLatch(1);
+        final var committed = new Semaphore(0);
+        final var database = database("a");
+        when(database.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            final String sql = invocation.getArgument(0);
+            if (sql.startsWith("DELETE")) {
+                statements.add("leave");
+            } else {
+                if (Thread.currentThread().getName().startsWith("cluster-membership")) {
+                    // A statement running on the database is not stopped by an interrupt
+                    heartbeating.countDown();
+                    committed.acquireUninterruptibly();
+                }
+                statements.add("heartbeat");
+            }
+            return 1;
+        });
+        final var cluster = new ApplicationProperties.Cluster(true, "a", "http://a:8080", 256, Duration.ofMillis(10), Duration.ofSeconds(10));
+        final var membership = new ClusterMembership(database, TestFixtures.applicationProperties(15,
+                TestFixtures.listener(Duration.ofMillis(500)), TestFixtures.applicationProperties().sse(), cluster),
+                new ExecutionThreads(new MockEnvironment()));
+        membership.start();
+        assertThat(heartbeating.await(5, TimeUnit.SECONDS)).isTrue();
+
+        final var stopping = CompletableFuture.runAsync(membership::stop);
+        Thread.sleep(100);
+        assertThat(statements).doesNotContain("leave");
+        committed.release(Integer.MAX_VALUE);
+        stopping.get(5, TimeUnit.SECONDS);
+
+        // The row deleted when leaving is not recreated by a later heartbeat
+        Thread.sleep(100);
+        assertThat(statements).containsExactly("heartbeat", "heartbeat", "leave");
+    }
+
+    private ClusterMembership join(String nodeId, String... members) {
+        final var membership = new ClusterMembership(database(members), properties(true, nodeId), new ExecutionThreads(new MockEnvironment()));
+        membership.start();
+        started.add(membership);
+        return membership;
+    }
+
+    private static Set<String> owned(ClusterMembership membership) {
+        return EANS.stream().filter(membership::owns).collect(Collectors.toSet());
+    }
+
+    private static ApplicationProperties properties(boolean enabled, String nodeId) {
+        return TestFixtures.applicationProperties(15, TestFixtures.listener(Duration.ofMillis(500)),
+                TestFixtures.applicationProperties().sse(), TestFixtures.cluster(enabled, nodeId));
+    }
+
+    /**
+     * Base de données dont la table {@code cluster_member} contient les membres donnés, dont l'URL est dérivée
+     * de l'identifiant comme dans {@link TestFixtures#cluster(boolean, String)}.
+     */
+    @SuppressWarnings("unchecked")
+    private static JdbcTemplate database(String... members) {
+        final var jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any())).thenAnswer(invocation -> {
+            final RowMapper<Object> rowMapper = invocation.getArgument(1);
+            final var rows = new ArrayList<>();
+            for (String member : members) {
+                rows.add(rowMapper.mapRow(row(member), rows.size()));
+            }
+            return rows;
+        });
+        return jdbcTemplate;
+    }
+
+    private static ResultSet row(String nodeId) throws SQLException {
+        final var resultSet = mock(ResultSet.class);
+        when(resultSet.getString("node_id")).thenReturn(nodeId);
+        when(resultSet.getString("url")).thenReturn("http://" + nodeId + ":8080");
+        return resultSet;
+    }
+}
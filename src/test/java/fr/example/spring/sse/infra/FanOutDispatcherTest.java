@@ -0,0 +1,220 @@
+package fr.example.spring.sse.infra;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.product.model.ProductFilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class FanOutDispatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private FanOutDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.close();
+    }
+
+    @Test
+    void deliversEachFrameOnceToEverySubscriber() {
+        dispatcher = dispatcher(4);
+        final var subscribers = List.of(new RecordingSubscriber(), new RecordingSubscriber(), new RecordingSubscriber());
+        subscribers.forEach(subscriber -> dispatcher.add(subscriber, 0));
+
+        LongStream.rangeClosed(1, 100).forEach(sequence -> dispatcher.dispatch(frame(sequence)));
+
+        for (RecordingSubscriber subscriber : subscribers) {
+            await().atMost(Duration.ofSeconds(5)).until(() -> subscriber.offered.size() == 100);
+            assertThat(subscriber.offered).isEqualTo(LongStream.rangeClosed(1, 100).boxed().toList());
+        }
+    }
+
+    @Test
+    void subscriberOnlyReceivesTheFramesAfterItsBoundary() {
+        dispatcher = dispatcher(1);
+        final var blocker = new RecordingSubscriber();
+        blocker.block();
+        dispatcher.add(blocker, 0);
+
+        // Frames 1 to 3 stay queued while the worker is blocked on frame 1
+        dispatcher.dispatch(frame(1));
+        blocker.awaitBlocked();
+        dispatcher.dispatch(frame(2));
+        dispatcher.dispatch(frame(3));
+        final var subscriber = new RecordingSubscriber();
+        dispatcher.add(subscriber, 2);
+        dispatcher.dispatch(frame(4));
+        blocker.release();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> subscriber.offered.size() == 2);
+        assertThat(subscriber.offered).containsExactly(3L, 4L);
+    }
+
+    @Test
+    void saturatedWorkerDropsFramesAndReportsThemBeforeTheNextOne() {
+        dispatcher = dispatcher(1);
+        final var subscriber = new RecordingSubscriber();
+        subscriber.block();
+        dispatcher.add(subscriber, 0);
+
+        dispatcher.dispatch(frame(1));
+        subscriber.awaitBlocked();
+        // The queue holds 4096 frames, the last 10 are lost without waiting for the worker
+        LongStream.rangeClosed(2, 4107).forEach(sequence -> dispatcher.dispatch(frame(sequence)));
+        subscriber.release();
+        await().atMost(Duration.ofSeconds(5)).until(() -> subscriber.offered.size() == 4097);
+        dispatcher.dispatch(frame(4108));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> subscriber.offered.size() == 4098);
+        assertThat(subscriber.missed).containsExactly(10);
+        assertThat(subscriber.events.getLast()).isEqualTo("offer 4108");
+        assertThat(subscriber.events.get(subscriber.events.size() - 2)).isEqualTo("missed 10");
+    }
+
+    @Test
+    void removedSubscriberNoLongerReceivesFrames() {
+        dispatcher = dispatcher(2);
+        final var removed = new RecordingSubscriber();
+        final var kept = new RecordingSubscriber();
+        dispatcher.add(removed, 0);
+        dispatcher.add(kept, 0);
+
+        dispatcher.remove(removed);
+        dispatcher.dispatch(frame(1));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> kept.offered.size() == 1);
+        assertThat(removed.offered).isEmpty();
+    }
+
+    @Test
+    void disconnectCompletesTheMatchingSubscribers() {
+        dispatcher = dispatcher(2);
+        final var matching = new RecordingSubscriber(new ProductFilter(Set.of("A"), null, null));
+        final var other = new RecordingSubscriber();
+        dispatcher.add(matching, 0);
+        dispatcher.add(other, 0);
+
+        dispatcher.disconnect(filter -> filter.eans().contains("A"));
+        dispatcher.dispatch(frame(1));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> matching.completed && other.offered.size() == 1);
+        assertThat(matching.offered).isEmpty();
+        assertThat(other.completed).isFalse();
+    }
+
+    @Test
+    void inlineDispatchDeliversFromTheCallingThread() {
+        dispatcher = dispatcher(0);
+        final var subscriber = new RecordingSubscriber();
+        dispatcher.add(subscriber, 0);
+
+        dispatcher.dispatch(frame(1));
+
+        assertThat(subscriber.offered).containsExactly(1L);
+    }
+
+    @Test
+    void closeStopsTheWorkers() {
+        dispatcher = dispatcher(2);
+
+        dispatcher.close();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().startsWith("sse-dispatch-test-")));
+    }
+
+    private static FanOutDispatcher dispatcher(int workers) {
+        return new FanOutDispatcher("test", workers, name -> Thread.ofPlatform().daemon(true).name(name));
+    }
+
+    private SseFrame frame(long sequence) {
+        final var product = TestFixtures.product("A", (int) sequence);
+        return SseFrame.encode(product, sequence, sequence, 0, "product-quantity-updated", product, objectMapper);
+    }
+
+    /**
+     * Connexion enregistrant les trames et pertes signalées, dont le premier dépôt peut être bloqué
+     * pour simuler un worker saturé.
+     */
+    private static final class RecordingSubscriber implements FrameSubscriber {
+
+        private final ProductFilter filter;
+        private final List<Long> offered = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> missed = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile CountDownLatch released = new CountDownLatch(0);
+        private volatile boolean completed;
+
+        RecordingSubscriber() {
+            this(ProductFilter.all());
+        }
+
+        RecordingSubscriber(ProductFilter filter) {
+            this.filter = filter;
+        }
+
+        void block() {
+            released = new CountDownLatch(1);
+        }
+
+        void awaitBlocked() {
+            try {
+                assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public ProductFilter filter() {
+            return filter;
+        }
+
+        @Override
+        public void offer(SseFrame frame) {
+            blocked.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            offered.add(frame.sequence());
+            events.add("offer " + frame.sequence());
+        }
+
+        @Override
+        public void replay(List<SseFrame> frames) {
+        }
+
+        @Override
+        public void missed(int frames) {
+            missed.add(frames);
+            events.add("missed " + frames);
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package fr.example.spring.sse.infra;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import fr.example.spring.sse.TestFixtures;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeartbeatSchedulerTest {
+
+    private HeartbeatScheduler heartbeatScheduler;
+
+    @BeforeEach
+    void setUp() {
+        // Roue d'une seule case : chaque heartbeat est émis à chaque tick, toutes les secondes
+        final var properties = TestFixtures.applicationProperties(
+                1, TestFixtures.listener(Duration.ofMillis(500)), TestFixtures.applicationProperties().sse(), TestFixtures.cluster(false, ""));
+        heartbeatScheduler = new HeartbeatScheduler(properties, new ExecutionThreads(new MockEnvironment()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeatScheduler.shutdown();
+    }
+
+    @Test
+    void sendsTheFirstHeartbeatImmediately() {
+        final var sent = new AtomicInteger();
+
+        heartbeatScheduler.schedule(sent::incrementAndGet);
+
+        assertThat(sent).hasValue(1);
+    }
+
+    @Test
+    void sendsAHeartbeatAtEachInterval() throws InterruptedException {
+        final var sent = new CountDownLatch(3);
+
+        heartbeatScheduler.schedule(sent::countDown);
+
+        assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void stopsSendingOnceDisposed() throws InterruptedException {
+        final var sent = new AtomicInteger();
+
+        heartbeatScheduler.schedule(sent::incrementAndGet).dispose();
+        TimeUnit.MILLISECONDS.sleep(1500);
+
+        assertThat(sent).hasValue(1);
+    }
+
+    @Test
+    void keepsSendingWhenAnotherHeartbeatFails() throws InterruptedException {
+        final var calls = new AtomicInteger();
+        final var sent = new CountDownLatch(3);
+
+        heartbeatScheduler.schedule(() -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("connection closed");
+            }
+        });
+        heartbeatScheduler.schedule(sent::countDown);
+
+        assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(calls.get()).isGreaterThan(1);
+    }
+
+    @Test
+    void sendsTheHeartbeatsOfThousandsOfConnectionsFromASingleThread() throws InterruptedException {
+        final var connections = 10_000;
+        final var threadsBefore = Set.copyOf(Thread.getAllStackTraces().keySet());
+        final var heartbeatThreads = ConcurrentHashMap.<Thread>newKeySet();
+        // Le premier heartbeat est émis par le thread appelant, le second par la roue
+        final var sent = new CountDownLatch(2 * connections);
+
+        for (int connection = 0; connection < connections; connection++) {
+            heartbeatScheduler.schedule(() -> {
+                heartbeatThreads.add(Thread.currentThread());
+                sent.countDown();
+            });
+        }
+
+        assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+        heartbeatThreads.remove(Thread.currentThread());
+        assertThat(heartbeatThreads).singleElement().extracting(Thread::getName).isEqualTo("sse-heartbeat");
+        final var startedThreads = new HashSet<>(Thread.getAllStackTraces().keySet());
+        startedThreads.removeAll(threadsBefore);
+        assertThat(startedThreads).isEmpty();
+    }
+}
@@ -0,0 +1,113 @@
+package fr.example.spring.sse.infra;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import fr.example.spring.sse.TestFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+
+class PostgreSQLChangeSourceTest {
+
+    private static final String CHANNEL = "produit_quantite_change";
+
+    private final NotificationChannels notificationChannels = new NotificationChannels();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<SequencedNotification> received = Collections.synchronizedList(new ArrayList<>());
+    private final Disposable subscription = notificationChannels.listen(CHANNEL).subscribe(received::add);
+    private ScriptedChangeSource changeSource;
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        changeSource.cleanup();
+        subscription.dispose();
+    }
+
+    @Test
+    void publishesAResyncSignalOnEachConnectionWhenChangesMayHaveBeenLost() {
+        changeSource = new ScriptedChangeSource(true);
+
+        changeSource.start();
+
+        // The first resync covers the changes made before the first connection was prepared
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 4);
+        assertThat(received).extracting(notification -> notification.resync() ? "resync" : notification.getParameter())
+                .containsExactly("resync", "first", "resync", "second");
+        assertThat(received).extracting(SequencedNotification::sequence).isSorted().doesNotHaveDuplicates();
+        assertThat(changeSource.connections).hasValue(3);
+        assertThat(meterRegistry.get("pg.notifications.received").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void reconnectsWithoutResyncWhenTheSourceKeepsChangesDuringOutages() {
+        changeSource = new ScriptedChangeSource(false);
+
+        changeSource.start();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 2);
+        assertThat(received).extracting(SequencedNotification::getParameter).containsExactly("first", "second");
+    }
+
+    /**
+     * Source dont la première connexion échoue à l'ouverture, la deuxième est perdue après un changement,
+     * et la troisième publie un changement puis reste ouverte.
+     */
+    private final class ScriptedChangeSource extends PostgreSQLChangeSource {
+
+        private final AtomicInteger connections = new AtomicInteger();
+        private final boolean losesChanges;
+
+        ScriptedChangeSource(boolean losesChanges) {
+            super(notificationChannels, TestFixtures.applicationProperties(), new ExecutionThreads(new MockEnvironment()),
+                    meterRegistry, "test-change-source");
+            this.losesChanges = losesChanges;
+        }
+
+        @Override
+        protected Connection openConnection() throws SQLException {
+            if (connections.incrementAndGet() == 1) {
+                throw new SQLException("database not started yet");
+            }
+            return mock(Connection.class);
+        }
+
+        @Override
+        protected void prepare(Connection connection) {
+            // Nothing to declare on a scripted connection
+        }
+
+        @Override
+        protected void stream(Connection connection) throws SQLException {
+            if (connections.get() == 2) {
+                publish(CHANNEL, 1, "first");
+                throw new SQLException("connection lost");
+            }
+            if (received.stream().noneMatch(notification -> "second".equals(notification.getParameter()))) {
+                publish(CHANNEL, 1, "second");
+            }
+            try {
+                Thread.sleep(Duration.ofSeconds(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        protected boolean losesChangesOnReconnect() {
+            return losesChanges;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package fr.example.spring.sse.infra;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.postgresql.PGConnection;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationConnection;
+import org.postgresql.replication.PGReplicationStream;
+import org.postgresql.replication.fluent.ChainedStreamBuilder;
+import org.postgresql.replication.fluent.logical.ChainedLogicalStreamBuilder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Décodage des messages {@code pgoutput}, construits octet par octet, et acquittement des transactions.
+ */
+class PostgreSQLReplicationServiceTest {
+
+    private static final String CHANNEL = "produit_quantite_change";
+    private static final int PRODUIT = 16_385;
+    private static final int OTHER_TABLE = 16_400;
+    private static final int XID = 731;
+    // 1 s après le 2000-01-01 UTC, l'origine des horodatages pgoutput
+    private static final long COMMITTED_AT_MICROS = 1_000_000;
+    private static final long COMMITTED_AT_MILLIS = 946_684_801_000L;
+    private static final LogSequenceNumber LSN = LogSequenceNumber.valueOf(4_242);
+    // Valeurs de colonne sans contenu : nulle, et TOAST inchangée
+    private static final byte[] NULL = { 'n' };
+    private static final byte[] UNCHANGED_TOAST = { 'u' };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final NotificationChannels notificationChannels = new NotificationChannels();
+    private final List<SequencedNotification> received = Collections.synchronizedList(new ArrayList<>());
+    private final PGReplicationStream replicationStream = mock(PGReplicationStream.class);
+    private final Connection connection = mock(Connection.class);
+    private final PostgreSQLReplicationService replicationService = new PostgreSQLReplicationService(notificationChannels,
+            TestFixtures.applicationProperties(), mock(DataSourceProperties.class), objectMapper,
+            new ExecutionThreads(new MockEnvironment()), new SimpleMeterRegistry());
+    private Disposable subscription;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        subscription = notificationChannels.listen(CHANNEL).subscribe(received::add);
+
+        // The publication and the slot already exist
+        final var resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        final var statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+        final var logicalStreamBuilder = mock(ChainedLogicalStreamBuilder.class, RETURNS_SELF);
+        when(logicalStreamBuilder.start()).thenReturn(replicationStream);
+        final var streamBuilder = mock(ChainedStreamBuilder.class);
+        when(streamBuilder.logical()).thenReturn(logicalStreamBuilder);
+        final var replicationConnection = mock(PGReplicationConnection.class);
+        when(replicationConnection.replicationStream()).thenReturn(streamBuilder);
+        final var pgConnection = mock(PGConnection.class);
+        when(pgConnection.getReplicationAPI()).thenReturn(replicationConnection);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(replicationStream.getLastReceiveLSN()).thenReturn(LSN);
+
+        replicationService.prepare(connection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+    }
+
+    @Test
+    void insertsOfATransactionArePublishedAsOneBatchOnCommit() throws Exception {
+        receive(begin(), produitRelation(),
+                insert(PRODUIT, text("1"), text("3000000000001"), text("Stylo"), text("5"), text("1.50")),
+                insert(PRODUIT, text("2"), text("3000000000002"), text("Cahier"), text("7"), text("3.20")));
+
+        // Nothing is published before the commit
+        assertThat(received).isEmpty();
+
+        receive(commit());
+
+        assertThat(received).singleElement().satisfies(notification -> {
+            assertThat(notification.getName()).isEqualTo(CHANNEL);
+            assertThat(notification.getPID()).isEqualTo(XID);
+            assertThat(objectMapper.readTree(notification.getParameter())).isEqualTo(objectMapper.readTree("""
+                    [{"ts": %1$d, "id": 1, "ean": "3000000000001", "nom": "Stylo", "quantite": 5, "prix": "1.50"},
+                     {"ts": %1$d, "id": 2, "ean": "3000000000002", "nom": "Cahier", "quantite": 7, "prix": "3.20"}]
+                    """.formatted(COMMITTED_AT_MILLIS)));
+        });
+        verify(replicationStream).setAppliedLSN(LSN);
+        verify(replicationStream).setFlushedLSN(LSN);
+    }
+
+    @Test
+    void updatesPublishTheNewVersionOfTheRow() throws Exception {
+        receive(begin(), produitRelation(),
+                update(PRODUIT, text("1"), text("3000000000001"), text("Stylo"), text("4"), text("1.50")),
+                commit());
+
+        assertThat(received).singleElement().satisfies(notification -> assertThat(objectMapper.readTree(notification.getParameter()))
+                .isEqualTo(objectMapper.readTree("""
+                        [{"ts": %d, "id": 1, "ean": "3000000000001", "nom": "Stylo", "quantite": 4, "prix": "1.50"}]
+                        """.formatted(COMMITTED_AT_MILLIS))));
+    }
+
+    @ParameterizedTest
+    @ValueSource(chars = { 'K', 'O' })
+    void updatesSkipTheOldVersionOfTheRow(char oldTupleKind) throws Exception {
+        final var oldTuple = tuple(text("1"), text("3000000000009"), text("Ancien nom"), text("1"), text("9.99"));
+        final var newTuple = tuple(text("1"), text("3000000000001"), text("Stylo"), text("4"), text("1.50"));
+
+        receive(begin(), produitRelation(), message(out -> {
+            out.writeByte('U');
+            out.writeInt(PRODUIT);
+            out.writeByte(oldTupleKind);
+            out.write(oldTuple);
+            out.writeByte('N');
+            out.write(newTuple);
+        }), commit());
+
+        assertThat(received).singleElement().satisfies(notification -> assertThat(objectMapper.readTree(notification.getParameter()))
+                .isEqualTo(objectMapper.readTree("""
+                        [{"ts": %d, "id": 1, "ean": "3000000000001", "nom": "Stylo", "quantite": 4, "prix": "1.50"}]
+                        """.formatted(COMMITTED_AT_MILLIS))));
+    }
+
+    @Test
+    void nullColumnsArePublishedAsNullAndUnchangedToastColumnsAreOmitted() throws Exception {
+        receive(begin(), produitRelation(),
+                update(PRODUIT, NULL, text("3000000000001"), text("Stylo"), text("4"), UNCHANGED_TOAST),
+                commit());
+
+        assertThat(received).singleElement().satisfies(notification -> assertThat(objectMapper.readTree(notification.getParameter()))
+                .isEqualTo(objectMapper.readTree("""
+                        [{"ts": %d, "id": null, "ean": "3000000000001", "nom": "Stylo", "quantite": 4}]
+                        """.formatted(COMMITTED_AT_MILLIS))));
+    }
+
+    @Test
+    void transactionsWithoutProductChangesAreAcknowledgedWithoutBeingPublished() throws Exception {
+        receive(begin(), relation(OTHER_TABLE, "cluster_member", "node_id", "url"),
+                insert(OTHER_TABLE, text("node-1"), text("http://node-1")),
+                // DELETE: no effect on the published quantities
+                message(out -> {
+                    out.writeByte('D');
+                    out.writeInt(PRODUIT);
+                    out.writeByte('K');
+                    out.write(tuple(text("1")));
+                }),
+                commit());
+
+        assertThat(received).isEmpty();
+        verify(replicationStream).setFlushedLSN(LSN);
+    }
+
+    @Test
+    void transactionsRoutedToNoSubscriberAreNotAcknowledged() throws Exception {
+        subscription.dispose();
+        receive(begin(), produitRelation(),
+                insert(PRODUIT, text("1"), text("3000000000001"), text("Stylo"), text("5"), text("1.50")));
+
+        assertThatThrownBy(() -> receive(commit()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Transaction " + XID);
+        verify(replicationStream, never()).setAppliedLSN(any());
+        verify(replicationStream, never()).setFlushedLSN(any());
+    }
+
+    /**
+     * Remet les messages un à un, comme s'ils étaient lus sur le flux de réplication.
+     */
+    private void receive(ByteBuffer... messages) throws SQLException {
+        for (ByteBuffer message : messages) {
+            when(replicationStream.read()).thenReturn(message);
+            replicationService.stream(connection);
+        }
+    }
+
+    private static ByteBuffer begin() {
+        return message(out -> {
+            out.writeByte('B');
+            out.writeLong(LSN.asLong());
+            out.writeLong(COMMITTED_AT_MICROS);
+            out.writeInt(XID);
+        });
+    }
+
+    private static ByteBuffer commit() {
+        return message(out -> {
+            out.writeByte('C');
+            out.writeByte(0);
+            out.writeLong(LSN.asLong());
+            out.writeLong(LSN.asLong());
+            out.writeLong(COMMITTED_AT_MICROS);
+        });
+    }
+
+    private static ByteBuffer produitRelation() {
+        return relation(PRODUIT, "produit", "id", "ean", "nom", "quantite", "prix");
+    }
+
+    private static ByteBuffer relation(int relationId, String name, String... columns) {
+        return message(out -> {
+            out.writeByte('R');
+            out.writeInt(relationId);
+            writeString(out, "public");
+            writeString(out, name);
+            // REPLICA IDENTITY DEFAULT
+            out.writeByte('d');
+            out.writeShort(columns.length);
+            for (String column : columns) {
+                out.writeByte(0);
+                writeString(out, column);
+                // Type et modificateur de type, ignorés par le décodeur
+                out.writeInt(25);
+                out.writeInt(-1);
+            }
+        });
+    }
+
+    private static ByteBuffer insert(int relationId, byte[]... values) {
+        return message(out -> {
+            out.writeByte('I');
+            out.writeInt(relationId);
+            out.writeByte('N');
+            out.write(tuple(values));
+        });
+    }
+
+    private static ByteBuffer update(int relationId, byte[]... values) {
+        return message(out -> {
+            out.writeByte('U');
+            out.writeInt(relationId);
+            out.writeByte('N');
+            out.write(tuple(values));
+        });
+    }
+
+    private static byte[] text(String value) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(5 + bytes.length).put((byte) 't').putInt(bytes.length).put(bytes).array();
+    }
+
+    private static byte[] tuple(byte[]... values) {
+        return message(out -> {
+            out.writeShort(values.length);
+            for (byte[] value : values) {
+                out.write(value);
+            }
+        }).array();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.writeByte(0);
+    }
+
+    private static ByteBuffer message(MessageWriter writer) {
+        final var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    @FunctionalInterface
+    private interface MessageWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,62 @@
+package fr.example.spring.sse.infra;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.config.ApplicationProperties.OverflowPolicy;
+import fr.example.spring.sse.product.model.ProductFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveSubscriberTest {
+
+    private final ReactiveSubscriber subscriber = new ReactiveSubscriber(ProductFilter.all(),
+            TestFixtures.sse(16, OverflowPolicy.DROP_OLDEST, 1024, 0),
+            new SseMetrics(new SimpleMeterRegistry(), OverflowPolicy.DROP_OLDEST));
+    // The socket demand is unbounded: every frame is written as soon as it is published
+    private final List<SseFrame> written = new CopyOnWriteArrayList<>();
+    private Disposable connection;
+
+    @BeforeEach
+    void setUp() {
+        connection = subscriber.frames().subscribe(written::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connection.dispose();
+    }
+
+    @Test
+    void heartbeatIsSkippedWhenDataWasWritten() {
+        final var frame = frame();
+
+        subscriber.offer(frame);
+        subscriber.heartbeat();
+        subscriber.heartbeat();
+
+        assertThat(written).containsExactly(frame, SseFrame.HEARTBEAT);
+    }
+
+    @Test
+    void heartbeatIsSentOnAnIdleConnection() {
+        subscriber.heartbeat();
+        subscriber.heartbeat();
+
+        assertThat(written).containsExactly(SseFrame.HEARTBEAT, SseFrame.HEARTBEAT);
+    }
+
+    private static SseFrame frame() {
+        final var product = TestFixtures.product("3000000000001", 1);
+        return SseFrame.encode(product, 1, 1, 0, "product-quantity-updated", product, new ObjectMapper());
+    }
+}
@@ -0,0 +1,95 @@
+package fr.example.spring.sse.infra;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplayBufferTest {
+
+    private static final long INITIAL = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReplayBuffer replayBuffer = new ReplayBuffer(3, INITIAL);
+
+    @Test
+    void emptyBufferReplaysEverythingAfterTheInitialSequence() {
+        assertThat(replayBuffer.newestSequence()).isEqualTo(INITIAL);
+        assertThat(replayBuffer.newestEventSequence()).isEqualTo(-1);
+        assertThat(replayBuffer.contains(INITIAL)).isTrue();
+
+        replayBuffer.append(frame(101, 1));
+
+        assertThat(sequences(replayBuffer.after(INITIAL))).containsExactly(101L);
+    }
+
+    @Test
+    void replaysTheFramesAfterAKnownSequence() {
+        append(101, 102, 103);
+
+        assertThat(replayBuffer.contains(102)).isTrue();
+        assertThat(sequences(replayBuffer.after(102))).containsExactly(103L);
+        assertThat(replayBuffer.newestSequence()).isEqualTo(103);
+    }
+
+    @Test
+    void forgetsTheOldestFramesOnceFull() {
+        append(101, 102, 103, 104);
+
+        assertThat(replayBuffer.contains(101)).isFalse();
+        assertThat(replayBuffer.contains(INITIAL)).isFalse();
+        assertThat(replayBuffer.contains(102)).isTrue();
+        assertThat(sequences(replayBuffer.after(INITIAL))).containsExactly(102L, 103L, 104L);
+    }
+
+    @Test
+    void unknownSequenceIsNotContained() {
+        append(101, 103);
+
+        assertThat(replayBuffer.contains(102)).isFalse();
+        assertThat(replayBuffer.contains(104)).isFalse();
+    }
+
+    @Test
+    void findsTheLastFrameReflectedByAnEvent() {
+        // Event 20 produced two frames
+        replayBuffer.append(frame(101, 10));
+        replayBuffer.append(frame(102, 20));
+        replayBuffer.append(frame(103, 20));
+
+        assertThat(replayBuffer.sequenceUpToEvent(20)).isEqualTo(103);
+        assertThat(replayBuffer.sequenceUpToEvent(15)).isEqualTo(101);
+        assertThat(replayBuffer.sequenceUpToEvent(5)).isEqualTo(INITIAL);
+    }
+
+    @Test
+    void cannotFindAnEventOlderThanTheBuffer() {
+        replayBuffer.append(frame(101, 10));
+        replayBuffer.append(frame(102, 20));
+        replayBuffer.append(frame(103, 30));
+        replayBuffer.append(frame(104, 40));
+
+        assertThat(replayBuffer.sequenceUpToEvent(10)).isEqualTo(-1);
+        assertThat(replayBuffer.sequenceUpToEvent(20)).isEqualTo(102);
+    }
+
+    private void append(long... sequences) {
+        for (long sequence : sequences) {
+            replayBuffer.append(frame(sequence, sequence));
+        }
+    }
+
+    private SseFrame frame(long sequence, long eventSequence) {
+        final var product = TestFixtures.product("A", 1);
+        return SseFrame.encode(product, sequence, eventSequence, 0, "product-quantity-updated", product, objectMapper);
+    }
+
+    private static List<Long> sequences(List<SseFrame> frames) {
+        return frames.stream().map(SseFrame::sequence).toList();
+    }
+}
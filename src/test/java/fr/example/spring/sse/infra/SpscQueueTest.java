@@ -0,0 +1,76 @@
+package fr.example.spring.sse.infra;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpscQueueTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        final var queue = new SpscQueue<Integer>(3);
+
+        for (var i = 0; i < 4; i++) {
+            assertThat(queue.offer(i)).isTrue();
+        }
+        assertThat(queue.offer(4)).isFalse();
+    }
+
+    @Test
+    void pollsInOfferOrder() {
+        final var queue = new SpscQueue<Integer>(4);
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.poll()).isNull();
+
+        queue.offer(1);
+        queue.offer(2);
+
+        assertThat(queue.isEmpty()).isFalse();
+        assertThat(queue.poll()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo(2);
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    @Test
+    void wrapsAroundOnceElementsArePolled() {
+        final var queue = new SpscQueue<Integer>(2);
+
+        for (var i = 0; i < 10; i++) {
+            assertThat(queue.offer(i)).isTrue();
+            assertThat(queue.poll()).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void transfersEveryElementInOrderBetweenTwoThreads() throws InterruptedException {
+        final var queue = new SpscQueue<Integer>(64);
+        final var count = 100_000;
+        final var consumed = new int[1];
+        final var ordered = new boolean[] { true };
+
+        final var consumer = Thread.ofPlatform().start(() -> {
+            while (consumed[0] < count) {
+                final var element = queue.poll();
+                if (element == null) {
+                    // Yield rather than spin: both threads may share a single core
+                    Thread.yield();
+                    continue;
+                }
+                ordered[0] &= element == consumed[0];
+                consumed[0]++;
+            }
+        });
+        for (var i = 0; i < count; i++) {
+            while (!queue.offer(i)) {
+                Thread.yield();
+            }
+        }
+
+        assertThat(consumer.join(Duration.ofSeconds(30))).isTrue();
+        assertThat(consumed[0]).isEqualTo(count);
+        assertThat(ordered[0]).isTrue();
+    }
+}
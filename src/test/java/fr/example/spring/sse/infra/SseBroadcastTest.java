@@ -0,0 +1,252 @@
+package fr.example.spring.sse.infra;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.config.ApplicationProperties.OverflowPolicy;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.model.ProductFilter;
+import fr.example.spring.sse.product.model.ProductSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chaque mise à jour doit être reçue exactement une fois par une connexion, par rejeu, dans un instantané
+ * ou par diffusion. Les produits reçus sont notés par leur code EAN suivi de leur quantité, qui vaut la séquence
+ * de l'événement.
+ */
+class SseBroadcastTest {
+
+    private static final int REPLAY_BUFFER_SIZE = 2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Sinks.Many<ProductEvent> events = Sinks.many().multicast().directBestEffort();
+    private final AtomicReference<ProductSnapshot> snapshot = new AtomicReference<>(new ProductSnapshot(0, -1, List.of()));
+    private final List<Disposable> connections = new ArrayList<>();
+    private HeartbeatScheduler heartbeatScheduler;
+    private SseBroadcast<Product> broadcast;
+
+    @BeforeEach
+    void setUp() {
+        final var sse = TestFixtures.sse(256, OverflowPolicy.DROP_OLDEST, REPLAY_BUFFER_SIZE, 0);
+        final var properties = TestFixtures.applicationProperties(sse);
+        final var executionThreads = new ExecutionThreads(new MockEnvironment());
+        heartbeatScheduler = new HeartbeatScheduler(properties, executionThreads);
+        broadcast = new SseBroadcast<>(events.asFlux(), "product-quantity-updated", Function.identity(), snapshot::get,
+                objectMapper, heartbeatScheduler, sse, new SseMetrics(new SimpleMeterRegistry(), sse.overflowPolicy()),
+                Schedulers.immediate(), executionThreads::thread);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connections.forEach(Disposable::dispose);
+        broadcast.close();
+        heartbeatScheduler.shutdown();
+    }
+
+    @Test
+    void newConnectionReceivesOnlyLaterUpdates() {
+        update(1, "A");
+        final var client = connect(null, ProductFilter.all(), false);
+        update(2, "B");
+
+        assertThat(client.received()).containsExactly("B2");
+    }
+
+    @Test
+    void reconnectionReplaysTheMissedUpdatesOnce() {
+        final var first = connect(null, ProductFilter.all(), false);
+        update(1, "A");
+        update(2, "B");
+
+        final var client = connect(first.idOf("A1"), ProductFilter.all(), false);
+        update(3, "A");
+
+        assertThat(client.received()).containsExactly("B2", "A3");
+    }
+
+    @Test
+    void replayIsFiltered() {
+        final var first = connect(null, ProductFilter.all(), false);
+        update(1, "A");
+        update(2, "B");
+
+        final var client = connect(first.idOf("A1"), eans("A"), false);
+        update(3, "A");
+
+        assertThat(client.received()).containsExactly("A3");
+    }
+
+    @Test
+    void tooOldLastEventIdSendsTheFilteredSnapshotThenTheUpdatesItDoesNotReflect() {
+        final var first = connect(null, ProductFilter.all(), false);
+        update(1, "A");
+        update(2, "B");
+        update(3, "A");
+        update(4, "A");
+        // The catalog has applied events up to 3 only: update 4 must follow the snapshot
+        snapshot.set(new ProductSnapshot(1, 3, List.of(TestFixtures.product("A", 3), TestFixtures.product("B", 2))));
+
+        final var client = connect(first.idOf("A1"), eans("A"), false);
+        update(5, "A");
+
+        assertThat(client.received()).containsExactly("snapshot[A3]", "A4", "A5");
+    }
+
+    @Test
+    void unknownLastEventIdBeforeAnyUpdateGetsAResumableSnapshot() {
+        final var client = connect("unknown", ProductFilter.all(), false);
+        final var snapshotId = client.idOf("snapshot[]");
+        update(1, "A");
+
+        final var resumed = connect(snapshotId, ProductFilter.all(), false);
+
+        assertThat(snapshotId).isNotEqualTo("-1");
+        assertThat(client.received()).containsExactly("snapshot[]", "A1");
+        assertThat(resumed.received()).containsExactly("A1");
+    }
+
+    @Test
+    void snapshotBehindTheBroadcastIsFollowedByTheUpdatesItDoesNotReflect() {
+        update(1, "A");
+        update(2, "B");
+        update(3, "A");
+        snapshot.set(new ProductSnapshot(1, 2, List.of(TestFixtures.product("A", 1), TestFixtures.product("B", 2))));
+
+        final var client = connect(null, ProductFilter.all(), true);
+        update(4, "B");
+
+        assertThat(client.received()).containsExactly("snapshot[A1,B2]", "A3", "B4");
+    }
+
+    @Test
+    void snapshotAheadOfTheBroadcastSkipsTheUpdatesItAlreadyReflects() {
+        update(1, "A");
+        // The catalog has applied events 2 and 3, not broadcast yet
+        snapshot.set(new ProductSnapshot(1, 3, List.of(TestFixtures.product("A", 3), TestFixtures.product("B", 2))));
+
+        final var client = connect(null, ProductFilter.all(), true);
+        update(2, "B");
+        update(3, "A");
+        update(4, "B");
+
+        assertThat(client.received()).containsExactly("snapshot[A3,B2]", "B4");
+    }
+
+    @Test
+    void snapshotIsFiltered() {
+        update(1, "A");
+        snapshot.set(new ProductSnapshot(1, 1, List.of(TestFixtures.product("A", 1), TestFixtures.product("B", 0))));
+
+        final var client = connect(null, eans("B"), true);
+        update(2, "A");
+        update(3, "B");
+
+        assertThat(client.received()).containsExactly("snapshot[B0]", "B3");
+    }
+
+    @Test
+    void reconnectionAfterASnapshotResumesFromIt() {
+        update(1, "A");
+        update(2, "B");
+        snapshot.set(new ProductSnapshot(1, 2, List.of(TestFixtures.product("A", 1), TestFixtures.product("B", 2))));
+        final var first = connect(null, ProductFilter.all(), true);
+        update(3, "A");
+
+        final var client = connect(first.idOf("snapshot[A1,B2]"), ProductFilter.all(), true);
+        update(4, "B");
+
+        assertThat(first.received()).containsExactly("snapshot[A1,B2]", "A3", "B4");
+        assertThat(client.received()).containsExactly("A3", "B4");
+    }
+
+    private void update(long sequence, String ean) {
+        events.tryEmitNext(new ProductEvent.Updated(sequence, List.of(TestFixtures.product(ean, (int) sequence)), 0));
+    }
+
+    private static ProductFilter eans(String... eans) {
+        return new ProductFilter(Set.of(eans), null, null);
+    }
+
+    private Client connect(String lastEventId, ProductFilter filter, boolean withSnapshot) {
+        final var client = new Client();
+        final var frames = withSnapshot ? broadcast.streamWithSnapshot(lastEventId, filter) : broadcast.stream(lastEventId, filter);
+        connections.add(frames.subscribe(client::receive));
+        return client;
+    }
+
+    /**
+     * Client SSE enregistrant les trames reçues, heartbeats exceptés.
+     */
+    private final class Client {
+
+        private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> ids = Collections.synchronizedList(new ArrayList<>());
+
+        void receive(byte[] bytes) {
+            String id = null;
+            String event = null;
+            JsonNode data = null;
+            for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+                if (line.startsWith("id:")) {
+                    id = line.substring(3);
+                } else if (line.startsWith("event:")) {
+                    event = line.substring(6);
+                } else if (line.startsWith("data:")) {
+                    data = readTree(line.substring(5));
+                }
+            }
+            if ("heartbeat".equals(event)) {
+                return;
+            }
+
+            if (data.isArray()) {
+                final var products = new ArrayList<String>();
+                data.forEach(product -> products.add(describe(product)));
+                received.add("snapshot[" + String.join(",", products) + "]");
+            } else {
+                received.add(describe(data));
+            }
+            ids.add(id);
+        }
+
+        List<String> received() {
+            return List.copyOf(received);
+        }
+
+        String idOf(String frame) {
+            return ids.get(received.indexOf(frame));
+        }
+
+        private static String describe(JsonNode product) {
+            return product.get("ean").asText() + product.get("quantite").asInt();
+        }
+
+        private JsonNode readTree(String json) {
+            try {
+                return objectMapper.readTree(json);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package fr.example.spring.sse.infra;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.config.ApplicationProperties.OverflowPolicy;
+import fr.example.spring.sse.product.model.ProductFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SseSubscriberTest {
+
+    private static final Pattern ID = Pattern.compile("^id:(\\d+)$", Pattern.MULTILINE);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ManualScheduler deliveryScheduler = new ManualScheduler();
+    private final RecordingSseEmitter emitter = new RecordingSseEmitter();
+
+    @Test
+    void dropOldestKeepsTheNewestFrames() {
+        final var subscriber = subscriber(OverflowPolicy.DROP_OLDEST, 2);
+
+        subscriber.offer(frame("A", 1));
+        subscriber.offer(frame("B", 2));
+        subscriber.offer(frame("C", 3));
+        deliveryScheduler.runAll();
+
+        assertThat(emitter.ids).containsExactly(2L, 3L);
+        assertThat(dropped()).isEqualTo(1);
+        assertThat(disconnected()).isZero();
+    }
+
+    @Test
+    void conflateKeepsTheLatestFrameOfEachProduct() {
+        final var subscriber = subscriber(OverflowPolicy.CONFLATE, 2);
+
+        subscriber.offer(frame("A", 1));
+        subscriber.offer(frame("B", 2));
+        subscriber.offer(frame("A", 3));
+        deliveryScheduler.runAll();
+
+        // A3 replaces A1 in place
+        assertThat(emitter.ids).containsExactly(3L, 2L);
+        assertThat(dropped()).isEqualTo(1);
+    }
+
+    @Test
+    void conflateDisconnectsRatherThanLosingTheLatestFrameOfAProduct() {
+        final var subscriber = subscriber(OverflowPolicy.CONFLATE, 2);
+
+        subscriber.offer(frame("A", 1));
+        subscriber.offer(frame("B", 2));
+        subscriber.offer(frame("C", 3));
+        deliveryScheduler.runAll();
+
+        assertThat(emitter.ids).isEmpty();
+        assertThat(emitter.completed).isTrue();
+        assertThat(disconnected()).isEqualTo(1);
+    }
+
+    @Test
+    void disconnectClosesTheConnectionWhenTheBufferIsFull() {
+        final var subscriber = subscriber(OverflowPolicy.DISCONNECT, 2);
+
+        subscriber.offer(frame("A", 1));
+        subscriber.offer(frame("B", 2));
+        subscriber.offer(frame("C", 3));
+        subscriber.offer(frame("D", 4));
+        deliveryScheduler.runAll();
+
+        assertThat(emitter.ids).isEmpty();
+        assertThat(emitter.completed).isTrue();
+        assertThat(disconnected()).isEqualTo(1);
+        assertThat(dropped()).isZero();
+    }
+
+    @Test
+    void replayedFramesAreWrittenFirstAndNeverDropped() {
+        final var subscriber = subscriber(OverflowPolicy.DROP_OLDEST, 1);
+
+        subscriber.replay(List.of(frame("A", 1), frame("B", 2), frame("C", 3)));
+        subscriber.offer(frame("D", 4));
+        subscriber.offer(frame("E", 5));
+        deliveryScheduler.runAll();
+
+        assertThat(emitter.ids).containsExactly(1L, 2L, 3L, 5L);
+        assertThat(dropped()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(OverflowPolicy.class)
+    void missedFramesDisconnectWhateverThePolicy(OverflowPolicy overflowPolicy) {
+        final var subscriber = subscriber(overflowPolicy, 2);
+
+        subscriber.offer(frame("A", 1));
+        subscriber.missed(3);
+        subscriber.offer(frame("A", 5));
+        deliveryScheduler.runAll();
+
+        // The client reconnects with its Last-Event-ID instead of silently keeping the state of frame 1
+        assertThat(emitter.ids).isEmpty();
+        assertThat(emitter.completed).isTrue();
+        assertThat(dropped()).isEqualTo(3);
+        assertThat(disconnected()).isEqualTo(1);
+    }
+
+    @Test
+    void heartbeatIsSkippedWhenDataWasWritten() {
+        final var subscriber = subscriber(OverflowPolicy.DROP_OLDEST, 2);
+
+        subscriber.offer(frame("A", 1));
+        deliveryScheduler.runAll();
+        subscriber.heartbeat();
+        deliveryScheduler.runAll();
+        subscriber.heartbeat();
+        deliveryScheduler.runAll();
+
+        assertThat(emitter.ids).containsExactly(1L);
+        assertThat(emitter.heartbeats).isEqualTo(1);
+    }
+
+    private SseSubscriber subscriber(OverflowPolicy overflowPolicy, int bufferSize) {
+        final var sse = TestFixtures.sse(bufferSize, overflowPolicy, 1024, 0);
+        return new SseSubscriber(emitter, ProductFilter.all(), sse, new SseMetrics(meterRegistry, overflowPolicy), deliveryScheduler);
+    }
+
+    private SseFrame frame(String ean, long sequence) {
+        final var product = TestFixtures.product(ean, 1);
+        return SseFrame.encode(product, sequence, sequence, 0, "product-quantity-updated", product, objectMapper);
+    }
+
+    private double dropped() {
+        return meterRegistry.get("sse.overflow.dropped").counter().count();
+    }
+
+    private double disconnected() {
+        return meterRegistry.get("sse.overflow.disconnected").counter().count();
+    }
+
+    /**
+     * Scheduler n'exécutant les tâches qu'à la demande du test : les trames s'accumulent dans le tampon
+     * de la connexion comme si le client était lent.
+     */
+    private static final class ManualScheduler implements Scheduler {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public Disposable schedule(Runnable task) {
+            tasks.add(task);
+            return () -> tasks.remove(task);
+        }
+
+        @Override
+        public Worker createWorker() {
+            throw new UnsupportedOperationException();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.removeFirst().run();
+            }
+        }
+    }
+
+    /**
+     * {@link SseEmitter} enregistrant les identifiants des trames écrites, sans connexion HTTP.
+     */
+    private static final class RecordingSseEmitter extends SseEmitter {
+
+        private final List<Long> ids = new ArrayList<>();
+        private int heartbeats;
+        private boolean completed;
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            for (DataWithMediaType item : items) {
+                final var text = new String((byte[]) item.getData(), StandardCharsets.UTF_8);
+                if (text.startsWith("event:heartbeat")) {
+                    heartbeats++;
+                }
+                ID.matcher(text).results().forEach(match -> ids.add(Long.parseLong(match.group(1))));
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
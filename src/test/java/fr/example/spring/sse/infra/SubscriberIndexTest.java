@@ -0,0 +1,91 @@
+package fr.example.spring.sse.infra;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductFilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubscriberIndexTest {
+
+    private final SubscriberIndex index = new SubscriberIndex();
+
+    private final StubSubscriber all = new StubSubscriber("all", ProductFilter.all());
+    private final StubSubscriber byEans = new StubSubscriber("eans", new ProductFilter(Set.of("3000000000001", "3000000000002"), null, null));
+    private final StubSubscriber byPrefix = new StubSubscriber("prefix", new ProductFilter(Set.of(), "30", null));
+    private final StubSubscriber byPrefixAndQuantity = new StubSubscriber("prefix-quantity", new ProductFilter(Set.of(), "3000", 5));
+    private final StubSubscriber byQuantity = new StubSubscriber("quantity", new ProductFilter(Set.of(), null, 10));
+
+    @Test
+    void findsOnlyTheInterestedSubscribers() {
+        List.of(all, byEans, byPrefix, byPrefixAndQuantity, byQuantity).forEach(index::add);
+
+        assertThat(interested(TestFixtures.product("3000000000001", 20))).containsExactlyInAnyOrder("all", "eans", "prefix");
+        assertThat(interested(TestFixtures.product("3000000000003", 3)))
+                .containsExactlyInAnyOrder("all", "prefix", "prefix-quantity", "quantity");
+        assertThat(interested(TestFixtures.product("4000000000001", 10))).containsExactly("all");
+        assertThat(interested(TestFixtures.product("4000000000001", 9))).containsExactlyInAnyOrder("all", "quantity");
+    }
+
+    @Test
+    void visitsASubscriberFollowingSeveralEansOnce() {
+        index.add(byEans);
+        index.add(all);
+
+        final var visited = new ArrayList<String>();
+        index.forEach(subscriber -> visited.add(subscriber.toString()));
+
+        assertThat(visited).containsExactlyInAnyOrder("all", "eans");
+    }
+
+    @Test
+    void removedSubscribersAreNoLongerFound() {
+        List.of(all, byEans, byPrefix, byPrefixAndQuantity, byQuantity).forEach(index::add);
+        List.of(byEans, byPrefix, byPrefixAndQuantity, byQuantity).forEach(index::remove);
+
+        assertThat(interested(TestFixtures.product("3000000000001", 1))).containsExactly("all");
+
+        final var visited = new ArrayList<String>();
+        index.forEach(subscriber -> visited.add(subscriber.toString()));
+        assertThat(visited).containsExactly("all");
+    }
+
+    private List<String> interested(Product product) {
+        final var found = new ArrayList<String>();
+        index.forEachInterested(product, subscriber -> found.add(subscriber.toString()));
+        return found;
+    }
+
+    /**
+     * Connexion réduite à son filtre.
+     */
+    private record StubSubscriber(String name, ProductFilter filter) implements FrameSubscriber {
+
+        @Override
+        public void offer(SseFrame frame) {
+        }
+
+        @Override
+        public void replay(List<SseFrame> frames) {
+        }
+
+        @Override
+        public void missed(int frames) {
+        }
+
+        @Override
+        public void complete() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
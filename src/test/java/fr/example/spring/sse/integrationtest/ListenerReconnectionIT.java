@@ -0,0 +1,97 @@
+package fr.example.spring.sse.integrationtest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import fr.example.spring.sse.SpringSSE;
+import fr.example.spring.sse.product.ProductListener;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+import reactor.core.Disposable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Reconnexion de la connexion d'écoute après sa terminaison par le serveur PostgreSQL.
+ */
+class ListenerReconnectionIT extends AbstractITSpring {
+
+    private static final String EAN = "9990000000011";
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+
+    @Autowired
+    private ProductListener productListener;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<ProductEvent> events = new CopyOnWriteArrayList<>();
+    private Disposable subscription;
+
+    @BeforeEach
+    void setUp() {
+        deleteProduct();
+        jdbcTemplate.update("INSERT INTO produit (ean, nom, quantite, prix) VALUES (?, 'Reconnexion', 0, 9.99)", EAN);
+        subscription = productListener.getProductUpdates().subscribe(events::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+        deleteProduct();
+    }
+
+    @Test
+    void terminatedListenerConnectionReconnectsListensAgainAndPublishesAResync() {
+        await().atMost(TIMEOUT).until(() -> listenerPids().size() == 1);
+        final var terminated = listenerPids().getFirst();
+
+        // The notifications are delivered before the termination: a missing trigger fails here, not after it
+        incrementQuantite();
+        awaitNotifiedQuantite(1);
+        // The resync published after the first connection must not satisfy the assertions below
+        events.clear();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT pg_terminate_backend(?)", Boolean.class, terminated)).isTrue();
+
+        await().atMost(TIMEOUT).untilAsserted(() -> {
+            assertThat(events).hasAtLeastOneElementOfType(ProductEvent.Resync.class);
+            assertThat(listenerPids()).singleElement().isNotEqualTo(terminated);
+        });
+
+        // The new connection listens again: a change made after the reconnection is notified
+        incrementQuantite();
+        awaitNotifiedQuantite(2);
+    }
+
+    private void incrementQuantite() {
+        jdbcTemplate.update("UPDATE produit SET quantite = quantite + 1 WHERE ean = ?", EAN);
+    }
+
+    private void awaitNotifiedQuantite(int quantite) {
+        await().atMost(TIMEOUT).untilAsserted(() -> assertThat(events)
+                .filteredOn(ProductEvent.Updated.class::isInstance)
+                .map(ProductEvent.Updated.class::cast)
+                .flatMap(ProductEvent.Updated::products)
+                .extracting(Product::ean, Product::quantite)
+                .contains(tuple(EAN, quantite)));
+    }
+
+    private List<Integer> listenerPids() {
+        return jdbcTemplate.queryForList("SELECT pid FROM pg_stat_activity WHERE application_name = ?",
+                Integer.class, SpringSSE.LISTENER_APPLICATION_NAME);
+    }
+
+    private void deleteProduct() {
+        jdbcTemplate.update("DELETE FROM produit WHERE ean = ?", EAN);
+    }
+}
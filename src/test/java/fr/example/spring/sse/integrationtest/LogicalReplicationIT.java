@@ -0,0 +1,116 @@
+package fr.example.spring.sse.integrationtest;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import fr.example.spring.sse.infra.PostgreSQLReplicationService;
+import fr.example.spring.sse.product.ProductListener;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+import reactor.core.Disposable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Lecture des changements par réplication logique, sur une base PostgreSQL réelle configurée avec
+ * {@code wal_level=logical}.
+ * Le slot et la publication sont propres à ce test et supprimés à la fin : un slot abandonné retiendrait
+ * le journal de transactions. Le schéma n'est pas recréé, pour ne pas supprimer la table utilisée par le contexte
+ * LISTEN/NOTIFY des autres tests d'intégration.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@DirtiesContext
+@TestPropertySource(properties = {
+        "app.change-source=logical-replication",
+        "app.replication.slot-name=" + LogicalReplicationIT.SLOT,
+        "app.replication.publication-name=" + LogicalReplicationIT.PUBLICATION,
+        "app.replication.status-interval=1s",
+        "spring.jpa.hibernate.ddl-auto=update",
+        "spring.sql.init.mode=never"
+})
+class LogicalReplicationIT extends AbstractITSpring {
+
+    static final String SLOT = "spring_sse_it";
+    static final String PUBLICATION = "spring_sse_it_produit";
+    private static final String EAN = "9990000000021";
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+
+    @Autowired
+    private ProductListener productListener;
+
+    @Autowired
+    private PostgreSQLReplicationService replicationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<ProductEvent> events = new CopyOnWriteArrayList<>();
+    private Disposable subscription;
+
+    @BeforeEach
+    void setUp() {
+        deleteProduct();
+        subscription = productListener.getProductUpdates().subscribe(events::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+        deleteProduct();
+    }
+
+    @AfterAll
+    void dropSlotAndPublication() throws SQLException {
+        // The slot can only be dropped once the replication connection is closed
+        replicationService.cleanup();
+        await().atMost(TIMEOUT).until(() -> jdbcTemplate.queryForList(
+                "SELECT 1 FROM pg_replication_slots WHERE slot_name = ? AND active", SLOT).isEmpty());
+        jdbcTemplate.queryForList("SELECT pg_drop_replication_slot(slot_name) FROM pg_replication_slots WHERE slot_name = ?", SLOT);
+        jdbcTemplate.execute("DROP PUBLICATION IF EXISTS " + PUBLICATION);
+    }
+
+    @Test
+    void committedChangesArePublishedWithTheirPriceThenAcknowledged() {
+        await().atMost(TIMEOUT).until(() -> !jdbcTemplate.queryForList(
+                "SELECT 1 FROM pg_replication_slots WHERE slot_name = ? AND active", SLOT).isEmpty());
+        final var acknowledged = confirmedFlushLsn();
+
+        jdbcTemplate.update("INSERT INTO produit (ean, nom, quantite, prix) VALUES (?, 'Réplication', 1, 4.50)", EAN);
+        jdbcTemplate.update("UPDATE produit SET quantite = quantite + 2 WHERE ean = ?", EAN);
+
+        // The price comes with the row: no query is needed to complete the event
+        await().atMost(TIMEOUT).untilAsserted(() -> assertThat(events)
+                .filteredOn(ProductEvent.Updated.class::isInstance)
+                .map(ProductEvent.Updated.class::cast)
+                .flatMap(ProductEvent.Updated::products)
+                .extracting(Product::ean, Product::quantite, product -> product.prix().toPlainString())
+                .containsSubsequence(tuple(EAN, 1, "4.50"), tuple(EAN, 3, "4.50")));
+
+        // Once routed, the transactions are acknowledged: the slot will not send them again
+        await().atMost(TIMEOUT).until(() -> jdbcTemplate.queryForObject("SELECT ?::pg_lsn > ?::pg_lsn",
+                Boolean.class, confirmedFlushLsn(), acknowledged));
+    }
+
+    private String confirmedFlushLsn() {
+        return jdbcTemplate.queryForObject("SELECT confirmed_flush_lsn::text FROM pg_replication_slots WHERE slot_name = ?",
+                String.class, SLOT);
+    }
+
+    private void deleteProduct() {
+        jdbcTemplate.update("DELETE FROM produit WHERE ean = ?", EAN);
+    }
+}
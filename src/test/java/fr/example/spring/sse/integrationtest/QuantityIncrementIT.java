@@ -0,0 +1,131 @@
+package fr.example.spring.sse.integrationtest;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.example.spring.sse.product.ProductUpdater;
+import fr.example.spring.sse.product.repositories.ProduitRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Incréments concurrents du stock d'un même produit, sur une base PostgreSQL réelle.
+ */
+class QuantityIncrementIT extends AbstractITSpring {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantityIncrementIT.class);
+
+    private static final String HOT_EAN = "9990000000001";
+    private static final String READ_MODIFY_WRITE_EAN = "9990000000002";
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 250;
+
+    @Autowired
+    private ProductUpdater productUpdater;
+
+    @Autowired
+    private ProduitRepository produitRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        deleteProducts();
+        jdbcTemplate.update("INSERT INTO produit (ean, nom, quantite, prix) VALUES (?, 'Hot SKU', 0, 9.99), (?, 'Hot SKU', 0, 9.99)",
+                HOT_EAN, READ_MODIFY_WRITE_EAN);
+    }
+
+    @AfterEach
+    void deleteProducts() {
+        jdbcTemplate.update("DELETE FROM produit WHERE ean IN (?, ?)", HOT_EAN, READ_MODIFY_WRITE_EAN);
+    }
+
+    @Test
+    void concurrentIncrementsOfAHotProductAreNeverLost() throws Exception {
+        concurrently(() -> productUpdater.updateQuantity(HOT_EAN, 1));
+
+        assertThat(quantite(HOT_EAN)).isEqualTo(THREADS * INCREMENTS);
+    }
+
+    @Test
+    void incrementRunsInItsOwnTransactionWithoutACaller() {
+        final var produit = produitRepository.incrementQuantite(HOT_EAN, 3, false);
+
+        assertThat(produit).hasValueSatisfying(updated -> assertThat(updated.getQuantite()).isEqualTo(3));
+        assertThat(produitRepository.incrementQuantite(HOT_EAN, -4, false)).isEmpty();
+        assertThat(quantite(HOT_EAN)).isEqualTo(3);
+    }
+
+    @Test
+    void atomicIncrementIsComparedWithTheFormerReadModifyWrite() throws Exception {
+        // The former implementation: read the product, add the quantity in Java, then write it back
+        final var readModifyWrite = concurrently(() -> transactionTemplate.executeWithoutResult(status -> {
+            final var produit = produitRepository.findByEan(READ_MODIFY_WRITE_EAN).orElseThrow();
+            produitRepository.save(produit.updateQuantite(1));
+        }));
+        final var atomic = concurrently(() -> productUpdater.updateQuantity(HOT_EAN, 1));
+
+        final var total = THREADS * INCREMENTS;
+        log.info("{} concurrent increments of a single product: UPDATE ... RETURNING {} increments/s, {} lost; "
+                        + "read-modify-write {} increments/s, {} lost",
+                total,
+                throughput(total, atomic), total - quantite(HOT_EAN),
+                throughput(total, readModifyWrite), total - quantite(READ_MODIFY_WRITE_EAN));
+        assertThat(quantite(HOT_EAN)).isEqualTo(total);
+        assertThat(quantite(READ_MODIFY_WRITE_EAN)).isLessThanOrEqualTo(total);
+    }
+
+    /**
+     * Exécute l'incrément {@value #INCREMENTS} fois sur chacun des {@value #THREADS} threads, démarrés ensemble.
+     *
+     * @return la durée totale en nanosecondes
+     */
+    private static long concurrently(Runnable increment) throws InterruptedException, ExecutionException, TimeoutException {
+        final var start = new CountDownLatch(1);
+        try (var executor = Executors.newFixedThreadPool(THREADS)) {
+            final var futures = new ArrayList<Future<?>>();
+            for (var thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (var i = 0; i < INCREMENTS; i++) {
+                        increment.run();
+                    }
+                    return null;
+                }));
+            }
+
+            final var startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+            return System.nanoTime() - startedAt;
+        }
+    }
+
+    private int quantite(String ean) {
+        return jdbcTemplate.queryForObject("SELECT quantite FROM produit WHERE ean = ?", Integer.class, ean);
+    }
+
+    private static long throughput(int increments, long nanos) {
+        return increments * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+}
@@ -0,0 +1,64 @@
+package fr.example.spring.sse.product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.product.model.QuantityUpdate;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+import io.vavr.control.Try;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductBulkUpdaterTest {
+
+    private static final String EAN = "3000000000001";
+
+    private final ProduitBatchRepository produitBatchRepository = mock(ProduitBatchRepository.class);
+    private final ProductBulkUpdater productBulkUpdater = new ProductBulkUpdater(produitBatchRepository, TestFixtures.applicationProperties());
+
+    @Test
+    void sumsTheQuantitiesOfAProductInASingleStatement() {
+        when(produitBatchRepository.incrementQuantites(Map.of(EAN, 3), true)).thenReturn(List.of(TestFixtures.produit(EAN, 13)));
+
+        final var results = productBulkUpdater.updateQuantities(List.of(new QuantityUpdate(EAN, 1), new QuantityUpdate(EAN, 2)));
+
+        assertThat(results).allSatisfy(result -> assertThat(result.get().quantite()).isEqualTo(13));
+    }
+
+    @Test
+    void startsANewBatchRatherThanOverflowingTheQuantityOfAProduct() {
+        when(produitBatchRepository.incrementQuantites(anyMap(), anyBoolean())).thenReturn(List.of(TestFixtures.produit(EAN, 0)));
+
+        productBulkUpdater.updateQuantities(List.of(
+                new QuantityUpdate(EAN, Integer.MAX_VALUE),
+                new QuantityUpdate(EAN, 1),
+                new QuantityUpdate(EAN, -1)));
+
+        verify(produitBatchRepository).incrementQuantites(Map.of(EAN, Integer.MAX_VALUE), true);
+        verify(produitBatchRepository).incrementQuantites(Map.of(EAN, 0), true);
+    }
+
+    @Test
+    void answersARejectedRequestInPlaceWithoutApplyingIt() {
+        when(produitBatchRepository.incrementQuantites(Map.of(EAN, 2), true)).thenReturn(List.of(TestFixtures.produit(EAN, 12)));
+        final var invalid = new IllegalArgumentException("invalid");
+        final var results = new ArrayList<String>();
+
+        productBulkUpdater.updateQuantities(
+                Stream.of(2, 0, 2),
+                quantity -> quantity == 0 ? Try.failure(invalid) : Try.success(new QuantityUpdate(EAN, quantity / 2)),
+                (quantity, result) -> results.add(quantity + ":" + result.fold(Throwable::getMessage, product -> String.valueOf(product.quantite()))));
+
+        assertThat(results).containsExactly("2:12", "0:invalid", "2:12");
+    }
+}
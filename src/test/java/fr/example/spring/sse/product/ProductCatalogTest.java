@@ -0,0 +1,144 @@
+package fr.example.spring.sse.product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.model.ProductSnapshot;
+import fr.example.spring.sse.product.repositories.Produit;
+import fr.example.spring.sse.product.repositories.ProduitCursorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductCatalogTest {
+
+    private final Sinks.Many<ProductEvent> notified = Sinks.many().multicast().directBestEffort();
+    private final ProduitCursorRepository produitCursorRepository = mock(ProduitCursorRepository.class);
+    private final List<Produit> database = new ArrayList<>();
+    private ProductCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            final Consumer<Produit> action = invocation.getArgument(2);
+            database.forEach(action);
+            return null;
+        }).when(produitCursorRepository).forEachAfter(eq(0), isNull(), any());
+        final var productListener = mock(ProductListener.class);
+        when(productListener.getProductUpdates()).thenReturn(notified.asFlux());
+        catalog = new ProductCatalog(productListener, produitCursorRepository, TestFixtures.applicationProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void loadsAnImmutableSnapshotSortedByEan() {
+        database.addAll(List.of(TestFixtures.produit("3000000000003", 3), TestFixtures.produit("3000000000001", 1)));
+
+        final var snapshot = catalog.snapshot();
+
+        assertThat(snapshot.products()).extracting(Product::ean).containsExactly("3000000000001", "3000000000003");
+        assertThat(snapshot.sequence()).isEqualTo(-1);
+        assertThatThrownBy(() -> snapshot.products().add(TestFixtures.product("3000000000002", 2)))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void readsReturnThePublishedSnapshotWithoutRebuildingIt() {
+        database.add(TestFixtures.produit("3000000000001", 1));
+
+        assertThat(catalog.snapshot()).isSameAs(catalog.snapshot());
+    }
+
+    @Test
+    void appliedUpdatesPublishANewVersionCarryingTheirSequence() {
+        database.addAll(List.of(TestFixtures.produit("3000000000001", 1), TestFixtures.produit("3000000000003", 3)));
+        final var loaded = catalog.snapshot();
+
+        notified.tryEmitNext(new ProductEvent.Updated(7, List.of(
+                TestFixtures.product("3000000000003", 30),
+                TestFixtures.product("3000000000002", 20)), 0));
+        final var updated = catalog.snapshot();
+
+        assertThat(updated.version()).isGreaterThan(loaded.version());
+        assertThat(updated.sequence()).isEqualTo(7);
+        assertThat(updated.products()).extracting(Product::ean, Product::quantite).containsExactly(
+                tuple("3000000000001", 1),
+                tuple("3000000000002", 20),
+                tuple("3000000000003", 30));
+        // The previous snapshot is never modified
+        assertThat(loaded.products()).extracting(Product::quantite).containsExactly(1, 3);
+    }
+
+    @Test
+    void updatesAppliedBetweenTwoReadsAreBuiltIntoASingleSnapshot() {
+        database.add(TestFixtures.produit("3000000000001", 1));
+        final var loaded = catalog.snapshot();
+
+        notified.tryEmitNext(new ProductEvent.Updated(5, List.of(TestFixtures.product("3000000000001", 2)), 0));
+        notified.tryEmitNext(new ProductEvent.Updated(6, List.of(TestFixtures.product("3000000000002", 3)), 0));
+        final var updated = catalog.snapshot();
+
+        assertThat(updated.version()).isGreaterThan(loaded.version());
+        assertThat(updated.sequence()).isEqualTo(6);
+        assertThat(updated.products()).extracting(Product::ean, Product::quantite).containsExactly(
+                tuple("3000000000001", 2),
+                tuple("3000000000002", 3));
+        assertThat(catalog.snapshot()).isSameAs(updated);
+    }
+
+    @Test
+    void subscribersReceiveAnUpdateOnceTheSnapshotReflectsIt() {
+        database.add(TestFixtures.produit("3000000000001", 1));
+        catalog.snapshot();
+        final var observed = new CopyOnWriteArrayList<ProductSnapshot>();
+        catalog.getProductUpdates().subscribe(event -> observed.add(catalog.snapshot()));
+
+        notified.tryEmitNext(new ProductEvent.Updated(4, List.of(TestFixtures.product("3000000000001", 5)), 0));
+
+        assertThat(observed).singleElement().satisfies(snapshot -> {
+            assertThat(snapshot.sequence()).isEqualTo(4);
+            assertThat(snapshot.products()).extracting(Product::quantite).containsExactly(5);
+        });
+    }
+
+    @Test
+    void productsNotifiedBeforeTheLoadAreKept() {
+        database.addAll(List.of(TestFixtures.produit("3000000000001", 1), TestFixtures.produit("3000000000002", 2)));
+
+        notified.tryEmitNext(new ProductEvent.Updated(3, List.of(TestFixtures.product("3000000000002", 9)), 0));
+        final var snapshot = catalog.snapshot();
+
+        assertThat(snapshot.sequence()).isEqualTo(3);
+        assertThat(snapshot.products()).extracting(Product::quantite).containsExactly(1, 9);
+    }
+
+    @Test
+    void resyncReloadsTheCatalogUpToItsSequence() {
+        database.addAll(List.of(TestFixtures.produit("3000000000001", 1), TestFixtures.produit("3000000000002", 2)));
+        final var loaded = catalog.snapshot();
+        database.removeFirst();
+
+        notified.tryEmitNext(new ProductEvent.Resync(9));
+        final var reloaded = catalog.snapshot();
+
+        assertThat(reloaded.version()).isGreaterThan(loaded.version());
+        assertThat(reloaded.sequence()).isEqualTo(9);
+        assertThat(reloaded.products()).extracting(Product::ean).containsExactly("3000000000002");
+    }
+}
@@ -0,0 +1,90 @@
+package fr.example.spring.sse.product;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.infra.ExecutionThreads;
+import fr.example.spring.sse.infra.NotificationChannels;
+import fr.example.spring.sse.infra.SequencedNotification;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductListenerTest {
+
+    private static final String CHANNEL = "produit_quantite_change";
+    private static final String EAN = "3000000000001";
+
+    private final Sinks.Many<SequencedNotification> quantityChanges = Sinks.many().multicast().directBestEffort();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ProductEvent> received = new CopyOnWriteArrayList<>();
+    private ProductPriceCache productPriceCache;
+    private ProductPriceLoader productPriceLoader;
+    private Disposable subscription;
+
+    @BeforeEach
+    void setUp() {
+        final var properties = TestFixtures.applicationProperties();
+        final var notificationChannels = mock(NotificationChannels.class);
+        when(notificationChannels.listen(CHANNEL)).thenReturn(quantityChanges.asFlux());
+        when(notificationChannels.listen(properties.priceCache().invalidationChannel())).thenReturn(Flux.never());
+
+        productPriceCache = new ProductPriceCache(mock(ProduitBatchRepository.class), properties);
+        productPriceLoader = new ProductPriceLoader(productPriceCache, properties, new ExecutionThreads(new MockEnvironment()),
+                new SimpleMeterRegistry());
+        final var productListener = new ProductListener(notificationChannels,
+                new ProductNotificationMapper(new ObjectMapper(), productPriceCache), productPriceCache, productPriceLoader,
+                properties, meterRegistry);
+        subscription = productListener.getProductUpdates().subscribe(received::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+        productPriceLoader.shutdown();
+    }
+
+    @Test
+    void aMalformedNotificationIsReplacedByAResyncWithoutStoppingTheFlow() {
+        productPriceCache.put(EAN, new BigDecimal("19.99"));
+
+        quantityChanges.tryEmitNext(notification(1, "[{\"ean\": \"3000000000001\", \"nom\": \"Stylo\", \"quantite\": 5}, 42]"));
+        quantityChanges.tryEmitNext(notification(2, "[{\"ean\": \"3000000000001\", \"nom\": \"Stylo\", \"quantite\": 6, \"prix\": \"24.90\"}]"));
+
+        assertThat(received).hasSize(2);
+        assertThat(received.getFirst()).isEqualTo(new ProductEvent.Resync(1));
+        assertThat(received.get(1)).isInstanceOf(ProductEvent.Updated.class).extracting(ProductEvent::sequence).isEqualTo(2L);
+        assertThat(meterRegistry.get("pg.notifications.mapping.failures").tag("channel", CHANNEL).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aMalformedNotificationClearsThePriceCache() {
+        productPriceCache.put(EAN, new BigDecimal("19.99"));
+
+        quantityChanges.tryEmitNext(notification(1, "not json"));
+
+        assertThat(received).containsExactly(new ProductEvent.Resync(1));
+        assertThat(productPriceCache.cached(EAN)).isNull();
+    }
+
+    private static SequencedNotification notification(long sequence, String payload) {
+        return new SequencedNotification(sequence, CHANNEL, 0, payload, false);
+    }
+}
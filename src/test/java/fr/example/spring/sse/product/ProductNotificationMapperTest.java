@@ -0,0 +1,143 @@
+package fr.example.spring.sse.product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.infra.SequencedNotification;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+class ProductNotificationMapperTest {
+
+    private static final String CHANNEL = "produit_quantite_change";
+    private static final String EAN = "3000000000001";
+    private static final String OTHER_EAN = "3000000000002";
+    private static final BigDecimal PRIX = new BigDecimal("19.99");
+
+    private final ProductPriceCache productPriceCache = new ProductPriceCache(mock(ProduitBatchRepository.class),
+            TestFixtures.applicationProperties());
+    private final ProductNotificationMapper mapper = new ProductNotificationMapper(new ObjectMapper(), productPriceCache);
+
+    @Test
+    void decodesEveryRowOfABatchInOrder() {
+        productPriceCache.put(EAN, PRIX);
+        productPriceCache.put(OTHER_EAN, PRIX);
+
+        final var pending = decode(7, """
+                [{"id": 1, "ean": "3000000000001", "nom": "Stylo", "quantite": 5, "ts": 1760000000000},
+                 {"id": 2, "ean": "3000000000002", "nom": "Cahier", "quantite": -2, "ts": 1760000000001}]
+                """);
+
+        assertThat(pending.isComplete()).isTrue();
+        assertThat(pending.event()).isInstanceOfSatisfying(ProductEvent.Updated.class, updated -> {
+            assertThat(updated.sequence()).isEqualTo(7);
+            // The batch carries the time of its last row
+            assertThat(updated.changedAt()).isEqualTo(1760000000001L);
+            assertThat(updated.products()).extracting(Product::ean, Product::nom, Product::quantite, Product::prix).containsExactly(
+                    tuple(EAN, "Stylo", 5, PRIX),
+                    tuple(OTHER_EAN, "Cahier", -2, PRIX));
+        });
+    }
+
+    @Test
+    void acceptsASingleProductAsABatchOfOne() {
+        productPriceCache.put(EAN, PRIX);
+
+        final var pending = decode(1, """
+                {"ean": "3000000000001", "nom": "Stylo", "quantite": 5}
+                """);
+
+        assertThat(products(pending)).extracting(Product::ean).containsExactly(EAN);
+        assertThat(((ProductEvent.Updated) pending.event()).changedAt()).isZero();
+    }
+
+    @Test
+    void ignoresUnknownFieldsWhateverTheirValue() {
+        productPriceCache.put(EAN, PRIX);
+
+        final var pending = decode(1, """
+                [{"ean": "3000000000001", "extra": {"nested": [1, {"nom": "Ignoré"}]}, "nom": "Stylo",
+                  "actif": true, "tags": ["a", "b"], "quantite": 5, "commentaire": null}]
+                """);
+
+        assertThat(products(pending)).extracting(Product::ean, Product::nom, Product::quantite).containsExactly(tuple(EAN, "Stylo", 5));
+    }
+
+    @Test
+    void aTransmittedPriceIsUsedAndCached() {
+        productPriceCache.put(EAN, PRIX);
+
+        final var pending = decode(1, """
+                [{"ean": "3000000000001", "nom": "Stylo", "quantite": 5, "prix": "24.90"}]
+                """);
+
+        assertThat(pending.isComplete()).isTrue();
+        assertThat(products(pending)).extracting(Product::prix).containsExactly(new BigDecimal("24.90"));
+        assertThat(productPriceCache.cached(EAN)).isEqualTo(new BigDecimal("24.90"));
+    }
+
+    @Test
+    void anAbsentPriceIsReadFromTheCacheOrLeftToLoad() {
+        productPriceCache.put(EAN, PRIX);
+
+        final var pending = decode(1, """
+                [{"ean": "3000000000001", "nom": "Stylo", "quantite": 5},
+                 {"ean": "3000000000002", "nom": "Cahier", "quantite": 1, "prix": null}]
+                """);
+
+        assertThat(products(pending)).extracting(Product::prix).containsExactly(PRIX, BigDecimal.ZERO);
+        assertThat(pending.missing()).containsExactly(1);
+        assertThat(pending.missingEans()).containsExactly(OTHER_EAN);
+    }
+
+    @Test
+    void aResyncSignalIsDecodedAsAResync() {
+        final var pending = mapper.decode(SequencedNotification.resync(9, CHANNEL));
+
+        assertThat(pending.event()).isEqualTo(new ProductEvent.Resync(9));
+        assertThat(pending.isComplete()).isTrue();
+    }
+
+    /**
+     * Le {@link ProductListener} remplace une notification refusée par un signal de resynchronisation.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "42",
+            "\"produit\"",
+            "[{\"ean\": \"3000000000001\", \"nom\": \"Stylo\", \"quantite\": 5}",
+            "[{\"ean\": \"3000000000001\", \"nom\": \"Stylo\", \"quantite\": 5}, 42]",
+            "[{\"ean\": \"3000000000001\", \"nom\": \"Stylo\", \"quantite\": 5}] []",
+            "{\"ean\": \"3000000000001\", \"nom\": \"Stylo\"} {\"ean\": \"3000000000002\", \"nom\": \"Cahier\"}",
+            "[{\"nom\": \"Stylo\", \"quantite\": 5}]",
+            "[{\"ean\": null, \"nom\": \"Stylo\", \"quantite\": 5}]",
+            "[{\"ean\": \"3000000000001\", \"nom\": null, \"quantite\": 5}]",
+            "[{\"ean\": \"3000000000001\", \"nom\": \"Stylo\", \"quantite\": \"beaucoup\"}]",
+            "[{\"ean\": \"3000000000001\", \"nom\": \"Stylo\", \"quantite\": 5, \"prix\": \"gratuit\"}]"
+    })
+    void rejectsAMalformedNotification(String payload) {
+        assertThatThrownBy(() -> decode(1, payload)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private PendingEvent decode(long sequence, String payload) {
+        return mapper.decode(new SequencedNotification(sequence, CHANNEL, 0, payload, false));
+    }
+
+    private static List<Product> products(PendingEvent pending) {
+        return ((ProductEvent.Updated) pending.event()).products();
+    }
+}
@@ -0,0 +1,65 @@
+package fr.example.spring.sse.product;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductPriceCacheTest {
+
+    private static final String EAN = "3000000000001";
+    private static final BigDecimal OLD_PRICE = new BigDecimal("19.99");
+    private static final BigDecimal NEW_PRICE = new BigDecimal("24.99");
+
+    private final ProduitBatchRepository produitBatchRepository = mock(ProduitBatchRepository.class);
+    private final ProductPriceCache cache = new ProductPriceCache(produitBatchRepository, TestFixtures.applicationProperties());
+
+    @Test
+    void loadsMissingPricesOnceAndKeepsThem() {
+        when(produitBatchRepository.findPrices(anyCollection())).thenReturn(Map.of(EAN, OLD_PRICE));
+
+        assertThat(cache.prices(List.of(EAN))).containsExactly(Map.entry(EAN, OLD_PRICE));
+        assertThat(cache.cached(EAN)).isEqualTo(OLD_PRICE);
+    }
+
+    @Test
+    void keepsAPriceNotifiedWhileTheQueryIsRunning() {
+        when(produitBatchRepository.findPrices(anyCollection())).thenAnswer(invocation -> {
+            cache.put(EAN, NEW_PRICE);
+            return Map.of(EAN, OLD_PRICE);
+        });
+
+        assertThat(cache.prices(List.of(EAN))).containsExactly(Map.entry(EAN, NEW_PRICE));
+        assertThat(cache.cached(EAN)).isEqualTo(NEW_PRICE);
+    }
+
+    @Test
+    void doesNotKeepPricesLoadedWhileTheCacheIsCleared() {
+        when(produitBatchRepository.findPrices(anyCollection())).thenAnswer(invocation -> {
+            cache.clear();
+            return Map.of(EAN, OLD_PRICE);
+        });
+
+        assertThat(cache.prices(List.of(EAN))).containsExactly(Map.entry(EAN, OLD_PRICE));
+        assertThat(cache.cached(EAN)).isNull();
+    }
+
+    @Test
+    void servesCachedPricesWithoutQuery() {
+        cache.put(EAN, NEW_PRICE);
+
+        assertThat(cache.prices(List.of(EAN))).containsExactly(Map.entry(EAN, NEW_PRICE));
+        verify(produitBatchRepository, never()).findPrices(anyCollection());
+    }
+}
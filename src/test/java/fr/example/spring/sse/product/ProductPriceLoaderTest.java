@@ -0,0 +1,145 @@
+package fr.example.spring.sse.product;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.infra.ExecutionThreads;
+import fr.example.spring.sse.infra.SequencedNotification;
+import fr.example.spring.sse.product.model.ProductEvent;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductPriceLoaderTest {
+
+    private static final BigDecimal PRIX = new BigDecimal("19.99");
+
+    private final ProduitBatchRepository produitBatchRepository = mock(ProduitBatchRepository.class);
+    private final List<String> queryThreads = new CopyOnWriteArrayList<>();
+    private final List<ProductEvent> received = new CopyOnWriteArrayList<>();
+    private final Sinks.Many<PendingEvent> decoded = Sinks.many().multicast().directBestEffort();
+    private ProductPriceCache productPriceCache;
+    private ProductNotificationMapper mapper;
+    private ProductPriceLoader loader;
+    private Disposable subscription;
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+        loader.shutdown();
+    }
+
+    @Test
+    void loadsTheMissingPricesOfABurstWithOneQueryPerWindow() {
+        start(Duration.ofMillis(500));
+
+        IntStream.range(0, 200).forEach(i -> decoded.tryEmitNext(decode(i, ean(i))));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 200);
+        verify(produitBatchRepository, times(1)).findPrices(anyCollection());
+        assertThat(queryThreads).allMatch(name -> name.startsWith("price-loader"));
+        assertThat(received).extracting(ProductEvent::sequence).containsExactlyElementsOf(IntStream.range(0, 200).mapToObj(i -> (long) i).toList());
+        assertThat(received).allSatisfy(event -> assertThat(((ProductEvent.Updated) event).products().getFirst().prix()).isEqualTo(PRIX));
+    }
+
+    @Test
+    void publishesCachedEventsImmediatelyWithoutQuery() {
+        start(Duration.ofMillis(500));
+        productPriceCache.put(ean(1), PRIX);
+
+        decoded.tryEmitNext(decode(1, ean(1)));
+
+        assertThat(received).hasSize(1);
+        verify(produitBatchRepository, never()).findPrices(anyCollection());
+    }
+
+    @Test
+    void keepsACachedEventBehindAnEventWaitingForItsPrice() {
+        start(Duration.ofMillis(200));
+        productPriceCache.put(ean(2), PRIX);
+
+        decoded.tryEmitNext(decode(1, ean(1)));
+        decoded.tryEmitNext(decode(2, ean(2)));
+
+        assertThat(received).isEmpty();
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 2);
+        assertThat(received).extracting(ProductEvent::sequence).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void keepsPublishingAfterAResyncQueuedBehindAnEventWaitingForItsPrice() {
+        start(Duration.ofMillis(200));
+        productPriceCache.put(ean(3), PRIX);
+
+        decoded.tryEmitNext(decode(1, ean(1)));
+        decoded.tryEmitNext(PendingEvent.of(new ProductEvent.Resync(2)));
+        decoded.tryEmitNext(decode(3, ean(3)));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 3);
+        assertThat(received).extracting(ProductEvent::sequence).containsExactly(1L, 2L, 3L);
+        assertThat(received.get(1)).isEqualTo(new ProductEvent.Resync(2));
+
+        // The batch is released: a later event waiting for its price is loaded and published
+        decoded.tryEmitNext(decode(4, ean(4)));
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 4);
+        assertThat(received.getLast().sequence()).isEqualTo(4L);
+    }
+
+    @Test
+    void replacesAWindowWhosePricesCannotBeLoadedByAResync() {
+        start(Duration.ofMillis(200));
+        when(produitBatchRepository.findPrices(anyCollection())).thenThrow(new IllegalStateException("database unavailable"));
+
+        decoded.tryEmitNext(decode(1, ean(1)));
+        decoded.tryEmitNext(decode(2, ean(2)));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 1);
+        assertThat(received.getFirst()).isEqualTo(new ProductEvent.Resync(2));
+    }
+
+    private void start(Duration window) {
+        final var properties = TestFixtures.applicationProperties(TestFixtures.priceCache(window));
+        when(produitBatchRepository.findPrices(anyCollection())).thenAnswer(invocation -> {
+            queryThreads.add(Thread.currentThread().getName());
+            final Collection<String> eans = invocation.getArgument(0);
+            return eans.stream().collect(Collectors.toMap(Function.identity(), ean -> PRIX));
+        });
+        productPriceCache = new ProductPriceCache(produitBatchRepository, properties);
+        mapper = new ProductNotificationMapper(new ObjectMapper(), productPriceCache);
+        loader = new ProductPriceLoader(productPriceCache, properties, new ExecutionThreads(new MockEnvironment()), new SimpleMeterRegistry());
+        subscription = loader.complete(decoded.asFlux()).subscribe(received::add);
+    }
+
+    private PendingEvent decode(long sequence, String ean) {
+        final var payload = "[{\"ean\": \"" + ean + "\", \"nom\": \"Produit\", \"quantite\": 1, \"ts\": 1760000000000}]";
+        return mapper.decode(new SequencedNotification(sequence, "produit_quantite_change", 0, payload, false));
+    }
+
+    private static String ean(int i) {
+        return String.format("%013d", 3_000_000_000_000L + i);
+    }
+}
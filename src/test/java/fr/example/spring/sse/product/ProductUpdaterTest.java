@@ -0,0 +1,56 @@
+package fr.example.spring.sse.product;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.repositories.ProduitRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductUpdaterTest {
+
+    private final ProduitRepository produitRepository = mock(ProduitRepository.class);
+    private final ProductUpdater productUpdater = new ProductUpdater(produitRepository, TestFixtures.applicationProperties());
+
+    @Test
+    void incrementsTheQuantityInASingleStatement() {
+        when(produitRepository.incrementQuantite("3000000000001", -2, true)).thenReturn(Optional.of(TestFixtures.produit("3000000000001", 8)));
+
+        final var product = productUpdater.updateQuantity("3000000000001", -2);
+
+        assertThat(product).isEqualTo(Product.create("3000000000001", "Produit", 8, new BigDecimal("19.99")));
+        verify(produitRepository, never()).existsByEan(anyString());
+    }
+
+    @Test
+    void rejectsAnUnknownProduct() {
+        when(produitRepository.incrementQuantite(anyString(), anyInt(), anyBoolean())).thenReturn(Optional.empty());
+        when(produitRepository.existsByEan("3000000000001")).thenReturn(false);
+
+        assertThatThrownBy(() -> productUpdater.updateQuantity("3000000000001", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Product not found");
+    }
+
+    @Test
+    void rejectsAnUpdateLeavingTheStockNegative() {
+        when(produitRepository.incrementQuantite(anyString(), anyInt(), anyBoolean())).thenReturn(Optional.empty());
+        when(produitRepository.existsByEan("3000000000001")).thenReturn(true);
+
+        assertThatThrownBy(() -> productUpdater.updateQuantity("3000000000001", -10))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Insufficient stock");
+    }
+}
@@ -0,0 +1,145 @@
+package fr.example.spring.sse.product;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.infra.ExecutionThreads;
+import fr.example.spring.sse.product.model.Product;
+import fr.example.spring.sse.product.model.QuantityUpdate;
+import io.vavr.control.Try;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class QuantityUpdateCoalescerTest {
+
+    private static final String EAN = "3000000000001";
+    private static final String OTHER_EAN = "3000000000002";
+    // Longer than any test: the pending updates are only applied by shutdown(), unless stated otherwise
+    private static final Duration NEVER = Duration.ofHours(1);
+
+    private final ProductUpdater productUpdater = mock(ProductUpdater.class);
+    private final ProductBulkUpdater productBulkUpdater = mock(ProductBulkUpdater.class);
+    private QuantityUpdateCoalescer coalescer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void eachCallerReceivesTheQuantityObtainedAfterTheBatch() throws Exception {
+        coalescer = coalescer(NEVER, 100);
+        // The products may sit in different stripes: the batch is answered in its own order
+        when(productBulkUpdater.updateQuantities(anyList())).thenAnswer(invocation -> invocation.<List<QuantityUpdate>>getArgument(0).stream()
+                .map(update -> Try.success(TestFixtures.product(update.ean(), EAN.equals(update.ean()) ? 15 : 4)))
+                .toList());
+
+        final var first = coalescer.updateQuantity(EAN, 2);
+        final var second = coalescer.updateQuantity(EAN, 3);
+        final var other = coalescer.updateQuantity(OTHER_EAN, -1);
+        coalescer.shutdown();
+
+        verify(productBulkUpdater).updateQuantities(argThat(batch -> batch.size() == 3 && batch.containsAll(List.of(
+                new QuantityUpdate(EAN, 2), new QuantityUpdate(EAN, 3), new QuantityUpdate(OTHER_EAN, -1)))));
+        assertThat(first.get(5, TimeUnit.SECONDS).quantite()).isEqualTo(15);
+        assertThat(second.get(5, TimeUnit.SECONDS).quantite()).isEqualTo(15);
+        assertThat(other.get(5, TimeUnit.SECONDS).quantite()).isEqualTo(4);
+    }
+
+    @Test
+    void appliesThePendingUpdatesAtTheEndOfTheWindow() throws Exception {
+        coalescer = coalescer(Duration.ofMillis(5), 100);
+        when(productBulkUpdater.updateQuantities(anyList())).thenReturn(List.of(Try.success(TestFixtures.product(EAN, 1))));
+
+        assertThat(coalescer.updateQuantity(EAN, 1).get(5, TimeUnit.SECONDS).quantite()).isEqualTo(1);
+    }
+
+    @Test
+    void aRejectedUpdateOnlyFailsItsCaller() throws Exception {
+        coalescer = coalescer(NEVER, 100);
+        final var insufficientStock = new IllegalStateException("Insufficient stock");
+        when(productBulkUpdater.updateQuantities(anyList())).thenReturn(List.of(
+                Try.success(TestFixtures.product(EAN, 5)),
+                Try.failure(insufficientStock)));
+
+        final var accepted = coalescer.updateQuantity(EAN, 5);
+        final var rejected = coalescer.updateQuantity(EAN, -10);
+        coalescer.shutdown();
+
+        assertThat(accepted.get(5, TimeUnit.SECONDS).quantite()).isEqualTo(5);
+        assertThat(rejected).failsWithin(Duration.ofSeconds(5)).withThrowableThat().havingCause().isSameAs(insufficientStock);
+    }
+
+    @Test
+    void aFailedBatchFailsEveryCaller() throws Exception {
+        coalescer = coalescer(NEVER, 100);
+        final var failure = new IllegalStateException("connection refused");
+        when(productBulkUpdater.updateQuantities(anyList())).thenThrow(failure);
+
+        final var first = coalescer.updateQuantity(EAN, 1);
+        final var second = coalescer.updateQuantity(OTHER_EAN, 1);
+        coalescer.shutdown();
+
+        assertThat(List.of(first, second)).allSatisfy(result ->
+                assertThat(result).failsWithin(Duration.ofSeconds(5)).withThrowableThat().havingCause().isSameAs(failure));
+    }
+
+    @Test
+    void shutdownAppliesThePendingUpdates() throws Exception {
+        coalescer = coalescer(NEVER, 100);
+        when(productBulkUpdater.updateQuantities(anyList())).thenReturn(List.of(Try.success(TestFixtures.product(EAN, 7))));
+
+        final var result = coalescer.updateQuantity(EAN, 7);
+        assertThat(result).isNotDone();
+        coalescer.shutdown();
+
+        assertThat(result.get(5, TimeUnit.SECONDS).quantite()).isEqualTo(7);
+    }
+
+    @Test
+    void rejectsUpdatesOnceTheStripeIsFull() throws Exception {
+        // A single pending update for all the stripes: each stripe holds one
+        coalescer = coalescer(NEVER, 1);
+        when(productBulkUpdater.updateQuantities(anyList())).thenReturn(List.of(Try.success(TestFixtures.product(EAN, 1))));
+
+        final var pending = coalescer.updateQuantity(EAN, 1);
+        final var overflow = coalescer.updateQuantity(EAN, 1);
+
+        assertThat(overflow).failsWithin(Duration.ZERO).withThrowableThat().havingCause()
+                .isInstanceOf(RejectedExecutionException.class);
+        coalescer.shutdown();
+        assertThat(pending.get(5, TimeUnit.SECONDS).quantite()).isEqualTo(1);
+        verify(productBulkUpdater).updateQuantities(List.of(new QuantityUpdate(EAN, 1)));
+    }
+
+    @Test
+    void delegatesEachUpdateWhenCoalescingIsDisabled() throws Exception {
+        coalescer = new QuantityUpdateCoalescer(productUpdater, productBulkUpdater, TestFixtures.applicationProperties(),
+                new ExecutionThreads(new MockEnvironment()));
+        when(productUpdater.updateQuantity(EAN, 2)).thenReturn(TestFixtures.product(EAN, 12));
+
+        final Product product = coalescer.updateQuantity(EAN, 2).get(5, TimeUnit.SECONDS);
+
+        assertThat(product.quantite()).isEqualTo(12);
+        verifyNoInteractions(productBulkUpdater);
+    }
+
+    private QuantityUpdateCoalescer coalescer(Duration window, int maxPending) {
+        return new QuantityUpdateCoalescer(productUpdater, productBulkUpdater,
+                TestFixtures.applicationProperties(TestFixtures.stock(true, window, maxPending)),
+                new ExecutionThreads(new MockEnvironment()));
+    }
+}
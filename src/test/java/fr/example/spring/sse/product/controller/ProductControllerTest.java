@@ -0,0 +1,137 @@
+package fr.example.spring.sse.product.controller;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.product.ProductBulkUpdater;
+import fr.example.spring.sse.product.QuantityUpdateCoalescer;
+import fr.example.spring.sse.product.repositories.ProduitBatchRepository;
+import fr.example.spring.sse.product.spi.ProductBroadcast;
+import fr.example.spring.sse.product.spi.ProductSharding;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ProductControllerTest {
+
+    private final QuantityUpdateCoalescer quantityUpdateCoalescer = mock(QuantityUpdateCoalescer.class);
+    private final ProduitBatchRepository produitBatchRepository = mock(ProduitBatchRepository.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        final var validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        final var productBulkUpdater = new ProductBulkUpdater(produitBatchRepository, TestFixtures.applicationProperties());
+        final var controller = new ProductController(
+                quantityUpdateCoalescer,
+                productBulkUpdater,
+                new BulkQuantityUpdateStream(productBulkUpdater, new ObjectMapper(), validator),
+                mock(ProductListCache.class),
+                mock(ProductListWriter.class),
+                mock(ProductBroadcast.class),
+                mock(ProductSharding.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).setValidator(validator).build();
+    }
+
+    @Test
+    void rejectsAnUpdateWithoutQuantity() throws Exception {
+        mockMvc.perform(put("/api/v1/products/3000000000001").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(quantityUpdateCoalescer);
+    }
+
+    @Test
+    void answersNotFoundForAnUnknownProduct() throws Exception {
+        when(quantityUpdateCoalescer.updateQuantity(anyString(), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalArgumentException("Product not found")));
+
+        final var result = mockMvc.perform(put("/api/v1/products/3000000000001").contentType(MediaType.APPLICATION_JSON).content("{\"quantity\": 1}"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void answersConflictWhenTheStockWouldBecomeNegative() throws Exception {
+        when(quantityUpdateCoalescer.updateQuantity(anyString(), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Insufficient stock")));
+
+        final var result = mockMvc.perform(put("/api/v1/products/3000000000001").contentType(MediaType.APPLICATION_JSON).content("{\"quantity\": -5}"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isConflict());
+    }
+
+    @Test
+    void answersServiceUnavailableWhenTooManyUpdatesArePending() throws Exception {
+        when(quantityUpdateCoalescer.updateQuantity(anyString(), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending quantity updates")));
+
+        final var result = mockMvc.perform(put("/api/v1/products/3000000000001").contentType(MediaType.APPLICATION_JSON).content("{\"quantity\": 1}"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void rejectsABulkUpdateContainingAnInvalidItem() throws Exception {
+        for (var item : List.of("""
+                {"quantity": 1}""", """
+                {"ean": "3000000000001"}""", """
+                {"ean": "3000000000001", "quantity": 2147483647}""", "null")) {
+            mockMvc.perform(post("/api/v1/products/quantities")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[{\"ean\": \"3000000000002\", \"quantity\": 1}, " + item + "]"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        verifyNoInteractions(produitBatchRepository);
+    }
+
+    @Test
+    void answersAnInvalidStreamedItemWithoutApplyingIt() throws Exception {
+        when(produitBatchRepository.incrementQuantites(anyMap(), anyBoolean())).thenReturn(List.of(TestFixtures.produit("3000000000001", 11)));
+
+        final var result = mockMvc.perform(post("/api/v1/products/quantities")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content("""
+                                {"ean": "3000000000001", "quantity": 1}
+                                {"ean": "3000000000001"}
+                                """))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("""
+                        {"ean":"3000000000001","status":"UPDATED","totalQuantity":11}
+                        {"ean":"3000000000001","status":"INVALID","totalQuantity":null}
+                        """));
+        verify(produitBatchRepository).incrementQuantites(Map.of("3000000000001", 1), true);
+    }
+}
@@ -0,0 +1,44 @@
+package fr.example.spring.sse.product.controller;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.example.spring.sse.TestFixtures;
+import fr.example.spring.sse.product.ProductLister;
+import fr.example.spring.sse.product.model.ProductSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductListCacheTest {
+
+    private final ProductLister productLister = mock(ProductLister.class);
+    private final ProductListCache cache = new ProductListCache(productLister, new ObjectMapper(), TestFixtures.applicationProperties());
+
+    @Test
+    void etagIsTheCatalogVersion() {
+        when(productLister.snapshot()).thenReturn(snapshot(42));
+
+        assertThat(cache.variant(null).etag()).isEqualTo("\"42\"");
+    }
+
+    @Test
+    void bodyIsEncodedOncePerVersion() {
+        when(productLister.snapshot()).thenReturn(snapshot(42));
+        final var first = cache.current();
+
+        assertThat(cache.current()).isSameAs(first);
+
+        when(productLister.snapshot()).thenReturn(snapshot(43));
+        assertThat(cache.current()).isNotSameAs(first);
+        assertThat(cache.variant(null).etag()).isEqualTo("\"43\"");
+    }
+
+    private static ProductSnapshot snapshot(long version) {
+        return new ProductSnapshot(version, version, List.of(TestFixtures.product("3000000000001", (int) version)));
+    }
+}
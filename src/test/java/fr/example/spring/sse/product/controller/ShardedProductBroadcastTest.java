@@ -0,0 +1,66 @@
+package fr.example.spring.sse.product.controller;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+import fr.example.spring.sse.product.model.ProductFilter;
+import fr.example.spring.sse.product.spi.ProductBroadcast;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class ShardedProductBroadcastTest {
+
+    private final ProductBroadcast owned = mock(ProductBroadcast.class);
+    private final ProductBroadcast all = mock(ProductBroadcast.class);
+    private final AtomicInteger created = new AtomicInteger();
+    private final ShardedProductBroadcast broadcast = new ShardedProductBroadcast(owned, () -> {
+        created.incrementAndGet();
+        return all;
+    });
+
+    @Test
+    void clientsFollowingEansAreServedByTheOwnedProducts() {
+        final var filter = new ProductFilter(Set.of("3000000000001"), null, null);
+
+        broadcast.subscribe(null, filter);
+        broadcast.stream("12", filter);
+
+        verify(owned).subscribe(null, filter);
+        verify(owned).stream("12", filter);
+        assertThat(created).hasValue(0);
+    }
+
+    @Test
+    void clientsFollowingNoEanAreServedByAllProductsCreatedOnce() {
+        final var prefix = new ProductFilter(Set.of(), "300", null);
+
+        broadcast.subscribeWithSnapshot(null, prefix);
+        broadcast.streamWithSnapshot(null, ProductFilter.all());
+
+        verify(all).subscribeWithSnapshot(null, prefix);
+        verify(all).streamWithSnapshot(null, ProductFilter.all());
+        verifyNoInteractions(owned);
+        assertThat(created).hasValue(1);
+    }
+
+    @Test
+    void disconnectReachesTheBroadcastOfAllProductsOnlyOnceCreated() {
+        final Predicate<ProductFilter> filter = ProductFilter::isAll;
+
+        broadcast.disconnect(filter);
+        assertThat(created).hasValue(0);
+
+        broadcast.subscribe(null, ProductFilter.all());
+        broadcast.disconnect(filter);
+
+        verify(all).disconnect(filter);
+        verify(owned, times(2)).disconnect(filter);
+    }
+}